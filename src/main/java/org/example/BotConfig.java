@@ -0,0 +1,44 @@
+package org.example;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Класс BotConfig читает настройки бота.
+ * Значение ищется сначала в переменных окружения, затем в файле .env.
+ * Если настройка не задана, используется значение по умолчанию.
+ */
+public class BotConfig {
+
+    /** Настройки из файла .env. */
+    private final Dotenv dotenv;
+
+    /** Загружает настройки из .env, если файл существует. */
+    public BotConfig() {
+        this(Dotenv.configure().ignoreIfMissing().load());
+    }
+
+    /** Создаёт конфигурацию поверх уже загруженного .env. */
+    public BotConfig(Dotenv dotenv) {
+        this.dotenv = dotenv;
+    }
+
+    /** Возвращает строковую настройку или значение по умолчанию. */
+    public String get(String key, String def) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank())
+            value = dotenv.get(key);
+        return value == null || value.isBlank() ? def : value.trim();
+    }
+
+    /** Возвращает целочисленную настройку или значение по умолчанию. */
+    public int getInt(String key, int def) {
+        String value = get(key, null);
+        if (value == null)
+            return def;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Настройка " + key + " должна быть числом: " + value, e);
+        }
+    }
+}
@@ -1,284 +1,371 @@
 package org.example;
 
-import org.example.db.FormRepository;
+import org.example.db.AsyncFormStore;
+import org.example.db.FormStore;
+import org.example.db.NamePage;
 import org.example.model.UserForm;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Класс BotLogic отвечает за основную логику бота.
  * Обрабатывает команды, кнопки и опросы.
  * Работает с анкетами, базой данных и нейросетью для подбора подарков.
+ * Обращения к хранилищу анкет не блокируют поток: обработчики возвращают
+ * CompletableFuture, которые продолжаются после чтения или записи.
  */
 public class BotLogic {
+    /** Сколько анкет показывать на одной странице списка. */
+    public static final int PAGE_SIZE = 10;
+
     /** Хранилище анкет пользователей. */
-    private final FormRepository forms;
+    private final AsyncFormStore forms;
 
     /** Сервис генерации идей подарков. */
-    private final GiftIdeaService ideaService;
+    private final GiftIdeaGenerator ideaService;
 
     /** Генератор клавиатур Telegram. */
     private final Keyboards keyboards;
 
-    /** Имя новой анкеты, которую вводит пользователь. */
-    private final Map<Long, String> pendingFormName = new HashMap<>();
-
-    /** Активные сессии пользователей для пошагового опроса. */
-    private final Map<Long, Session> sessions = new HashMap<>();
+    /** Временное состояние чатов: опросы и редактирование анкет. */
+    private final ChatStateStore states;
 
-    /** Название анкеты, которую пользователь редактирует. */
-    private final Map<Long, String> editTarget = new HashMap<>();
+    /** Маршруты текстовых команд. */
+    private final Router<CompletableFuture<Response>> commands = new Router<>();
 
-    /** Поле анкеты, которое редактируется пользователем. */
-    private final Map<Long, String> editField = new HashMap<>();
+    /** Маршруты нажатий inline-кнопок. */
+    private final Router<CompletableFuture<Response>> callbacks = new Router<>();
 
     /** Создаёт объект логики бота с внешними зависимостями. */
-    public BotLogic(FormRepository forms, GiftIdeaService ideas, Keyboards keyboards) {
+    public BotLogic(FormStore forms, GiftIdeaGenerator ideas, Keyboards keyboards) {
+        this(forms, ideas, keyboards, new ChatStateStore());
+    }
+
+    /**
+     * Создаёт объект логики бота с заданным хранилищем состояний чатов.
+     * Операции с анкетами выполняются в вызывающем потоке.
+     */
+    public BotLogic(FormStore forms, GiftIdeaGenerator ideas, Keyboards keyboards, ChatStateStore states) {
+        this(AsyncFormStore.direct(forms), ideas, keyboards, states);
+    }
+
+    /** Создаёт объект логики бота с асинхронным хранилищем анкет. */
+    public BotLogic(AsyncFormStore forms, GiftIdeaGenerator ideas, Keyboards keyboards, ChatStateStore states) {
         this.forms = forms;
         this.ideaService = ideas;
         this.keyboards = keyboards;
+        this.states = states;
+
+        commands.exact("/help", (id, in, at) -> showHelp(id))
+                .exact("Помощь", (id, in, at) -> showHelp(id))
+                .exact("/forms", (id, in, at) -> showForms(id))
+                .exact("Мои анкеты", (id, in, at) -> showForms(id))
+                .exact("/createform", (id, in, at) -> createForm(id))
+                .exact("Создать анкету", (id, in, at) -> createForm(id));
+
+        callbacks.exact("forms:list", (id, in, at) -> listForms(id))
+                .prefix("forms>:", (id, in, at) -> showPage(id, in.substring(at), true))
+                .prefix("forms<:", (id, in, at) -> showPage(id, in.substring(at), false))
+                .prefix("form:", (id, in, at) -> openForm(id, in.substring(at)))
+                .prefix("edit:", (id, in, at) -> editMenu(id, in.substring(at)))
+                .prefix("editfield:", this::editField)
+                .prefix("delete:", (id, in, at) -> confirmDelete(id, in.substring(at)))
+                .prefix("deleteok:", (id, in, at) -> deleteForm(id, in.substring(at)))
+                .prefix("idea:", (id, in, at) -> generateIdea(id, in.substring(at)));
     }
 
     /**
      * Получает обновления от Telegram и вызывает нужный метод.
+     * Ждёт завершения операций с анкетами; неблокирующий вариант — processAsync.
      */
     public Response process(long chatId, String text, String callbackData) {
+        try {
+            return processAsync(chatId, text, callbackData).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Получает обновления от Telegram и возвращает future ответа.
+     * Future завершается значением null, если ответ не нужен.
+     */
+    public CompletableFuture<Response> processAsync(long chatId, String text, String callbackData) {
+        CompletableFuture<Response> result = null;
         if (callbackData != null)
-            return handleCallback(chatId, callbackData);
-        if (text != null)
-            return handleText(chatId, text.trim());
-        return null;
+            result = handleCallback(chatId, callbackData);
+        else if (text != null)
+            result = handleText(chatId, text.trim());
+        return result != null ? result : CompletableFuture.completedFuture(null);
     }
 
     /**
      * Обрабатывает команды и обычные текстовые сообщения.
      */
-    private Response handleText(long chatId, String text) {
-
-        // Команда помощи
-        if (text.equals("/help") || text.equals("Помощь")) {
-            return new Response(chatId, """
-        Команды:
-        Создать анкету — начать новый опрос
-        Мои анкеты — открыть список анкет
-        Помощь — показать это сообщение
-        """, keyboards.mainReply());
-
-        }
-
-        // Команда — показать список анкет
-        if (text.equals("/forms") || text.equals("Мои анкеты")) {
-            List<String> names = forms.listNames(chatId);
-            if (names.isEmpty()) {
-                return new Response(chatId,
-                        "У вас пока нет анкет. Создайте новую через Создать анкету.",
-                        keyboards.mainReply());
+    private CompletableFuture<Response> handleText(long chatId, String text) {
+        CompletableFuture<Response> command = commands.route(chatId, text);
+        if (command != null)
+            return command;
+
+        ChatState state = states.get(chatId);
+        if (state != null) {
+            // Если бот ждёт имя анкеты
+            if (state.isAwaitingName()) {
+                state.acceptName(text);
+                states.markDirty(chatId);
+                return reply(new Response(chatId, "Кому предназначен подарок?"));
             }
-            return new Response(chatId,
-                    "Выберите анкету для работы:",
-                    keyboards.formList(names));
-        }
-
-        // Команда — создать новую анкету
-        if (text.equals("/createform") || text.equals("Создать анкету")) {
-            pendingFormName.put(chatId, "__await_name__");
-            sessions.put(chatId, new Session());
-            return new Response(chatId, "Введите имя новой анкеты.", keyboards.mainReply());
-        }
-
-        // Если бот ждёт имя анкеты
-        if ("__await_name__".equals(pendingFormName.get(chatId))) {
-            pendingFormName.put(chatId, text);
-            Session s = sessions.get(chatId);
-            s.setStep(Step.WHO);
-            return new Response(chatId, "Кому предназначен подарок?");
-        }
 
-        // Если пользователь редактирует анкету
-        if (editField.containsKey(chatId)) {
-            return handleEdit(chatId, text);
-        }
+            // Если пользователь редактирует анкету
+            if (state.isEditing()) {
+                return handleEdit(chatId, text, state);
+            }
 
-        // Если пользователь заполняет новую анкету
-        Session s = sessions.get(chatId);
-        if (s != null && s.getStep() != null) {
-            return handleSurvey(chatId, text, s);
+            // Если пользователь заполняет новую анкету
+            if (state.isSurveying()) {
+                return handleSurvey(chatId, text, state);
+            }
         }
 
         // Если ничего не подошло
-        return new Response(chatId, "Не понимаю. Используйте /help.", keyboards.mainReply());
+        return reply(new Response(chatId, "Не понимаю. Используйте /help.", keyboards.mainReply()));
     }
 
     /**
      * Обрабатывает процесс редактирования анкеты.
      */
-    private Response handleEdit(long chatId, String text) {
-        String field = editField.remove(chatId);
-        String fname = editTarget.remove(chatId);
-        UserForm f = forms.get(chatId, fname);
-        if (f == null) {
-            return new Response(chatId, "Анкета не найдена.", keyboards.mainReply());
-        }
-
-        switch (field) {
-            case "occasion" -> f.occasion = text;
-            case "age" -> {
-                try {
-                    f.age = Integer.parseInt(text);
-                } catch (Exception e) {
-                    return new Response(chatId, "Возраст должен быть числом.");
+    private CompletableFuture<Response> handleEdit(long chatId, String text, ChatState state) {
+        String[] edit = state.finishEdit();
+        states.removeIfEmpty(chatId);
+        String fname = edit[0];
+        String field = edit[1];
+        return forms.get(chatId, fname).thenCompose(f -> {
+            if (f == null)
+                return reply(new Response(chatId, "Анкета не найдена.", keyboards.mainReply()));
+
+            switch (field) {
+                case "occasion" -> f.occasion = text;
+                case "age" -> {
+                    try {
+                        f.age = Integer.parseInt(text);
+                    } catch (Exception e) {
+                        return reply(new Response(chatId, "Возраст должен быть числом."));
+                    }
                 }
-            }
-            case "hobbies" -> f.hobbies = text;
-            case "budget" -> {
-                try {
-                    f.budget = Integer.parseInt(text);
-                } catch (Exception e) {
-                    return new Response(chatId, "Бюджет должен быть числом.");
+                case "hobbies" -> f.hobbies = text;
+                case "budget" -> {
+                    try {
+                        f.budget = Integer.parseInt(text);
+                    } catch (Exception e) {
+                        return reply(new Response(chatId, "Бюджет должен быть числом."));
+                    }
                 }
             }
-        }
-        forms.upsert(f);
-        return new Response(chatId,
-                "Обновлено!\n" + f.prettyCardTitle() + "\n" + f.prettyBody(),
-                keyboards.formActions(f.name));
+            return forms.upsert(f).thenApply(v -> new Response(chatId,
+                    "Обновлено!\n" + f.prettyCardTitle() + "\n" + f.prettyBody(),
+                    keyboards.formActions(f.name)));
+        });
     }
 
     /**
      * Обрабатывает все нажатия inline-кнопок.
      */
-    private Response handleCallback(long chatId, String data) {
+    private CompletableFuture<Response> handleCallback(long chatId, String data) {
+        return callbacks.route(chatId, data);
+    }
 
-        if (data.startsWith("form:")) {
-            return openForm(chatId, data.substring(5));
-        }
+    /** Показывает справку по командам. */
+    private CompletableFuture<Response> showHelp(long chatId) {
+        return reply(new Response(chatId, """
+        Команды:
+        Создать анкету — начать новый опрос
+        Мои анкеты — открыть список анкет
+        Помощь — показать это сообщение
+        """, keyboards.mainReply()));
+    }
 
-        if (data.startsWith("edit:")) {
-            String name = data.substring(5);
+    /** Показывает первую страницу списка анкет по текстовой команде. */
+    private CompletableFuture<Response> showForms(long chatId) {
+        return forms.listNamesAfter(chatId, null, PAGE_SIZE).thenApply(page -> {
+            if (page.isEmpty()) {
+                return new Response(chatId,
+                        "У вас пока нет анкет. Создайте новую через Создать анкету.",
+                        keyboards.mainReply());
+            }
             return new Response(chatId,
-                    "Что хотите изменить в анкете " + name + "?",
-                    keyboards.editFieldMenu(name));
-        }
+                    "Выберите анкету для работы:",
+                    keyboards.formListPage(page));
+        });
+    }
 
-        if (data.startsWith("editfield:")) {
-            String[] parts = data.split(":", 3);
-            String name = parts[1];
-            String field = parts[2];
-            editTarget.put(chatId, name);
-            editField.put(chatId, field);
-            return new Response(chatId, "Введите новое значение поля: " + field);
-        }
+    /** Начинает создание новой анкеты. */
+    private CompletableFuture<Response> createForm(long chatId) {
+        states.getOrCreate(chatId).startSurvey();
+        return reply(new Response(chatId, "Введите имя новой анкеты.", keyboards.mainReply()));
+    }
 
-        if (data.startsWith("delete:")) {
-            String name = data.substring(7);
-            return new Response(chatId,
-                    "Удалить анкету " + name + "?",
-                    keyboards.confirmDelete(name));
-        }
+    /** Показывает первую страницу списка анкет по кнопке «назад». */
+    private CompletableFuture<Response> listForms(long chatId) {
+        return showPage(chatId, null, true);
+    }
 
-        if (data.startsWith("deleteok:")) {
-            String name = data.substring(9);
-            forms.delete(chatId, name);
-            return new Response(chatId,
-                    "Анкета " + name + " удалена.",
-                    keyboards.mainReply());
-        }
+    /**
+     * Показывает страницу списка анкет после или перед bound.
+     * Если соседние анкеты успели удалить, показывает первую страницу.
+     */
+    private CompletableFuture<Response> showPage(long chatId, String bound, boolean forward) {
+        CompletableFuture<NamePage> page = forward
+                ? forms.listNamesAfter(chatId, bound, PAGE_SIZE)
+                : forms.listNamesBefore(chatId, bound, PAGE_SIZE);
+        return page.thenCompose(p -> p.isEmpty() && bound != null
+                        ? forms.listNamesAfter(chatId, null, PAGE_SIZE)
+                        : CompletableFuture.completedFuture(p))
+                .thenApply(p -> p.isEmpty()
+                        ? new Response(chatId, "У вас пока нет анкет.", keyboards.mainReply())
+                        : new Response(chatId, "Выберите анкету:", keyboards.formListPage(p)));
+    }
 
-        if (data.startsWith("idea:")) {
-            return generateIdea(chatId, data.substring(5));
-        }
+    /** Показывает меню выбора поля для редактирования. */
+    private CompletableFuture<Response> editMenu(long chatId, String name) {
+        return reply(new Response(chatId,
+                "Что хотите изменить в анкете " + name + "?",
+                keyboards.editFieldMenu(name)));
+    }
 
-        if (data.equals("forms:list")) {
-            List<String> names = forms.listNames(chatId);
-            if (names.isEmpty())
-                return new Response(chatId, "У вас пока нет анкет.", keyboards.mainReply());
-            return new Response(chatId, "Выберите анкету:", keyboards.formList(names));
-        }
+    /**
+     * Начинает редактирование поля.
+     * Аргументы кнопки имеют вид "имя:поле" и начинаются с позиции from.
+     */
+    private CompletableFuture<Response> editField(long chatId, String data, int from) {
+        int sep = data.indexOf(':', from);
+        if (sep < 0)
+            return null;
+        String name = data.substring(from, sep);
+        String field = data.substring(sep + 1);
+        states.getOrCreate(chatId).startEdit(name, field);
+        return reply(new Response(chatId, "Введите новое значение поля: " + field));
+    }
 
-        return null;
+    /** Запрашивает подтверждение удаления анкеты. */
+    private CompletableFuture<Response> confirmDelete(long chatId, String name) {
+        return reply(new Response(chatId,
+                "Удалить анкету " + name + "?",
+                keyboards.confirmDelete(name)));
     }
 
+    /** Удаляет анкету после подтверждения. */
+    private CompletableFuture<Response> deleteForm(long chatId, String name) {
+        return forms.delete(chatId, name).thenApply(v -> new Response(chatId,
+                "Анкета " + name + " удалена.",
+                keyboards.mainReply()));
+    }
 
     /**
      * Открывает выбранную анкету и показывает её содержимое.
      */
-    private Response openForm(long chatId, String name) {
-        UserForm f = forms.get(chatId, name);
-        if (f == null)
-            return new Response(chatId, "Анкета не найдена.");
-        return new Response(chatId,
-                 f.prettyCardTitle() + "\n" + f.prettyBody(),
-                keyboards.formActions(name));
+    private CompletableFuture<Response> openForm(long chatId, String name) {
+        return forms.get(chatId, name).thenApply(f -> {
+            if (f == null)
+                return new Response(chatId, "Анкета не найдена.");
+            return new Response(chatId,
+                     f.prettyCardTitle() + "\n" + f.prettyBody(),
+                    keyboards.formActions(name));
+        });
     }
 
     /**
      * Генерирует идею подарка на основе анкеты.
+     * Сразу возвращает сообщение-заглушку, а идеи приходят отложенным ответом,
+     * чтобы поток обработки не ждал ответа нейросети.
+     * Пока ответ дописывается, его начало публикуется в progress.
      */
-    private Response generateIdea(long chatId, String name) {
-        UserForm f = forms.get(chatId, name);
-        if (f == null)
-            return new Response(chatId, "Анкета не найдена.");
-        String prompt = promptFromForm(f);
-        String ideas;
-        try {
-            ideas = ideaService.fetchGiftIdeas(prompt);
-        } catch (Exception e) {
-            ideas = "Не удалось получить идею. Попробуйте позже.";
-        }
-        return new Response(chatId,
-                "Идея подарка для " + name + ":\n" + ideas,
-                keyboards.backToForms());
+    private CompletableFuture<Response> generateIdea(long chatId, String name) {
+        return forms.get(chatId, name).thenApply(f -> {
+            if (f == null)
+                return new Response(chatId, "Анкета не найдена.");
+            String prompt = promptFromForm(f);
+            String title = "Идея подарка для " + name + ":\n";
+            ResponseStream progress = new ResponseStream();
+            CompletableFuture<Response> ideas = ideaService
+                    .streamGiftIdeas(prompt, partial -> progress.publish(new Response(chatId, title + partial + " …")))
+                    .exceptionally(e -> "Не удалось получить идею. Попробуйте позже.")
+                    .thenApply(text -> new Response(chatId, title + text, keyboards.backToForms()));
+            return new Response(chatId, "Генерирую идеи подарков для " + name + "…", null, ideas, progress);
+        });
     }
 
     /**
      * Обрабатывает пошаговый опрос при создании анкеты.
      */
-    private Response handleSurvey(long chatId, String text, Session s) {
+    private CompletableFuture<Response> handleSurvey(long chatId, String text, ChatState state) {
+        String question = state.updateSession(s -> answerSurvey(s, text));
+        // Отмечаем чат только после изменения, иначе снимок может сохранить прежний шаг
+        states.markDirty(chatId);
+        if (question != null)
+            return reply(new Response(chatId, question));
+
+        Session s = state.getSession();
+        String fname = state.finishSurvey();
+        states.removeIfEmpty(chatId);
+        CompletableFuture<Void> saved = fname != null
+                ? forms.upsert(new UserForm(chatId, fname, s.getWho(), s.getReason(), s.getAge(), s.getHobbies(), s.getBudget()))
+                : CompletableFuture.completedFuture(null);
+        return saved.thenApply(v -> new Response(chatId,
+                "Анкета " + fname + " сохранена!\nИспользуйте /forms для просмотра.",
+                keyboards.mainReply()));
+    }
+
+    /**
+     * Записывает ответ в сессию и переводит опрос к следующему шагу.
+     * Вызывается под замком состояния чата. Возвращает следующий вопрос
+     * или подсказку при неверном числе; null, если опрос завершён.
+     */
+    private static String answerSurvey(Session s, String text) {
         switch (s.getStep()) {
             case WHO -> {
                 s.setWho(text);
                 s.setStep(Step.REASON);
-                return new Response(chatId, "Повод?");
+                return "Повод?";
             }
             case REASON -> {
                 s.setReason(text);
                 s.setStep(Step.AGE);
-                return new Response(chatId, "Возраст?");
+                return "Возраст?";
             }
             case AGE -> {
                 try {
                     s.setAge(Integer.parseInt(text));
                 } catch (Exception e) {
-                    return new Response(chatId, "Введите число для возраста.");
+                    return "Введите число для возраста.";
                 }
                 s.setStep(Step.HOBBIES);
-                return new Response(chatId, "Интересы?");
+                return "Интересы?";
             }
             case HOBBIES -> {
                 s.setHobbies(text);
                 s.setStep(Step.BUDGET);
-                return new Response(chatId, "Бюджет?");
+                return "Бюджет?";
             }
             case BUDGET -> {
                 try {
                     s.setBudget(Integer.parseInt(text));
                 } catch (Exception e) {
-                    return new Response(chatId, "Введите число для бюджета.");
+                    return "Введите число для бюджета.";
                 }
                 s.setStep(Step.DONE);
-                String fname = pendingFormName.remove(chatId);
-                if (fname != null)
-                    forms.upsert(new UserForm(chatId, fname, s.getWho(), s.getReason(), s.getAge(), s.getHobbies(), s.getBudget()));
-                sessions.remove(chatId);
-                return new Response(chatId,
-                        "Анкета " + fname + " сохранена!\nИспользуйте /forms для просмотра.",
-                        keyboards.mainReply());
+                return null;
             }
         }
         return null;
     }
 
+    /** Возвращает готовый ответ, не требующий обращения к хранилищу. */
+    private static CompletableFuture<Response> reply(Response response) {
+        return CompletableFuture.completedFuture(response);
+    }
+
     /**
      * Формирует промпт для нейросети на основе анкеты.
      */
@@ -295,7 +382,7 @@ public class BotLogic {
      * Класс Session хранит временные ответы пользователя во время опроса.
      * Нужен, чтобы пошагово собирать анкету и не терять состояние между сообщениями.
      */
-    public class Session {
+    public static class Session {
 
         /** Текущий шаг опроса (WHO, REASON, AGE, HOBBIES, BUDGET, DONE) */
         private Step step;
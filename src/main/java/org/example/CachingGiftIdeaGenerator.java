@@ -0,0 +1,276 @@
+package org.example;
+
+import org.example.db.IdeaCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Генератор идей, который запоминает ответы другого генератора.
+ * Ключ — SHA-256 от {@link GiftIdeaGenerator#cacheScope()} (модель и системный
+ * промпт) и нормализованного запроса: одинаковые анкеты, отличающиеся только
+ * пробелами или регистром, получают один и тот же ответ без обращения к API.
+ *
+ * Ответы живут не дольше ttl и вытесняются по размеру (давно не использованные
+ * первыми). Если задан IdeaCacheRepository, ответы дублируются в базу и
+ * переживают перезапуск бота. Ошибки генератора не кэшируются.
+ */
+public class CachingGiftIdeaGenerator implements GiftIdeaGenerator {
+
+    /** Логгер для вывода информации о работе кэша. */
+    private static final Logger log = LoggerFactory.getLogger(CachingGiftIdeaGenerator.class);
+
+    /** Последовательность пробельных символов в запросе. */
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /** Через сколько записей в базу удаляются устаревшие ответы. */
+    private static final int PRUNE_EVERY = 100;
+
+    /** Генератор, к которому уходят промахи кэша. */
+    private final GiftIdeaGenerator delegate;
+
+    /** Ответы в памяти в порядке доступа. */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Максимальное число ответов в памяти и в базе. */
+    private final int maxEntries;
+
+    /** Время жизни ответа. */
+    private final long ttlMillis;
+
+    /** Хранилище ответов в базе или null, если кэш только в памяти. */
+    private final IdeaCacheRepository disk;
+
+    /** Источник текущего времени. */
+    private final LongSupplier clock;
+
+    /** Число попаданий в память. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Число попаданий в базу. */
+    private final LongAdder diskHits = new LongAdder();
+
+    /** Число промахов, ушедших в генератор. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Число вытесненных из памяти ответов. */
+    private final LongAdder evictions = new LongAdder();
+
+    /** Число записей в базу с последней очистки. */
+    private final LongAdder putsSincePrune = new LongAdder();
+
+    /**
+     * Создаёт кэш на maxEntries ответов со временем жизни ttl.
+     * disk может быть null — тогда ответы хранятся только в памяти.
+     */
+    public CachingGiftIdeaGenerator(GiftIdeaGenerator delegate, int maxEntries, Duration ttl,
+                                    IdeaCacheRepository disk) {
+        this(delegate, maxEntries, ttl, disk, System::currentTimeMillis);
+    }
+
+    /** Конструктор для тестов — позволяет подменить часы. */
+    CachingGiftIdeaGenerator(GiftIdeaGenerator delegate, int maxEntries, Duration ttl,
+                             IdeaCacheRepository disk, LongSupplier clock) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Размер кэша идей должен быть положительным");
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.disk = disk;
+        this.clock = clock;
+        prune();
+    }
+
+    /** Возвращает ответ из кэша или запрашивает его у генератора. */
+    @Override
+    public String fetchGiftIdeas(String prompt) throws Exception {
+        String key = keyOf(prompt);
+        String cached = lookup(key);
+        if (cached != null)
+            return cached;
+        String ideas = delegate.fetchGiftIdeas(prompt);
+        store(key, ideas);
+        return ideas;
+    }
+
+    /** Возвращает ответ из кэша или запрашивает его у генератора асинхронно. */
+    @Override
+    public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+        return cachedAsync(prompt, () -> delegate.fetchGiftIdeasAsync(prompt));
+    }
+
+    /**
+     * Возвращает ответ из кэша целиком или получает его у генератора по частям.
+     * Ответ из кэша промежуточных частей не имеет.
+     */
+    @Override
+    public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+        return cachedAsync(prompt, () -> delegate.streamGiftIdeas(prompt, onPartial));
+    }
+
+    /** Область кэша совпадает с областью обёрнутого генератора. */
+    @Override
+    public String cacheScope() {
+        return delegate.cacheScope();
+    }
+
+    /** Возвращает статистику кэша. */
+    public Stats stats() {
+        int size;
+        synchronized (memory) {
+            size = memory.size();
+        }
+        return new Stats(hits.sum(), diskHits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Приводит запрос к каноническому виду: NFC, пробелы схлопываются,
+     * края обрезаются, регистр нижний.
+     */
+    static String normalize(String prompt) {
+        String s = Normalizer.normalize(prompt, Normalizer.Form.NFC);
+        return SPACES.matcher(s).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Вычисляет ключ кэша для запроса. */
+    String keyOf(String prompt) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(delegate.cacheScope().getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(normalize(prompt).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /** Возвращает завершённый future с ответом из кэша или запоминает результат call. */
+    private CompletableFuture<String> cachedAsync(String prompt, Supplier<CompletableFuture<String>> call) {
+        String key = keyOf(prompt);
+        String cached = lookup(key);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+        return call.get().thenApply(ideas -> {
+            store(key, ideas);
+            return ideas;
+        });
+    }
+
+    /** Ищет неустаревший ответ в памяти, затем в базе. */
+    private String lookup(String key) {
+        long now = clock.getAsLong();
+        synchronized (memory) {
+            Entry e = memory.get(key);
+            if (e != null) {
+                if (now - e.createdAt < ttlMillis) {
+                    hits.increment();
+                    return e.value;
+                }
+                memory.remove(key);
+                evictions.increment();
+            }
+        }
+        if (disk != null) {
+            try {
+                IdeaCacheRepository.Entry stored = disk.get(key, now - ttlMillis + 1);
+                if (stored != null) {
+                    diskHits.increment();
+                    remember(key, new Entry(stored.response(), stored.createdAt()));
+                    return stored.response();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось прочитать кэш идей из базы", e);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Сохраняет новый ответ в память и в базу. */
+    private void store(String key, String ideas) {
+        long now = clock.getAsLong();
+        remember(key, new Entry(ideas, now));
+        if (disk == null)
+            return;
+        try {
+            disk.put(key, ideas, now);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить кэш идей в базу", e);
+            return;
+        }
+        putsSincePrune.increment();
+        if (putsSincePrune.sum() >= PRUNE_EVERY) {
+            putsSincePrune.reset();
+            prune();
+        }
+    }
+
+    /** Кладёт ответ в память и вытесняет лишние и устаревшие. */
+    private void remember(String key, Entry entry) {
+        long now = clock.getAsLong();
+        synchronized (memory) {
+            memory.put(key, entry);
+            // Сначала давно не использованные: вытесняем лишние и устаревшие
+            Iterator<Entry> it = memory.values().iterator();
+            while (it.hasNext()) {
+                Entry eldest = it.next();
+                if (memory.size() <= maxEntries && now - eldest.createdAt < ttlMillis)
+                    break;
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /** Удаляет из базы устаревшие ответы и ответы сверх размера кэша. */
+    private void prune() {
+        if (disk == null)
+            return;
+        try {
+            int removed = disk.prune(clock.getAsLong() - ttlMillis + 1, maxEntries);
+            if (removed > 0)
+                log.info("Удалено {} устаревших ответов из кэша идей", removed);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось очистить кэш идей в базе", e);
+        }
+    }
+
+    /** Ответ и время его получения. */
+    private record Entry(String value, long createdAt) {
+    }
+
+    /**
+     * Статистика кэша.
+     *
+     * @param hits      число попаданий в память
+     * @param diskHits  число попаданий в базу
+     * @param misses    число обращений к генератору
+     * @param evictions число вытесненных из памяти ответов
+     * @param size      текущее число ответов в памяти
+     */
+    public record Stats(long hits, long diskHits, long misses, long evictions, int size) {
+
+        /** Доля попаданий (в память или базу) от 0 до 1. */
+        public double hitRate() {
+            long found = hits + diskHits;
+            long total = found + misses;
+            return total == 0 ? 0 : (double) found / total;
+        }
+    }
+}
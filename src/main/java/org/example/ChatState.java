@@ -0,0 +1,242 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/**
+ * Класс ChatState хранит всё временное состояние одного чата.
+ * Объединяет ожидание имени анкеты, пошаговый опрос и редактирование поля,
+ * чтобы обработка сообщения обходилась одним обращением к хранилищу.
+ * Методы синхронизированы, поэтому изменения состояния атомарны.
+ */
+public class ChatState {
+
+    /** Версия двоичного формата снимка состояния. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Флаг снимка: бот ждёт имя анкеты. */
+    private static final int F_AWAITING_NAME = 1;
+
+    /** Флаг снимка: задано имя анкеты. */
+    private static final int F_FORM_NAME = 1 << 1;
+
+    /** Флаг снимка: идёт опрос. */
+    private static final int F_SESSION = 1 << 2;
+
+    /** Флаг снимка: идёт редактирование поля. */
+    private static final int F_EDIT = 1 << 3;
+
+    /** Идентификатор чата, которому принадлежит состояние. */
+    private final long chatId;
+
+    /** Время последнего обращения в миллисекундах. */
+    private volatile long lastAccess;
+
+    /** Бот ждёт от пользователя имя новой анкеты. */
+    private boolean awaitingName;
+
+    /** Имя новой анкеты, которую заполняет пользователь. */
+    private String formName;
+
+    /** Сессия пошагового опроса или null, если опроса нет. */
+    private BotLogic.Session session;
+
+    /** Название анкеты, которую пользователь редактирует. */
+    private String editTarget;
+
+    /** Поле анкеты, которое редактируется пользователем. */
+    private String editField;
+
+    /** Создаёт пустое состояние чата. */
+    public ChatState(long chatId, long now) {
+        this.chatId = chatId;
+        this.lastAccess = now;
+    }
+
+    /** Возвращает идентификатор чата. */
+    public long chatId() {
+        return chatId;
+    }
+
+    /** Возвращает время последнего обращения в миллисекундах. */
+    public long lastAccess() {
+        return lastAccess;
+    }
+
+    /** Отмечает обращение к состоянию. */
+    void touch(long now) {
+        lastAccess = now;
+    }
+
+    /** Начинает создание новой анкеты: сбрасывает опрос и ждёт имя. */
+    public synchronized void startSurvey() {
+        awaitingName = true;
+        formName = null;
+        session = new BotLogic.Session();
+    }
+
+    /** Возвращает true, если бот ждёт имя новой анкеты. */
+    public synchronized boolean isAwaitingName() {
+        return awaitingName;
+    }
+
+    /** Запоминает имя новой анкеты и переводит опрос к первому вопросу. */
+    public synchronized void acceptName(String name) {
+        awaitingName = false;
+        formName = name;
+        session.setStep(BotLogic.Step.WHO);
+    }
+
+    /** Возвращает сессию опроса или null. */
+    public synchronized BotLogic.Session getSession() {
+        return session;
+    }
+
+    /** Возвращает true, если идёт опрос и бот ждёт ответ на очередной вопрос. */
+    public synchronized boolean isSurveying() {
+        return session != null && session.getStep() != null && session.getStep() != BotLogic.Step.DONE;
+    }
+
+    /**
+     * Изменяет сессию опроса под замком состояния и возвращает результат изменения.
+     * Снимок {@link #toBytes()} берётся под тем же замком, поэтому видит сессию
+     * либо до ответа, либо после, но не наполовину изменённой.
+     */
+    public synchronized <T> T updateSession(Function<BotLogic.Session, T> change) {
+        return change.apply(session);
+    }
+
+    /**
+     * Завершает опрос и возвращает имя сохраняемой анкеты.
+     * Если имя не было введено, возвращает null.
+     */
+    public synchronized String finishSurvey() {
+        String name = awaitingName ? null : formName;
+        awaitingName = false;
+        formName = null;
+        session = null;
+        return name;
+    }
+
+    /** Начинает редактирование поля анкеты. */
+    public synchronized void startEdit(String target, String field) {
+        editTarget = target;
+        editField = field;
+    }
+
+    /** Возвращает true, если пользователь редактирует поле анкеты. */
+    public synchronized boolean isEditing() {
+        return editField != null;
+    }
+
+    /**
+     * Завершает редактирование и возвращает пару {анкета, поле}.
+     */
+    public synchronized String[] finishEdit() {
+        String[] edit = {editTarget, editField};
+        editTarget = null;
+        editField = null;
+        return edit;
+    }
+
+    /** Возвращает true, если в чате нет незавершённых действий. */
+    public synchronized boolean isEmpty() {
+        return !awaitingName && formName == null && session == null && editField == null;
+    }
+
+    /**
+     * Кодирует состояние в компактный двоичный снимок.
+     * Формат: версия, битовые флаги, время последнего обращения,
+     * затем только присутствующие поля.
+     */
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            int flags = (awaitingName ? F_AWAITING_NAME : 0)
+                    | (formName != null ? F_FORM_NAME : 0)
+                    | (session != null ? F_SESSION : 0)
+                    | (editField != null ? F_EDIT : 0);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(flags);
+            out.writeLong(lastAccess);
+            if (formName != null)
+                out.writeUTF(formName);
+            if (session != null) {
+                out.writeByte(session.getStep() == null ? -1 : session.getStep().ordinal());
+                writeNullable(out, session.getWho());
+                writeNullable(out, session.getReason());
+                writeNullable(out, session.getHobbies());
+                writeNullable(out, session.getAge());
+                writeNullable(out, session.getBudget());
+            }
+            if (editField != null) {
+                out.writeUTF(editTarget);
+                out.writeUTF(editField);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Восстанавливает состояние чата из двоичного снимка. */
+    public static ChatState fromBytes(long chatId, byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION)
+                throw new IllegalArgumentException("Неизвестная версия снимка: " + version);
+            int flags = in.readByte();
+            ChatState state = new ChatState(chatId, in.readLong());
+            state.awaitingName = (flags & F_AWAITING_NAME) != 0;
+            if ((flags & F_FORM_NAME) != 0)
+                state.formName = in.readUTF();
+            if ((flags & F_SESSION) != 0) {
+                BotLogic.Session s = new BotLogic.Session();
+                int step = in.readByte();
+                s.setStep(step < 0 ? null : BotLogic.Step.values()[step]);
+                s.setWho(readNullableString(in));
+                s.setReason(readNullableString(in));
+                s.setHobbies(readNullableString(in));
+                s.setAge(readNullableInt(in));
+                s.setBudget(readNullableInt(in));
+                state.session = s;
+            }
+            if ((flags & F_EDIT) != 0) {
+                state.editTarget = in.readUTF();
+                state.editField = in.readUTF();
+            }
+            return state;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Записывает строку, которая может быть null. */
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    /** Записывает число, которое может быть null. */
+    private static void writeNullable(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeInt(value);
+    }
+
+    /** Читает строку, которая может быть null. */
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /** Читает число, которое может быть null. */
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
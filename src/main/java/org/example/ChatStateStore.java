@@ -0,0 +1,220 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Класс ChatStateStore хранит состояния чатов в одной потокобезопасной таблице.
+ * Пустые состояния удаляются, чтобы таблица содержала только активные чаты.
+ * Брошенные опросы и редактирования вытесняются по времени простоя (TTL),
+ * а при превышении лимита записей вытесняются самые давние состояния.
+ */
+public class ChatStateStore {
+
+    /** Сколько записей очереди проверять при создании нового состояния. */
+    private static final int SWEEP_BATCH = 8;
+
+    /** Состояния чатов по chatId. */
+    private final ConcurrentHashMap<Long, ChatState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Очередь вытеснения: состояния в порядке последней проверки.
+     * Проверяется лениво с головы; ещё живое состояние переносится в хвост.
+     */
+    private final ConcurrentLinkedQueue<ChatState> expiry = new ConcurrentLinkedQueue<>();
+
+    /** Чаты, состояние которых изменилось с последнего сохранения снимка. */
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    /** Время простоя, после которого состояние удаляется, в миллисекундах. */
+    private final long ttlMillis;
+
+    /** Максимальное число хранимых состояний. */
+    private final int maxEntries;
+
+    /** Источник текущего времени в миллисекундах. */
+    private final LongSupplier clock;
+
+    /** Число состояний, удалённых по TTL. */
+    private final AtomicLong expired = new AtomicLong();
+
+    /** Число состояний, вытесненных из-за лимита записей. */
+    private final AtomicLong overflowed = new AtomicLong();
+
+    /** Создаёт хранилище с TTL в сутки и лимитом в 100 000 чатов. */
+    public ChatStateStore() {
+        this(Duration.ofDays(1), 100_000);
+    }
+
+    /** Создаёт хранилище с заданными TTL и лимитом записей. */
+    public ChatStateStore(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, System::currentTimeMillis);
+    }
+
+    /** Создаёт хранилище с заданным источником времени (для тестов). */
+    ChatStateStore(Duration ttl, int maxEntries, LongSupplier clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Возвращает состояние чата или null, если у чата нет активных действий.
+     * Устаревшее состояние считается отсутствующим.
+     * Чтение не отмечает чат изменённым: время обращения попадёт в снимок
+     * вместе со следующим изменением. Изменивший состояние вызывает {@link #markDirty}.
+     */
+    public ChatState get(long chatId) {
+        ChatState state = states.get(chatId);
+        if (state == null)
+            return null;
+        long now = clock.getAsLong();
+        if (isExpired(state, now)) {
+            evict(state, expired);
+            return null;
+        }
+        state.touch(now);
+        return state;
+    }
+
+    /**
+     * Возвращает состояние чата, создавая его при необходимости,
+     * и отмечает чат изменённым: его вызывают, чтобы состояние изменить.
+     * Каждое создание заодно проверяет несколько записей очереди вытеснения,
+     * поэтому очередь не растёт быстрее, чем вычищается.
+     */
+    public ChatState getOrCreate(long chatId) {
+        ChatState state = get(chatId);
+        if (state != null) {
+            dirty.add(chatId);
+            return state;
+        }
+        sweep(SWEEP_BATCH);
+        long now = clock.getAsLong();
+        state = states.computeIfAbsent(chatId, id -> {
+            ChatState created = new ChatState(id, now);
+            expiry.add(created);
+            return created;
+        });
+        state.touch(now);
+        dirty.add(chatId);
+        while (states.size() > maxEntries && evictOldest()) {
+            // вытесняем, пока не уложимся в лимит
+        }
+        return state;
+    }
+
+    /** Удаляет состояние чата, если в нём не осталось незавершённых действий. */
+    public void removeIfEmpty(long chatId) {
+        states.computeIfPresent(chatId, (id, state) -> state.isEmpty() ? null : state);
+        dirty.add(chatId);
+    }
+
+    /** Отмечает состояние чата как изменённое, чтобы оно попало в следующий снимок. */
+    public void markDirty(long chatId) {
+        dirty.add(chatId);
+    }
+
+    /** Возвращает состояние чата без отметки об обращении и проверки TTL. */
+    public ChatState peek(long chatId) {
+        return states.get(chatId);
+    }
+
+    /**
+     * Добавляет состояние, восстановленное из снимка.
+     * Устаревшие по TTL состояния пропускаются. Возвращает true, если состояние добавлено.
+     */
+    public boolean restore(ChatState state) {
+        if (isExpired(state, clock.getAsLong()))
+            return false;
+        if (states.putIfAbsent(state.chatId(), state) != null)
+            return false;
+        expiry.add(state);
+        return true;
+    }
+
+    /**
+     * Возвращает чаты, изменённые с прошлого вызова, и очищает их список.
+     * Для удалённых состояний снимок нужно стереть.
+     */
+    public List<Long> drainDirty() {
+        List<Long> ids = new ArrayList<>(dirty.size());
+        for (Long id : dirty) {
+            if (dirty.remove(id))
+                ids.add(id);
+        }
+        return ids;
+    }
+
+    /** Возвращает TTL состояний в миллисекундах. */
+    public long ttlMillis() {
+        return ttlMillis;
+    }
+
+    /** Возвращает число чатов с активным состоянием. */
+    public int size() {
+        return states.size();
+    }
+
+    /** Возвращает число состояний, удалённых по истечении TTL. */
+    public long expiredCount() {
+        return expired.get();
+    }
+
+    /** Возвращает число состояний, вытесненных из-за лимита записей. */
+    public long overflowCount() {
+        return overflowed.get();
+    }
+
+    /**
+     * Проверяет не более limit записей с головы очереди вытеснения.
+     * Удалённые и устаревшие состояния выбрасываются, живые переносятся в хвост.
+     * Ограничение на число проверок делает стоимость обращения постоянной.
+     */
+    public void sweep(int limit) {
+        long now = clock.getAsLong();
+        for (int i = 0; i < limit; i++) {
+            ChatState head = expiry.poll();
+            if (head == null)
+                return;
+            if (states.get(head.chatId()) != head)
+                continue;
+            if (isExpired(head, now)) {
+                evict(head, expired);
+                continue;
+            }
+            expiry.add(head);
+        }
+    }
+
+    /** Вытесняет самое давнее из проверенных состояний. Возвращает false, если очередь пуста. */
+    private boolean evictOldest() {
+        ChatState head;
+        while ((head = expiry.poll()) != null) {
+            if (states.get(head.chatId()) == head) {
+                evict(head, overflowed);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Удаляет состояние, если оно всё ещё актуально, и увеличивает счётчик. */
+    private void evict(ChatState state, AtomicLong counter) {
+        if (states.remove(state.chatId(), state)) {
+            counter.incrementAndGet();
+            dirty.add(state.chatId());
+        }
+    }
+
+    /** Возвращает true, если состояние не использовалось дольше TTL. */
+    private boolean isExpired(ChatState state, long now) {
+        return now - state.lastAccess() >= ttlMillis;
+    }
+}
@@ -1,5 +1,9 @@
 package org.example;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
 /**
  * Интерфейс для генератора идей подарков.
  * Позволяет подставлять разные реализации —
@@ -11,4 +15,36 @@ public interface GiftIdeaGenerator {
      * на основе переданного текстового описания (prompt).
      */
     String fetchGiftIdeas(String prompt) throws Exception;
+
+    /**
+     * Асинхронно генерирует идеи подарков.
+     * По умолчанию выполняет синхронный метод в общем пуле потоков;
+     * реализации с неблокирующим вводом-выводом переопределяют его.
+     */
+    default CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetchGiftIdeas(prompt);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Генерирует идеи подарков, передавая в onPartial весь полученный
+     * к этому моменту текст по мере его поступления.
+     * По умолчанию промежуточного текста нет и вызывается асинхронный метод.
+     */
+    default CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+        return fetchGiftIdeasAsync(prompt);
+    }
+
+    /**
+     * Возвращает всё, кроме запроса, от чего зависит ответ (модель, системный промпт).
+     * По этой строке кэш различает ответы разных генераторов и их настроек.
+     */
+    default String cacheScope() {
+        return getClass().getName();
+    }
 }
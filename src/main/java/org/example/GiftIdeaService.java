@@ -2,12 +2,15 @@ package org.example;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Сервис, обращающийся к OpenRouter API
@@ -50,15 +53,24 @@ public class GiftIdeaService implements GiftIdeaGenerator {
             "Ты помощник, предлагающий креативные идеи подарков. Форматируй красиво и с эмодзи.";
 
     /** HTTP-клиент для выполнения запросов. */
-    private static final OkHttpClient client = new OkHttpClient();
+    private final OkHttpClient client;
 
     /** API-ключ, загружаемый из .env файла. */
     private final String apiKey;
 
     /**
      * Загружает API-ключ из .env файла и проверяет его наличие.
+     * Запросы идут через общий клиент {@link HttpClientFactory#shared()}.
      */
     public GiftIdeaService() {
+        this(HttpClientFactory.shared().forApi());
+    }
+
+    /**
+     * Загружает API-ключ из .env файла и использует заданный HTTP-клиент.
+     */
+    public GiftIdeaService(OkHttpClient client) {
+        this.client = client;
         Dotenv dotenv = Dotenv.configure()
                 .ignoreIfMissing()
                 .load();
@@ -69,6 +81,13 @@ public class GiftIdeaService implements GiftIdeaGenerator {
             log.warn("OPENROUTER_API_KEY не найден. Работа сервиса будет невозможна без ключа.");
         }
     }
+
+    /** Ответ зависит от модели и системного промпта. */
+    @Override
+    public String cacheScope() {
+        return MODEL + "\n" + SYSTEM_PROMPT;
+    }
+
     /** Возвращает URL API, используемый сервисом. */
     protected String apiUrl() {
         return API_URL;
@@ -82,6 +101,93 @@ public class GiftIdeaService implements GiftIdeaGenerator {
     public String fetchGiftIdeas(String prompt) throws IOException {
         log.info("Отправка запроса к OpenRouter ({} символов)...", prompt.length());
 
+        try (okhttp3.Response response = client.newCall(buildRequest(prompt)).execute()) {
+            return readContent(response);
+        } catch (IOException e) {
+            log.error("Ошибка при соединении с OpenRouter API", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Отправляет запрос к OpenRouter без блокировки вызывающего потока.
+     * Ответ читается в потоке OkHttp, результат передаётся через future.
+     * Отмена future отменяет и HTTP-запрос.
+     */
+    @Override
+    public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+        log.info("Асинхронный запрос к OpenRouter ({} символов)...", prompt.length());
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Call call = client.newCall(buildRequest(prompt));
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                log.error("Ошибка при соединении с OpenRouter API", e);
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, okhttp3.Response response) {
+                try (response) {
+                    result.complete(readContent(response));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled())
+                call.cancel();
+        });
+        return result;
+    }
+
+    /**
+     * Запрашивает у OpenRouter потоковый ответ ("stream": true) и передаёт
+     * в onPartial весь полученный текст после каждого фрагмента.
+     * События SSE разбираются по строкам прямо из потока ответа, не дожидаясь его конца.
+     * Отмена future отменяет и HTTP-запрос.
+     */
+    @Override
+    public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+        log.info("Потоковый запрос к OpenRouter ({} символов)...", prompt.length());
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Call call = client.newCall(buildRequest(prompt, true));
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                log.error("Ошибка при соединении с OpenRouter API", e);
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, okhttp3.Response response) {
+                try (response) {
+                    result.complete(readStream(response, onPartial));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled())
+                call.cancel();
+        });
+        return result;
+    }
+
+    /** Формирует HTTP-запрос к OpenRouter с системным и пользовательским сообщением. */
+    private Request buildRequest(String prompt) {
+        return buildRequest(prompt, false);
+    }
+
+    /**
+     * Формирует HTTP-запрос к OpenRouter с системным и пользовательским сообщением.
+     * При stream=true сервер отдаёт ответ по частям в формате SSE.
+     */
+    private Request buildRequest(String prompt, boolean stream) {
         JSONObject json = new JSONObject()
                 .put("model", MODEL)
                 .put("messages", new JSONArray()
@@ -91,13 +197,15 @@ public class GiftIdeaService implements GiftIdeaGenerator {
                         .put(new JSONObject()
                                 .put("role", "user")
                                 .put("content", prompt)));
+        if (stream)
+            json.put("stream", true);
 
         RequestBody body = RequestBody.create(
                 json.toString(),
                 MediaType.get(CONTENT_TYPE_VALUE)
         );
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(apiUrl())
                 .header(HEADER_AUTH, "Bearer " + apiKey)
                 .header(HEADER_CONTENT_TYPE, CONTENT_TYPE_VALUE)
@@ -105,28 +213,69 @@ public class GiftIdeaService implements GiftIdeaGenerator {
                 .header(HEADER_TITLE, TITLE_VALUE)
                 .post(body)
                 .build();
+    }
 
-        try (okhttp3.Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                log.error("Ошибка от OpenRouter: код {}", response.code());
-                throw new IOException("Ошибка от OpenRouter: " + response.code());
-            }
+    /**
+     * Проверяет код ответа и извлекает текст первой подсказки модели.
+     * При неуспешном коде выбрасывает IOException.
+     */
+    private String readContent(okhttp3.Response response) throws IOException {
+        checkStatus(response);
 
-            String bodyString = response.body().string();
-            JSONObject jsonResp = new JSONObject(bodyString);
+        String bodyString = response.body().string();
+        JSONObject jsonResp = new JSONObject(bodyString);
 
-            String content = jsonResp.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content")
-                    .trim();
+        String content = jsonResp.getJSONArray("choices")
+                .getJSONObject(0)
+                .getJSONObject("message")
+                .getString("content")
+                .trim();
 
-            log.info("Успешно получен ответ от OpenRouter ({} символов)", content.length());
-            return content;
+        log.info("Успешно получен ответ от OpenRouter ({} символов)", content.length());
+        return content;
+    }
 
-        } catch (IOException e) {
-            log.error("Ошибка при соединении с OpenRouter API", e);
-            throw e;
+    /**
+     * Читает потоковый ответ: строки "data: {...}" с фрагментами текста
+     * в choices[0].delta.content до строки "data: [DONE]".
+     * Комментарии SSE (строки с ":") и пустые строки пропускаются.
+     */
+    private String readStream(okhttp3.Response response, Consumer<String> onPartial) throws IOException {
+        checkStatus(response);
+
+        BufferedSource source = response.body().source();
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data:"))
+                continue;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]"))
+                break;
+            JSONObject chunk = new JSONObject(data);
+            if (chunk.has("error"))
+                throw new IOException("Ошибка от OpenRouter: " + chunk.getJSONObject("error").optString("message"));
+            JSONArray choices = chunk.optJSONArray("choices");
+            if (choices == null || choices.isEmpty())
+                continue;
+            JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+            String piece = delta == null ? "" : delta.optString("content", "");
+            if (!piece.isEmpty()) {
+                text.append(piece);
+                onPartial.accept(text.toString());
+            }
+        }
+
+        String content = text.toString().trim();
+        log.info("Успешно получен потоковый ответ от OpenRouter ({} символов)", content.length());
+        return content;
+    }
+
+    /** Выбрасывает IOException, если код ответа неуспешный. */
+    private static void checkStatus(okhttp3.Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            log.error("Ошибка от OpenRouter: код {}", response.code());
+            throw new IOException("Ошибка от OpenRouter: " + response.code());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+package org.example;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Класс HttpClientFactory создаёт HTTP-клиенты OkHttp для Telegram и OpenRouter.
+ * Все клиенты делят один пул соединений и один диспетчер асинхронных запросов,
+ * поэтому соединения переиспользуются, а лимиты общие.
+ * Таймауты, размер пула, время жизни простаивающих соединений,
+ * лимиты диспетчера и предпочтение HTTP/2 задаются настройками HTTP_*.
+ */
+public class HttpClientFactory {
+
+    /** Общая фабрика процесса или null, пока она не нужна. */
+    private static HttpClientFactory shared;
+
+    /** Базовый клиент, от которого строятся остальные. */
+    private final OkHttpClient base;
+
+    /** Общий пул соединений. */
+    private final ConnectionPool pool;
+
+    /** Таймаут всего вызова для запросов к нейросети. */
+    private final Duration callTimeout;
+
+    /** Число начатых запросов. */
+    private final LongAdder calls = new LongAdder();
+
+    /** Число открытых новых соединений. */
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    /** Число выдач соединения запросу (новых и из пула). */
+    private final LongAdder connectionsAcquired = new LongAdder();
+
+    /**
+     * Создаёт фабрику с заданными настройками.
+     *
+     * @param connectTimeout     таймаут установки соединения
+     * @param readTimeout        таймаут ожидания очередных данных ответа
+     * @param callTimeout        таймаут всего запроса к нейросети (0 — без ограничения)
+     * @param maxIdle            сколько простаивающих соединений держать в пуле
+     * @param keepAlive          сколько держать простаивающее соединение
+     * @param maxRequests        лимит одновременных асинхронных запросов
+     * @param maxRequestsPerHost лимит одновременных асинхронных запросов к одному хосту
+     * @param preferHttp2        договариваться о HTTP/2, если сервер его поддерживает
+     */
+    public HttpClientFactory(Duration connectTimeout, Duration readTimeout, Duration callTimeout,
+                             int maxIdle, Duration keepAlive, int maxRequests, int maxRequestsPerHost,
+                             boolean preferHttp2) {
+        this.pool = new ConnectionPool(maxIdle, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        this.callTimeout = callTimeout;
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        this.base = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .protocols(preferHttp2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .eventListener(new Counters())
+                .build();
+    }
+
+    /**
+     * Создаёт фабрику по настройкам HTTP_CONNECT_TIMEOUT_MS, HTTP_READ_TIMEOUT_MS,
+     * HTTP_CALL_TIMEOUT_MS, HTTP_POOL_IDLE, HTTP_KEEP_ALIVE_SECONDS,
+     * HTTP_MAX_REQUESTS, HTTP_MAX_REQUESTS_PER_HOST и HTTP_PREFER_HTTP2.
+     */
+    public static HttpClientFactory fromConfig(BotConfig config) {
+        return new HttpClientFactory(
+                Duration.ofMillis(config.getInt("HTTP_CONNECT_TIMEOUT_MS", 10_000)),
+                Duration.ofMillis(config.getInt("HTTP_READ_TIMEOUT_MS", 30_000)),
+                Duration.ofMillis(config.getInt("HTTP_CALL_TIMEOUT_MS", 120_000)),
+                config.getInt("HTTP_POOL_IDLE", 16),
+                Duration.ofSeconds(config.getInt("HTTP_KEEP_ALIVE_SECONDS", 300)),
+                config.getInt("HTTP_MAX_REQUESTS", 64),
+                config.getInt("HTTP_MAX_REQUESTS_PER_HOST", 16),
+                Boolean.parseBoolean(config.get("HTTP_PREFER_HTTP2", "true")));
+    }
+
+    /** Возвращает общую фабрику процесса, создавая её по настройкам при первом обращении. */
+    public static synchronized HttpClientFactory shared() {
+        if (shared == null)
+            shared = fromConfig(new BotConfig());
+        return shared;
+    }
+
+    /**
+     * Возвращает клиент для OpenRouter: общий пул и диспетчер,
+     * таймаут всего запроса — HTTP_CALL_TIMEOUT_MS.
+     */
+    public OkHttpClient forApi() {
+        return base.newBuilder()
+                .callTimeout(callTimeout)
+                .build();
+    }
+
+    /**
+     * Возвращает клиент для Telegram Bot API. Таймаут чтения не меньше
+     * времени long polling с запасом, а таймаута всего запроса нет,
+     * чтобы getUpdates не обрывался раньше ответа сервера.
+     */
+    public OkHttpClient forTelegram(int pollTimeoutSeconds) {
+        long readMillis = Math.max(base.readTimeoutMillis(),
+                TimeUnit.SECONDS.toMillis(pollTimeoutSeconds + 15L));
+        return base.newBuilder()
+                .readTimeout(Duration.ofMillis(readMillis))
+                .callTimeout(Duration.ZERO)
+                .build();
+    }
+
+    /** Возвращает статистику соединений всех клиентов фабрики. */
+    public Stats stats() {
+        return new Stats(calls.sum(), connectionsOpened.sum(), connectionsAcquired.sum(),
+                pool.connectionCount(), pool.idleConnectionCount());
+    }
+
+    /** Считает запросы, новые соединения и выдачи соединений. */
+    private final class Counters extends EventListener {
+        @Override
+        public void callStart(Call call) {
+            calls.increment();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectionsOpened.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.increment();
+        }
+    }
+
+    /**
+     * Статистика соединений.
+     *
+     * @param calls               число начатых запросов
+     * @param connectionsOpened   число попыток открыть новое соединение
+     * @param connectionsAcquired число выдач соединения запросу
+     * @param pooled              соединений в пуле сейчас
+     * @param idle                из них простаивает
+     */
+    public record Stats(long calls, long connectionsOpened, long connectionsAcquired, int pooled, int idle) {
+
+        /** Доля выдач, обслуженных уже открытым соединением, от 0 до 1. */
+        public double reuseRate() {
+            if (connectionsAcquired == 0)
+                return 0;
+            return Math.max(0, (double) (connectionsAcquired - connectionsOpened) / connectionsAcquired);
+        }
+    }
+}
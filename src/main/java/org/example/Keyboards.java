@@ -3,6 +3,8 @@ package org.example;
 import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
 import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.model.request.ReplyKeyboardMarkup;
+import org.example.db.NamePage;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -33,6 +35,23 @@ public class Keyboards {
         return kb;
     }
 
+    /**
+     * Формирует клавиатуру с одной страницей списка анкет.
+     * Под анкетами добавляется строка «◀ ▶» для перехода к соседним страницам:
+     * в callback передаётся первое или последнее имя страницы.
+     */
+    public InlineKeyboardMarkup formListPage(NamePage page) {
+        InlineKeyboardMarkup kb = formList(page.names());
+        List<InlineKeyboardButton> nav = new ArrayList<>(2);
+        if (page.hasPrev() && !page.isEmpty())
+            nav.add(new InlineKeyboardButton("◀").callbackData("forms<:" + page.names().get(0)));
+        if (page.hasNext() && !page.isEmpty())
+            nav.add(new InlineKeyboardButton("▶").callbackData("forms>:" + page.names().get(page.names().size() - 1)));
+        if (!nav.isEmpty())
+            kb.addRow(nav.toArray(new InlineKeyboardButton[0]));
+        return kb;
+    }
+
     /**
      * Создаёт клавиатуру с действиями для выбранной анкеты.
      * Включает кнопки редактирования, удаления и генерации идеи.
@@ -1,6 +1,9 @@
 package org.example;
 
+import com.pengrad.telegrambot.TelegramBot;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Главный класс приложения.
@@ -9,14 +12,50 @@ import io.github.cdimascio.dotenv.Dotenv;
  */
 public class Main {
 
-    public static void main(String[] args) {
+    /** Логгер приложения */
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
+    public static void main(String[] args) throws Exception {
         Dotenv dotenv = Dotenv.configure().load();
+        BotConfig config = new BotConfig(dotenv);
+
+        String token = config.get("TOKEN_BOT", null);
+        UpdateDispatcher dispatcher = new UpdateDispatcher(
+                config.getInt("DISPATCH_LANES", Runtime.getRuntime().availableProcessors() * 4),
+                config.getInt("DISPATCH_QUEUE", 256));
+        HttpClientFactory http = HttpClientFactory.shared();
+        TelegramBot api = new TelegramBot.Builder(token)
+                .okHttpClient(http.forTelegram(config.getInt("POLL_TIMEOUT_SECONDS", 30)))
+                .build();
+        OutboundScheduler outbound = new OutboundScheduler(api,
+                config.getInt("SEND_GLOBAL_PER_SECOND", 30),
+                config.getInt("SEND_CHAT_PER_SECOND", 1),
+                config.getInt("SEND_CHAT_BURST", 3),
+                config.getInt("SEND_THREADS", 4),
+                config.getInt("SEND_EDIT_INTERVAL_MS", 1000));
+        PollingOptions polling = new PollingOptions(
+                config.getInt("POLL_BATCH_SIZE", 100),
+                config.getInt("POLL_TIMEOUT_SECONDS", 30),
+                config.getInt("MAX_IN_FLIGHT", 512),
+                config.getInt("ACK_TIMEOUT_SECONDS", 30),
+                config.getInt("DEDUP_CAPACITY", 4096));
+        TgBot bot = new TgBot(api, dispatcher, outbound, polling);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            bot.stop();
+            log.info("HTTP: {}", http.stats());
+        }));
 
-        String token = System.getenv("TOKEN_BOT");
-        if (token == null || token.isBlank()) {
-            token = dotenv.get("TOKEN_BOT");
+        if ("webhook".equalsIgnoreCase(config.get("BOT_MODE", "polling"))) {
+            String url = config.get("WEBHOOK_URL", null);
+            if (url == null)
+                throw new IllegalStateException("Для режима webhook нужен WEBHOOK_URL");
+            bot.startWebhook(
+                    config.getInt("WEBHOOK_PORT", 8080),
+                    config.get("WEBHOOK_PATH", "/telegram"),
+                    url,
+                    config.get("WEBHOOK_SECRET", null));
+        } else {
+            bot.start();
         }
-        TgBot bot = new TgBot(token);
-        bot.start();
     }
 }
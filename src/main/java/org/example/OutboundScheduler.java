@@ -0,0 +1,519 @@
+package org.example;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
+import com.pengrad.telegrambot.request.EditMessageText;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс OutboundScheduler отправляет ответы бота в Telegram с учётом лимитов API.
+ * Ответы складываются в очереди по чатам, а небольшой пул потоков-отправителей
+ * забирает их, соблюдая общий лимит частоты и лимит каждого чата.
+ * Если Telegram отвечает 429, на время из retry_after откладывается чат
+ * и приостанавливается общий лимит: Telegram ограничивает весь бот, а не один чат.
+ * Обработка входящих обновлений не ждёт сетевой отправки.
+ *
+ * Пока готовится отложенный ответ, заглушка редактируется его промежуточными
+ * версиями не чаще одного раза за editInterval; в очередь попадает только
+ * последняя версия, а после отложенного ответа промежуточные больше не отправляются.
+ */
+public class OutboundScheduler implements AutoCloseable {
+
+    /** Логгер планировщика отправки. */
+    private static final Logger log = LoggerFactory.getLogger(OutboundScheduler.class);
+
+    /** Код ответа Telegram при превышении лимита запросов. */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /** Сколько раз повторять отправку при сетевой ошибке. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Минимальный интервал между промежуточными редактированиями одного сообщения. */
+    private static final long DEFAULT_EDIT_INTERVAL_MILLIS = 1000;
+
+    /** Telegram API клиент. */
+    private final TelegramBot bot;
+
+    /** Общий лимит частоты на все чаты. */
+    private final TokenBucket global;
+
+    /** Скорость отправки в один чат (сообщений в секунду). */
+    private final double chatPerSecond;
+
+    /** Допустимый всплеск сообщений в один чат. */
+    private final int chatBurst;
+
+    /** Минимальный интервал между промежуточными редактированиями в наносекундах. */
+    private final long editIntervalNanos;
+
+    /** Очереди ответов по чатам. */
+    private final Map<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+
+    /** Чаты, готовые к отправке, упорядоченные по времени готовности. */
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+
+    /** Число ответов, ожидающих отправки. */
+    private final AtomicInteger depth = new AtomicInteger();
+
+    /** Потоки-отправители. */
+    private final Thread[] senders;
+
+    /** Периодическая очистка очередей неактивных чатов. */
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outbound-sweeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Признак работы планировщика. */
+    private volatile boolean running = true;
+
+    /**
+     * Создаёт планировщик со стандартными лимитами Telegram:
+     * 30 сообщений в секунду всего и 1 сообщение в секунду на чат.
+     */
+    public OutboundScheduler(TelegramBot bot) {
+        this(bot, 30, 1, 3, 4);
+    }
+
+    /**
+     * Создаёт планировщик с заданными лимитами и числом потоков-отправителей.
+     */
+    public OutboundScheduler(TelegramBot bot, double globalPerSecond, double chatPerSecond,
+                             int chatBurst, int senderThreads) {
+        this(bot, globalPerSecond, chatPerSecond, chatBurst, senderThreads,
+                DEFAULT_EDIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Создаёт планировщик с заданными лимитами, числом потоков-отправителей
+     * и минимальным интервалом между промежуточными редактированиями.
+     */
+    public OutboundScheduler(TelegramBot bot, double globalPerSecond, double chatPerSecond,
+                             int chatBurst, int senderThreads, long editIntervalMillis) {
+        this.bot = bot;
+        this.editIntervalNanos = TimeUnit.MILLISECONDS.toNanos(editIntervalMillis);
+        this.global = new TokenBucket(globalPerSecond, Math.max(1, (int) globalPerSecond));
+        this.chatPerSecond = chatPerSecond;
+        this.chatBurst = chatBurst;
+        this.senders = new Thread[senderThreads];
+        for (int i = 0; i < senderThreads; i++) {
+            senders[i] = new Thread(this::sendLoop, "outbound-" + i);
+            senders[i].setDaemon(true);
+            senders[i].start();
+        }
+        sweeper.scheduleWithFixedDelay(this::sweepIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Ставит ответ в очередь на отправку.
+     * Возвращает future, который завершается после доставки сообщения в Telegram
+     * или завершается ошибкой, если сообщение не удалось передать из-за сбоя сети.
+     * Отложенное продолжение ответа отправляется отдельно, как редактирование.
+     */
+    public CompletableFuture<Void> submit(Response resp) {
+        return enqueue(new Outgoing(resp, null));
+    }
+
+    /** Возвращает число ответов, ожидающих отправки. */
+    public int queueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Останавливает отправителей, дав им до 5 секунд на отправку очереди.
+     */
+    @Override
+    public void close() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (depth.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        running = false;
+        sweeper.shutdownNow();
+        for (Thread t : senders)
+            t.interrupt();
+    }
+
+    /** Добавляет сообщение в очередь его чата и при необходимости делает чат готовым. */
+    private CompletableFuture<Void> enqueue(Outgoing item) {
+        long chatId = item.resp.getChatId();
+        while (true) {
+            ChatQueue q = chats.computeIfAbsent(chatId, id -> new ChatQueue(id, new TokenBucket(chatPerSecond, chatBurst)));
+            synchronized (q) {
+                if (q.retired) continue;
+                q.items.addLast(item);
+                depth.incrementAndGet();
+                if (!q.scheduled) {
+                    q.scheduled = true;
+                    q.readyAt = System.nanoTime();
+                    ready.put(q);
+                }
+            }
+            return item.done;
+        }
+    }
+
+    /** Основной цикл потока-отправителя. */
+    private void sendLoop() {
+        while (running) {
+            ChatQueue q;
+            try {
+                q = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Outgoing item;
+            synchronized (q) {
+                item = q.items.peekFirst();
+                if (item == null) {
+                    q.scheduled = false;
+                    continue;
+                }
+            }
+            if (item.resolve() == null) {
+                // Промежуточная версия устарела: лимиты на неё не тратим
+                item.done.complete(null);
+                finish(q);
+                continue;
+            }
+            long wait = q.bucket.tryAcquire();
+            if (wait > 0) {
+                reschedule(q, wait);
+                continue;
+            }
+            try {
+                global.acquire();
+            } catch (InterruptedException e) {
+                reschedule(q, 0);
+                return;
+            }
+
+            long retryAfterNanos = send(item);
+            if (retryAfterNanos > 0) {
+                reschedule(q, retryAfterNanos);
+                continue;
+            }
+            finish(q);
+        }
+    }
+
+    /** Убирает отправленное сообщение из очереди чата и делает чат снова готовым. */
+    private void finish(ChatQueue q) {
+        synchronized (q) {
+            q.items.pollFirst();
+            depth.decrementAndGet();
+            if (q.items.isEmpty()) {
+                q.scheduled = false;
+            } else {
+                q.readyAt = System.nanoTime();
+                ready.put(q);
+            }
+        }
+    }
+
+    /** Возвращает чат в очередь готовности через указанное время. */
+    private void reschedule(ChatQueue q, long delayNanos) {
+        synchronized (q) {
+            q.readyAt = System.nanoTime() + delayNanos;
+            ready.put(q);
+        }
+    }
+
+    /**
+     * Отправляет одно сообщение.
+     * Возвращает задержку в наносекундах, если сообщение нужно повторить позже,
+     * или 0, если сообщение обработано (успешно или с окончательной ошибкой).
+     */
+    private long send(Outgoing item) {
+        BaseResponse result;
+        try {
+            result = item.editMessageId == null
+                    ? bot.execute(toMessage(item.resp))
+                    : bot.execute(toEdit(item.resolve(), item.editMessageId));
+        } catch (RuntimeException e) {
+            if (++item.attempts < MAX_ATTEMPTS) {
+                log.warn("Ошибка отправки в чат {}, попытка {}", item.resp.getChatId(), item.attempts, e);
+                return TimeUnit.MILLISECONDS.toNanos(500L * item.attempts);
+            }
+            log.error("Не удалось отправить сообщение в чат {}", item.resp.getChatId(), e);
+            item.done.completeExceptionally(e);
+            if (item.live == null)
+                scheduleFollowUp(item.resp, null);
+            return 0;
+        }
+
+        if (result != null && !result.isOk() && result.errorCode() == TOO_MANY_REQUESTS) {
+            int retryAfter = result.parameters() != null && result.parameters().retryAfter() != null
+                    ? result.parameters().retryAfter() : 1;
+            log.warn("Лимит Telegram в чате {}, отправка приостановлена на {} с", item.resp.getChatId(), retryAfter);
+            long retryAfterNanos = TimeUnit.SECONDS.toNanos(retryAfter);
+            global.pause(retryAfterNanos);
+            return retryAfterNanos;
+        }
+
+        // Отказ Telegram (например, бот заблокирован) повтором не исправить,
+        // поэтому такое сообщение считается обработанным.
+        Integer messageId = null;
+        if (result == null || !result.isOk()) {
+            String reason = result == null ? "нет ответа" : result.errorCode() + " " + result.description();
+            log.error("Telegram отклонил сообщение в чат {}: {}", item.resp.getChatId(), reason);
+        } else if (result instanceof SendResponse sent && sent.message() != null) {
+            messageId = sent.message().messageId();
+        }
+        item.done.complete(null);
+        if (item.live == null)
+            scheduleFollowUp(item.resp, messageId);
+        return 0;
+    }
+
+    /**
+     * Планирует отправку отложенного продолжения ответа.
+     * Если исходное сообщение доставлено, продолжение его редактирует,
+     * иначе отправляется новым сообщением. До продолжения доставленное
+     * сообщение редактируется промежуточными версиями, если они есть.
+     */
+    private void scheduleFollowUp(Response resp, Integer messageId) {
+        if (resp.getFollowUp() == null) return;
+        LiveEdit live = messageId != null && resp.getProgress() != null
+                ? new LiveEdit(resp, messageId, editIntervalNanos)
+                : null;
+        if (live != null)
+            resp.getProgress().onUpdate(() -> scheduleLiveEdit(live));
+        resp.getFollowUp().thenAccept(next -> {
+            if (live != null)
+                live.finish();
+            if (next != null)
+                enqueue(new Outgoing(next, messageId));
+        });
+    }
+
+    /**
+     * Ставит в очередь редактирование промежуточной версией, если оно ещё не стоит.
+     * Если прошлое редактирование было меньше editInterval назад, ждёт остаток интервала.
+     */
+    private void scheduleLiveEdit(LiveEdit live) {
+        long delay = live.claim();
+        if (delay < 0)
+            return;
+        if (delay == 0) {
+            enqueue(new Outgoing(live));
+            return;
+        }
+        try {
+            sweeper.schedule(() -> enqueue(new Outgoing(live)), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Планировщик остановлен: промежуточная версия уже не нужна
+        }
+    }
+
+    /** Удаляет пустые очереди чатов, у которых восстановился лимит. */
+    private void sweepIdle() {
+        for (ChatQueue q : chats.values()) {
+            synchronized (q) {
+                if (!q.scheduled && q.items.isEmpty() && q.bucket.isFull()) {
+                    q.retired = true;
+                    chats.remove(q.chatId, q);
+                }
+            }
+        }
+    }
+
+    /** Преобразует ответ в запрос на отправку нового сообщения. */
+    private static SendMessage toMessage(Response resp) {
+        SendMessage msg = new SendMessage(resp.getChatId(), resp.getText());
+        if (resp.getMarkup() != null)
+            msg.replyMarkup(resp.getMarkup());
+        return msg;
+    }
+
+    /**
+     * Преобразует ответ в запрос на редактирование уже отправленного сообщения.
+     * Редактирование поддерживает только inline-клавиатуры, остальные игнорируются.
+     */
+    private static EditMessageText toEdit(Response resp, int messageId) {
+        EditMessageText edit = new EditMessageText(resp.getChatId(), messageId, resp.getText());
+        if (resp.getMarkup() instanceof InlineKeyboardMarkup inline)
+            edit.replyMarkup(inline);
+        return edit;
+    }
+
+    /**
+     * Одно исходящее сообщение: новый ответ, редактирование отправленного
+     * или редактирование промежуточной версией отложенного ответа.
+     */
+    private static class Outgoing {
+        /** Ответ, который нужно доставить (для промежуточной версии — заглушка). */
+        final Response resp;
+
+        /** Идентификатор редактируемого сообщения или null для нового сообщения. */
+        final Integer editMessageId;
+
+        /** Источник промежуточной версии или null. */
+        final LiveEdit live;
+
+        /** Завершается после доставки. */
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /** Число неудачных попыток отправки. */
+        int attempts;
+
+        /** Промежуточная версия, выбранная при первой попытке отправки. */
+        private Response resolved;
+
+        /** Промежуточная версия уже выбрана. */
+        private boolean taken;
+
+        Outgoing(Response resp, Integer editMessageId) {
+            this.resp = resp;
+            this.editMessageId = editMessageId;
+            this.live = null;
+        }
+
+        Outgoing(LiveEdit live) {
+            this.resp = live.placeholder;
+            this.editMessageId = live.messageId;
+            this.live = live;
+        }
+
+        /**
+         * Возвращает ответ для отправки. Промежуточная версия берётся
+         * последней на момент первой попытки; null — отправлять нечего.
+         */
+        Response resolve() {
+            if (live == null)
+                return resp;
+            if (!taken) {
+                resolved = live.take();
+                taken = true;
+            }
+            return resolved;
+        }
+    }
+
+    /**
+     * Промежуточные редактирования одного сообщения-заглушки.
+     * В очереди чата стоит не больше одного такого редактирования.
+     */
+    private static class LiveEdit {
+        /** Сообщение-заглушка с источником промежуточных версий. */
+        final Response placeholder;
+
+        /** Идентификатор доставленной заглушки. */
+        final int messageId;
+
+        /** Минимальный интервал между редактированиями в наносекундах. */
+        private final long intervalNanos;
+
+        /** Редактирование стоит в очереди или ждёт интервала. */
+        private boolean pending;
+
+        /** Отложенный ответ готов, промежуточные версии больше не нужны. */
+        private boolean finished;
+
+        /** Момент (System.nanoTime), раньше которого следующее редактирование не ставится. */
+        private long nextAt = System.nanoTime();
+
+        /** Текст последней отправленной версии. */
+        private String lastText;
+
+        LiveEdit(Response placeholder, int messageId, long intervalNanos) {
+            this.placeholder = placeholder;
+            this.messageId = messageId;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * Занимает место в очереди под следующее редактирование.
+         * Возвращает задержку в наносекундах или -1, если ставить не нужно.
+         */
+        synchronized long claim() {
+            if (pending || finished)
+                return -1;
+            pending = true;
+            return Math.max(0, nextAt - System.nanoTime());
+        }
+
+        /**
+         * Забирает последнюю версию для отправки. Возвращает null,
+         * если она уже отправлена или отложенный ответ готов.
+         */
+        synchronized Response take() {
+            pending = false;
+            if (finished)
+                return null;
+            Response latest = placeholder.getProgress().latest();
+            if (latest == null || latest.getText().equals(lastText))
+                return null;
+            lastText = latest.getText();
+            nextAt = System.nanoTime() + intervalNanos;
+            return latest;
+        }
+
+        /** Отмечает, что отложенный ответ готов. */
+        synchronized void finish() {
+            finished = true;
+        }
+    }
+
+    /**
+     * Очередь сообщений одного чата вместе с его лимитом.
+     * Чат находится в очереди готовности не более одного раза,
+     * поэтому сообщения одного чата отправляются строго по порядку.
+     */
+    private static class ChatQueue implements Delayed {
+        /** Идентификатор чата. */
+        final long chatId;
+
+        /** Лимит частоты отправки в этот чат. */
+        final TokenBucket bucket;
+
+        /** Сообщения, ожидающие отправки. */
+        final ArrayDeque<Outgoing> items = new ArrayDeque<>();
+
+        /** Чат стоит в очереди готовности или обрабатывается отправителем. */
+        boolean scheduled;
+
+        /** Очередь удалена из таблицы чатов и больше не принимает сообщения. */
+        boolean retired;
+
+        /** Момент (System.nanoTime), когда чат снова можно обслуживать. */
+        volatile long readyAt;
+
+        ChatQueue(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((ChatQueue) other).readyAt);
+        }
+    }
+}
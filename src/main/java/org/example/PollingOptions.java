@@ -0,0 +1,19 @@
+package org.example;
+
+/**
+ * Настройки приёма обновлений.
+ *
+ * @param batchSize          сколько обновлений запрашивать за один long polling
+ * @param pollTimeoutSeconds сколько секунд Telegram держит запрос getUpdates
+ * @param maxInFlight        сколько обновлений может обрабатываться одновременно
+ * @param ackTimeoutSeconds  сколько ждать обработки пачки перед подтверждением
+ * @param dedupCapacity      сколько последних update_id помнить для защиты от повторов
+ */
+public record PollingOptions(int batchSize, int pollTimeoutSeconds, int maxInFlight,
+                             int ackTimeoutSeconds, int dedupCapacity) {
+
+    /** Возвращает настройки по умолчанию. */
+    public static PollingOptions defaults() {
+        return new PollingOptions(100, 30, 512, 30, 4096);
+    }
+}
@@ -0,0 +1,24 @@
+package org.example;
+
+import java.time.Duration;
+
+/**
+ * Настройки защиты запросов к нейросети.
+ *
+ * @param maxConcurrent   сколько запросов может выполняться одновременно
+ * @param window          по скольким последним запросам считается доля ошибок
+ * @param failureRate     доля ошибок от 0 до 1, при которой запросы прекращаются
+ * @param openDuration    сколько не отправлять запросы после срабатывания
+ * @param minTimeout      нижняя граница таймаута запроса
+ * @param maxTimeout      верхняя граница таймаута и таймаут, пока задержки ещё не измерены
+ * @param timeoutFactor   во сколько раз таймаут больше 99-го перцентиля задержки
+ */
+public record ResilienceOptions(int maxConcurrent, int window, double failureRate, Duration openDuration,
+                                Duration minTimeout, Duration maxTimeout, double timeoutFactor) {
+
+    /** Возвращает настройки по умолчанию. */
+    public static ResilienceOptions defaults() {
+        return new ResilienceOptions(8, 20, 0.5, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), Duration.ofSeconds(60), 1.5);
+    }
+}
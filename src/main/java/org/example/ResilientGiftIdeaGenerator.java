@@ -0,0 +1,417 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Генератор идей, который защищает бота от медленной или сбоящей нейросети.
+ * <ul>
+ *     <li>Ограничитель: одновременно выполняется не больше maxConcurrent запросов,
+ *     лишние сразу отклоняются, а не ждут в очереди.</li>
+ *     <li>Предохранитель: если среди последних window запросов доля ошибок
+ *     достигла failureRate, запросы openDuration отклоняются без обращения к API.
+ *     Затем пропускается один пробный запрос: успех возвращает обычный режим,
+ *     ошибка снова размыкает предохранитель.</li>
+ *     <li>Таймаут: 99-й перцентиль задержки успешных запросов, умноженный
+ *     на timeoutFactor, в границах от minTimeout до maxTimeout. По таймауту
+ *     запрос к генератору отменяется и считается ошибкой. Потоковый ответ
+ *     длиннее обычного, поэтому для него таймаут ограничивает не весь ответ,
+ *     а ожидание первого фрагмента и паузы между фрагментами: каждый фрагмент
+ *     перезапускает отсчёт. Первый фрагмент ждут дольше, чем следующие,
+ *     поэтому у ожидания первого фрагмента и у пауз свои задержки и свои
+ *     таймауты. Задержки обычных и потоковых запросов учитываются отдельно.</li>
+ * </ul>
+ * Отклонённые запросы завершаются RejectedExecutionException, просроченные — TimeoutException.
+ */
+public class ResilientGiftIdeaGenerator implements GiftIdeaGenerator {
+
+    /** Логгер для вывода информации о срабатываниях защиты. */
+    private static final Logger log = LoggerFactory.getLogger(ResilientGiftIdeaGenerator.class);
+
+    /** Сколько последних задержек хранится для расчёта перцентиля. */
+    private static final int LATENCY_SAMPLES = 256;
+
+    /** Сколько задержек нужно, чтобы таймаут начал подстраиваться. */
+    private static final int MIN_SAMPLES = 20;
+
+    /** Общий поток для срабатывания таймаутов. */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ideas-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Генератор, к которому уходят пропущенные запросы. */
+    private final GiftIdeaGenerator delegate;
+
+    /** Настройки защиты. */
+    private final ResilienceOptions options;
+
+    /** Свободные места для одновременных запросов. */
+    private final Semaphore permits;
+
+    /** Источник текущего времени в наносекундах. */
+    private final LongSupplier clock;
+
+    /** Исходы последних запросов по кругу: true — ошибка. */
+    private final boolean[] outcomes;
+
+    /** Число записанных исходов (не больше размера окна). */
+    private int outcomeCount;
+
+    /** Позиция следующего исхода. */
+    private int outcomeNext;
+
+    /** Число ошибок среди записанных исходов. */
+    private int failures;
+
+    /** Состояние предохранителя. */
+    private State state = State.CLOSED;
+
+    /** Момент, до которого предохранитель разомкнут. */
+    private long openUntil;
+
+    /** Пробный запрос полуоткрытого предохранителя уже выполняется. */
+    private boolean trialInFlight;
+
+    /** Задержки последних успешных обычных запросов. */
+    private final Latencies callLatencies = new Latencies();
+
+    /** Ожидание первого фрагмента потоковых запросов. */
+    private final Latencies firstTokenLatencies = new Latencies();
+
+    /** Паузы между фрагментами потоковых запросов. */
+    private final Latencies streamLatencies = new Latencies();
+
+    /** Число запросов, отклонённых ограничителем. */
+    private final LongAdder bulkheadRejected = new LongAdder();
+
+    /** Число запросов, отклонённых предохранителем. */
+    private final LongAdder circuitRejected = new LongAdder();
+
+    /** Число просроченных запросов. */
+    private final LongAdder timeouts = new LongAdder();
+
+    /** Создаёт защиту вокруг генератора с заданными настройками. */
+    public ResilientGiftIdeaGenerator(GiftIdeaGenerator delegate, ResilienceOptions options) {
+        this(delegate, options, System::nanoTime);
+    }
+
+    /** Конструктор для тестов — позволяет подменить часы. */
+    ResilientGiftIdeaGenerator(GiftIdeaGenerator delegate, ResilienceOptions options, LongSupplier clock) {
+        if (options.maxConcurrent() < 1 || options.window() < 1)
+            throw new IllegalArgumentException("Лимит запросов и окно ошибок должны быть положительными");
+        this.delegate = delegate;
+        this.options = options;
+        this.permits = new Semaphore(options.maxConcurrent());
+        this.clock = clock;
+        this.outcomes = new boolean[options.window()];
+    }
+
+    /** Выполняет защищённый запрос и ждёт его результат. */
+    @Override
+    public String fetchGiftIdeas(String prompt) throws Exception {
+        try {
+            return fetchGiftIdeasAsync(prompt).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ex ? ex : e;
+        }
+    }
+
+    /** Выполняет защищённый асинхронный запрос. */
+    @Override
+    public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+        return guarded(progress -> delegate.fetchGiftIdeasAsync(prompt), false);
+    }
+
+    /** Выполняет защищённый потоковый запрос; каждый фрагмент продлевает таймаут. */
+    @Override
+    public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+        return guarded(progress -> delegate.streamGiftIdeas(prompt, text -> {
+            progress.run();
+            onPartial.accept(text);
+        }), true);
+    }
+
+    /** Область кэша совпадает с областью обёрнутого генератора. */
+    @Override
+    public String cacheScope() {
+        return delegate.cacheScope();
+    }
+
+    /** Возвращает текущий таймаут обычного запроса в миллисекундах. */
+    public synchronized long timeoutMillis() {
+        return timeoutMillis(callLatencies);
+    }
+
+    /** Возвращает текущий таймаут ожидания первого фрагмента потокового запроса в миллисекундах. */
+    public synchronized long firstTokenTimeoutMillis() {
+        return timeoutMillis(firstTokenLatencies);
+    }
+
+    /** Возвращает текущий таймаут паузы между фрагментами потокового запроса в миллисекундах. */
+    public synchronized long streamTimeoutMillis() {
+        return timeoutMillis(streamLatencies);
+    }
+
+    /** Возвращает статистику защиты. */
+    public synchronized Stats stats() {
+        return new Stats(state, bulkheadRejected.sum(), circuitRejected.sum(), timeouts.sum(),
+                callLatencies.p99(), timeoutMillis(), firstTokenLatencies.p99(), firstTokenTimeoutMillis(),
+                streamLatencies.p99(), streamTimeoutMillis());
+    }
+
+    /** Возвращает таймаут по перцентилю задержек samples в границах настроек. */
+    private long timeoutMillis(Latencies samples) {
+        long max = options.maxTimeout().toMillis();
+        if (samples.count < MIN_SAMPLES)
+            return max;
+        long scaled = (long) Math.ceil(samples.p99() * options.timeoutFactor());
+        return Math.max(options.minTimeout().toMillis(), Math.min(max, scaled));
+    }
+
+    /**
+     * Пропускает запрос через ограничитель, предохранитель и таймаут.
+     * call получает действие, которое потоковый запрос вызывает на каждом фрагменте:
+     * оно перезапускает отсчёт таймаута. Для обычного запроса отсчёт идёт от начала.
+     * Потоковый запрос до первого фрагмента ждёт по таймауту первого фрагмента,
+     * а после — по таймауту паузы между фрагментами.
+     */
+    private CompletableFuture<String> guarded(Function<Runnable, CompletableFuture<String>> call, boolean stream) {
+        if (!permits.tryAcquire()) {
+            bulkheadRejected.increment();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Слишком много одновременных запросов к нейросети"));
+        }
+        boolean trial;
+        try {
+            trial = admit();
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            circuitRejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Latencies firstSamples = stream ? firstTokenLatencies : callLatencies;
+        long firstTimeout;
+        long gapTimeout;
+        synchronized (this) {
+            firstTimeout = timeoutMillis(firstSamples);
+            gapTimeout = stream ? timeoutMillis(streamLatencies) : firstTimeout;
+        }
+        // Начало запроса или последний фрагмент потока
+        AtomicLong lastEvent = new AtomicLong(clock.getAsLong());
+        // Первый фрагмент потока уже пришёл: дальше отсчитываются паузы
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicReference<CompletableFuture<String>> inner = new AtomicReference<>();
+        CompletableFuture<String> result = new CompletableFuture<>();
+        // Исход учитывается ровно один раз и до завершения result,
+        // чтобы получивший ответ уже видел освобождённое место
+        AtomicBoolean settled = new AtomicBoolean();
+        Runnable expire = () -> {
+            if (!settled.compareAndSet(false, true))
+                return;
+            timeouts.increment();
+            permits.release();
+            record(trial, false, firstSamples, 0);
+            CompletableFuture<String> running = inner.get();
+            if (running != null)
+                running.cancel(true);
+            result.completeExceptionally(new TimeoutException(!stream
+                    ? "Нейросеть не ответила за " + firstTimeout + " мс"
+                    : started.get()
+                    ? "Нейросеть молчала дольше " + gapTimeout + " мс"
+                    : "Нейросеть не начала отвечать за " + firstTimeout + " мс"));
+        };
+        AtomicReference<ScheduledFuture<?>> timer =
+                new AtomicReference<>(TIMER.schedule(expire, firstTimeout, TimeUnit.MILLISECONDS));
+        Runnable progress = () -> {
+            if (settled.get())
+                return;
+            long now = clock.getAsLong();
+            boolean first = started.compareAndSet(false, true);
+            long waited = TimeUnit.NANOSECONDS.toMillis(now - lastEvent.getAndSet(now));
+            sample(first ? firstSamples : streamLatencies, waited);
+            timer.getAndSet(TIMER.schedule(expire, gapTimeout, TimeUnit.MILLISECONDS)).cancel(false);
+        };
+
+        CompletableFuture<String> running;
+        try {
+            running = call.apply(progress);
+        } catch (RuntimeException e) {
+            running = CompletableFuture.failedFuture(e);
+        }
+        inner.set(running);
+        // Таймаут мог сработать, пока запрос запускался
+        if (settled.get())
+            running.cancel(true);
+        running.whenComplete((ideas, error) -> {
+            if (!settled.compareAndSet(false, true))
+                return;
+            timer.get().cancel(false);
+            permits.release();
+            record(trial, error == null, started.get() ? streamLatencies : firstSamples,
+                    TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - lastEvent.get()));
+            if (error == null)
+                result.complete(ideas);
+            else
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+        });
+        result.whenComplete((ideas, error) -> {
+            if (!result.isCancelled() || !settled.compareAndSet(false, true))
+                return;
+            timer.get().cancel(false);
+            permits.release();
+            record(trial, null, firstSamples, 0);
+            inner.get().cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Решает, можно ли выполнить запрос. Возвращает true для пробного запроса
+     * полуоткрытого предохранителя; если нельзя — выбрасывает RejectedExecutionException.
+     */
+    private synchronized boolean admit() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openUntil < 0)
+                throw new RejectedExecutionException("Сервис идей временно недоступен");
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight)
+                throw new RejectedExecutionException("Сервис идей временно недоступен");
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Учитывает исход запроса; задержка успешного запроса попадает в samples.
+     * success равен null, если запрос отменён вызывающим.
+     */
+    private synchronized void record(boolean trial, Boolean success, Latencies samples, long latencyMillis) {
+        if (Boolean.TRUE.equals(success))
+            samples.add(latencyMillis);
+        if (trial) {
+            trialInFlight = false;
+            if (success == null)
+                return;
+            if (success) {
+                log.info("Сервис идей снова отвечает, предохранитель замкнут");
+                state = State.CLOSED;
+                Arrays.fill(outcomes, false);
+                outcomeCount = 0;
+                outcomeNext = 0;
+                failures = 0;
+            } else {
+                open();
+            }
+            return;
+        }
+        // Исходы запросов, начатых до размыкания, на состояние уже не влияют
+        if (success == null || state != State.CLOSED)
+            return;
+        boolean failed = !success;
+        if (outcomeCount == outcomes.length && outcomes[outcomeNext])
+            failures--;
+        outcomes[outcomeNext] = failed;
+        outcomeNext = (outcomeNext + 1) % outcomes.length;
+        outcomeCount = Math.min(outcomeCount + 1, outcomes.length);
+        if (failed)
+            failures++;
+        if (outcomeCount == outcomes.length && failures >= options.failureRate() * outcomes.length)
+            open();
+    }
+
+    /** Размыкает предохранитель на openDuration. */
+    private void open() {
+        log.warn("Сервис идей сбоит, запросы приостановлены на {} с", options.openDuration().toSeconds());
+        state = State.OPEN;
+        openUntil = clock.getAsLong() + options.openDuration().toNanos();
+    }
+
+    /** Запоминает ожидание первого фрагмента или паузу до очередного фрагмента потокового запроса. */
+    private synchronized void sample(Latencies samples, long latencyMillis) {
+        samples.add(latencyMillis);
+    }
+
+    /** Последние задержки по кругу, в миллисекундах. Доступ — под блокировкой генератора. */
+    private static final class Latencies {
+        /** Задержки по кругу. */
+        private final long[] values = new long[LATENCY_SAMPLES];
+
+        /** Число записанных задержек (не больше LATENCY_SAMPLES). */
+        private int count;
+
+        /** Позиция следующей задержки. */
+        private int next;
+
+        /** Запоминает задержку, вытесняя самую старую. */
+        void add(long latencyMillis) {
+            values[next] = latencyMillis;
+            next = (next + 1) % values.length;
+            count = Math.min(count + 1, values.length);
+        }
+
+        /** Возвращает 99-й перцентиль задержек или 0, если их нет. */
+        long p99() {
+            if (count == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(sorted.length * 0.99) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+
+    /** Состояние предохранителя. */
+    public enum State {
+        /** Запросы идут как обычно. */
+        CLOSED,
+        /** Запросы отклоняются без обращения к API. */
+        OPEN,
+        /** Пропускается один пробный запрос. */
+        HALF_OPEN
+    }
+
+    /**
+     * Статистика защиты.
+     *
+     * @param state            состояние предохранителя
+     * @param bulkheadRejected число запросов, отклонённых ограничителем
+     * @param circuitRejected  число запросов, отклонённых предохранителем
+     * @param timeouts         число просроченных запросов
+     * @param p99Millis        99-й перцентиль задержки успешных обычных запросов
+     * @param timeoutMillis    текущий таймаут обычного запроса
+     * @param firstTokenP99Millis     99-й перцентиль ожидания первого фрагмента потокового запроса
+     * @param firstTokenTimeoutMillis текущий таймаут ожидания первого фрагмента
+     * @param streamP99Millis  99-й перцентиль паузы между фрагментами потокового запроса
+     * @param streamTimeoutMillis текущий таймаут паузы между фрагментами
+     */
+    public record Stats(State state, long bulkheadRejected, long circuitRejected, long timeouts,
+                        long p99Millis, long timeoutMillis, long firstTokenP99Millis, long firstTokenTimeoutMillis,
+                        long streamP99Millis, long streamTimeoutMillis) {
+    }
+}
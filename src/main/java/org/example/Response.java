@@ -2,6 +2,8 @@ package org.example;
 
 import com.pengrad.telegrambot.model.request.Keyboard;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Класс Response представляет собой ответ бота пользователю.
  * Содержит идентификатор чата, текст сообщения и необязательную клавиатуру.
@@ -29,6 +31,21 @@ public class Response {
      */
     private final Keyboard markup;
 
+    /**
+     * Необязательный отложенный ответ, который заменит это сообщение.
+     * Используется для долгих операций: сначала пользователь сразу получает
+     * сообщение-заглушку, а после завершения future её текст редактируется.
+     * Если отложенного ответа нет, значение равно null.
+     */
+    private final CompletableFuture<Response> followUp;
+
+    /**
+     * Необязательные промежуточные версии отложенного ответа.
+     * Пока followUp не завершён, ими редактируется сообщение-заглушка.
+     * Если промежуточных версий нет, значение равно null.
+     */
+    private final ResponseStream progress;
+
     /**
      * Создает объект ответа без клавиатуры.
      * Используется, когда сообщение не требует кнопок.
@@ -42,9 +59,29 @@ public class Response {
      * Применяется, когда нужно отправить сообщение с кнопками.
      */
     public Response(long chatId, String text, Keyboard markup) {
+        this(chatId, text, markup, null);
+    }
+
+    /**
+     * Создает сообщение-заглушку, которое позже будет заменено отложенным ответом.
+     * Применяется, когда результат готовится долго и не должен задерживать обработку.
+     */
+    public Response(long chatId, String text, Keyboard markup, CompletableFuture<Response> followUp) {
+        this(chatId, text, markup, followUp, null);
+    }
+
+    /**
+     * Создает сообщение-заглушку, которое обновляется промежуточными версиями
+     * из progress, пока готовится отложенный ответ.
+     * Применяется, когда результат приходит по частям.
+     */
+    public Response(long chatId, String text, Keyboard markup, CompletableFuture<Response> followUp,
+                    ResponseStream progress) {
         this.chatId = chatId;
         this.text = text;
         this.markup = markup;
+        this.followUp = followUp;
+        this.progress = progress;
     }
 
     /**
@@ -62,4 +99,16 @@ public class Response {
      * Если клавиатура не использовалась, возвращает null.
      */
     public Keyboard getMarkup() { return markup; }
+
+    /**
+     * Возвращает отложенный ответ, которым нужно заменить это сообщение.
+     * Если ответ не отложенный, возвращает null.
+     */
+    public CompletableFuture<Response> getFollowUp() { return followUp; }
+
+    /**
+     * Возвращает промежуточные версии отложенного ответа.
+     * Если их нет, возвращает null.
+     */
+    public ResponseStream getProgress() { return progress; }
 }
@@ -0,0 +1,46 @@
+package org.example;
+
+/**
+ * Класс ResponseStream передаёт промежуточные версии отложенного ответа,
+ * например текст нейросети, который ещё дописывается.
+ * Хранит только последнюю версию: транспорт сам решает, как часто её показывать,
+ * и пропущенные промежуточные версии не нужны.
+ */
+public class ResponseStream {
+
+    /** Последняя опубликованная версия ответа или null. */
+    private Response latest;
+
+    /** Вызывается после каждой новой версии или null, если подписчика нет. */
+    private Runnable listener;
+
+    /** Публикует новую версию ответа и оповещает подписчика. */
+    public void publish(Response partial) {
+        Runnable l;
+        synchronized (this) {
+            latest = partial;
+            l = listener;
+        }
+        if (l != null)
+            l.run();
+    }
+
+    /** Возвращает последнюю опубликованную версию или null. */
+    public synchronized Response latest() {
+        return latest;
+    }
+
+    /**
+     * Подписывает на новые версии. Если версия уже есть, подписчик
+     * вызывается сразу. Подписчик один: новый заменяет старого.
+     */
+    public void onUpdate(Runnable l) {
+        boolean hasLatest;
+        synchronized (this) {
+            listener = l;
+            hasLatest = latest != null;
+        }
+        if (hasLatest)
+            l.run();
+    }
+}
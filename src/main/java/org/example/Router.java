@@ -0,0 +1,129 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Класс Router выбирает обработчик для текстовой команды или callback-данных.
+ * Точные команды ищутся в хеш-таблице, префиксы вида "form:" — в заранее
+ * построенной таблице с открытой адресацией. Префикс распознаётся за один
+ * проход по строке до первого двоеточия, без создания подстрок.
+ *
+ * @param <R> тип результата обработчика
+ */
+public class Router<R> {
+
+    /** Разделитель префикса и аргументов. */
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Обработчик маршрута.
+     * Аргументы начинаются в строке input с позиции argStart.
+     */
+    @FunctionalInterface
+    public interface Handler<R> {
+        R handle(long chatId, String input, int argStart);
+    }
+
+    /** Обработчики точных команд. */
+    private final Map<String, Handler<R>> exact = new HashMap<>();
+
+    /** Префиксы маршрутов в таблице с открытой адресацией. */
+    private String[] prefixes = new String[8];
+
+    /** Хеши префиксов (совпадают с String.hashCode). */
+    private int[] hashes = new int[8];
+
+    /** Обработчики префиксов. */
+    private Handler<R>[] handlers = newHandlers(8);
+
+    /** Число зарегистрированных префиксов. */
+    private int prefixCount;
+
+    /** Регистрирует обработчик точной команды. */
+    public Router<R> exact(String command, Handler<R> handler) {
+        exact.put(command, handler);
+        return this;
+    }
+
+    /**
+     * Регистрирует обработчик префикса.
+     * Префикс должен заканчиваться двоеточием и не содержать других двоеточий.
+     */
+    public Router<R> prefix(String prefix, Handler<R> handler) {
+        if (prefix.indexOf(SEPARATOR) != prefix.length() - 1)
+            throw new IllegalArgumentException("Префикс должен заканчиваться единственным ':' — " + prefix);
+        if ((prefixCount + 1) * 2 > prefixes.length)
+            grow();
+        insert(prefix, handler);
+        prefixCount++;
+        return this;
+    }
+
+    /**
+     * Находит обработчик и вызывает его.
+     * Возвращает null, если ни один маршрут не подошёл.
+     */
+    public R route(long chatId, String input) {
+        Handler<R> command = exact.get(input);
+        if (command != null)
+            return command.handle(chatId, input, input.length());
+
+        int n = input.length();
+        int h = 0;
+        int i = 0;
+        for (; i < n; i++) {
+            char c = input.charAt(i);
+            h = 31 * h + c;
+            if (c == SEPARATOR)
+                break;
+        }
+        if (i == n)
+            return null;
+
+        int len = i + 1;
+        int mask = prefixes.length - 1;
+        for (int slot = spread(h) & mask; prefixes[slot] != null; slot = (slot + 1) & mask) {
+            String p = prefixes[slot];
+            if (hashes[slot] == h && p.length() == len && input.regionMatches(0, p, 0, len))
+                return handlers[slot].handle(chatId, input, len);
+        }
+        return null;
+    }
+
+    /** Кладёт префикс в первую свободную ячейку таблицы. */
+    private void insert(String prefix, Handler<R> handler) {
+        int h = prefix.hashCode();
+        int mask = prefixes.length - 1;
+        int slot = spread(h) & mask;
+        while (prefixes[slot] != null && !prefixes[slot].equals(prefix))
+            slot = (slot + 1) & mask;
+        prefixes[slot] = prefix;
+        hashes[slot] = h;
+        handlers[slot] = handler;
+    }
+
+    /** Увеличивает таблицу префиксов вдвое и перекладывает записи. */
+    private void grow() {
+        String[] oldPrefixes = prefixes;
+        Handler<R>[] oldHandlers = handlers;
+        prefixes = new String[oldPrefixes.length * 2];
+        hashes = new int[oldPrefixes.length * 2];
+        handlers = newHandlers(oldPrefixes.length * 2);
+        for (int i = 0; i < oldPrefixes.length; i++) {
+            if (oldPrefixes[i] != null)
+                insert(oldPrefixes[i], oldHandlers[i]);
+        }
+    }
+
+    /** Перемешивает биты хеша, чтобы близкие строки не попадали в соседние ячейки. */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** Создаёт массив обработчиков заданного размера. */
+    @SuppressWarnings("unchecked")
+    private static <R> Handler<R>[] newHandlers(int size) {
+        return (Handler<R>[]) new Handler<?>[size];
+    }
+}
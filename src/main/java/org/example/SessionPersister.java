@@ -0,0 +1,117 @@
+package org.example;
+
+import org.example.db.SessionSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс SessionPersister сохраняет состояния чатов между перезапусками бота.
+ * Периодически записывает изменённые состояния в базу одной транзакцией,
+ * при старте восстанавливает их разом и вычищает устаревшие снимки.
+ */
+public class SessionPersister implements AutoCloseable {
+
+    /** Логгер сохранения сессий. */
+    private static final Logger log = LoggerFactory.getLogger(SessionPersister.class);
+
+    /** Хранилище состояний чатов. */
+    private final ChatStateStore store;
+
+    /** Хранилище снимков в базе данных. */
+    private final SessionSnapshotRepository snapshots;
+
+    /** Поток периодического сохранения. */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-persister");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Создаёт объект сохранения для указанного хранилища. */
+    public SessionPersister(ChatStateStore store, SessionSnapshotRepository snapshots) {
+        this.store = store;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Удаляет устаревшие снимки и восстанавливает остальные в хранилище.
+     * Возвращает число восстановленных состояний.
+     */
+    public int restore() {
+        long start = System.nanoTime();
+        int purged = snapshots.deleteOlderThan(System.currentTimeMillis() - store.ttlMillis());
+        int[] restored = {0};
+        int total = snapshots.loadAll((chatId, data) -> {
+            try {
+                if (store.restore(ChatState.fromBytes(chatId, data)))
+                    restored[0]++;
+            } catch (RuntimeException e) {
+                log.warn("Повреждённый снимок сессии чата {}, пропускаем", chatId, e);
+            }
+        });
+        log.info("Восстановлено {} из {} сессий за {} мс (удалено устаревших: {})",
+                restored[0], total, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), purged);
+        return restored[0];
+    }
+
+    /** Запускает периодическое сохранение изменённых состояний. */
+    public void start(Duration interval) {
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает в базу все состояния, изменённые с прошлого сохранения.
+     * Удалённые из хранилища состояния стираются из базы.
+     */
+    public void flush() {
+        List<Long> changed = store.drainDirty();
+        if (changed.isEmpty())
+            return;
+        Map<Long, SessionSnapshotRepository.Snapshot> upserts = new HashMap<>();
+        List<Long> removed = new ArrayList<>();
+        for (Long chatId : changed) {
+            ChatState state = store.peek(chatId);
+            if (state == null || state.isEmpty())
+                removed.add(chatId);
+            else
+                upserts.put(chatId, new SessionSnapshotRepository.Snapshot(state.toBytes(), state.lastAccess()));
+        }
+        try {
+            snapshots.saveAll(upserts, removed);
+        } catch (RuntimeException e) {
+            changed.forEach(store::markDirty);
+            throw e;
+        }
+    }
+
+    /** Останавливает периодическое сохранение и сохраняет оставшиеся изменения. */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /** Сохраняет изменения, записывая ошибку в лог вместо остановки расписания. */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить снимки сессий", e);
+        }
+    }
+}
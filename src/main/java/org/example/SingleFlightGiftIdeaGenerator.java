@@ -0,0 +1,160 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Генератор идей, который склеивает одинаковые одновременные запросы.
+ * Пока запрос с тем же нормализованным текстом выполняется, новые вызовы
+ * не идут в API, а ждут его результат или ошибку.
+ * После завершения запрос забывается: следующий вызов снова уходит в генератор
+ * (повторы без обращения к API — задача {@link CachingGiftIdeaGenerator}).
+ *
+ * Поиск выполняющегося запроса — одно чтение ConcurrentHashMap без блокировок;
+ * putIfAbsent нужен только тому, кто запрос начинает.
+ * Запрос всегда выполняется потоково: промежуточный текст получают все
+ * присоединившиеся через {@link #streamGiftIdeas}, начиная с уже полученного.
+ */
+public class SingleFlightGiftIdeaGenerator implements GiftIdeaGenerator {
+
+    /** Генератор, к которому уходит первый из одинаковых запросов. */
+    private final GiftIdeaGenerator delegate;
+
+    /** Выполняющиеся запросы по нормализованному тексту. */
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /** Число запросов, ушедших в генератор. */
+    private final LongAdder calls = new LongAdder();
+
+    /** Число вызовов, присоединившихся к выполняющемуся запросу. */
+    private final LongAdder coalesced = new LongAdder();
+
+    /** Создаёт обёртку над генератором. */
+    public SingleFlightGiftIdeaGenerator(GiftIdeaGenerator delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Возвращает результат выполняющегося запроса с тем же текстом
+     * или начинает новый и ждёт его.
+     */
+    @Override
+    public String fetchGiftIdeas(String prompt) throws Exception {
+        try {
+            return flight(prompt, null).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ex ? ex : e;
+        }
+    }
+
+    /**
+     * Возвращает future выполняющегося запроса с тем же текстом или начинает новый.
+     * Каждый вызов получает свою копию future: её отмена не отменяет общий запрос.
+     */
+    @Override
+    public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+        return flight(prompt, null).copy();
+    }
+
+    /**
+     * То же, что {@link #fetchGiftIdeasAsync}, но onPartial получает
+     * промежуточный текст общего запроса.
+     */
+    @Override
+    public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+        return flight(prompt, onPartial).copy();
+    }
+
+    /** Область кэша совпадает с областью обёрнутого генератора. */
+    @Override
+    public String cacheScope() {
+        return delegate.cacheScope();
+    }
+
+    /** Возвращает число запросов, ушедших в генератор. */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /** Возвращает число вызовов, получивших чужой результат. */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Находит выполняющийся запрос или становится его владельцем.
+     * onPartial может быть null, если промежуточный текст не нужен.
+     */
+    private CompletableFuture<String> flight(String prompt, Consumer<String> onPartial) {
+        String key = CachingGiftIdeaGenerator.normalize(prompt);
+        Flight existing = inFlight.get(key);
+        if (existing == null) {
+            Flight mine = new Flight();
+            mine.listen(onPartial);
+            existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null) {
+                start(key, prompt, mine);
+                return mine.result;
+            }
+        }
+        coalesced.increment();
+        existing.listen(onPartial);
+        return existing.result;
+    }
+
+    /** Запускает запрос к генератору от имени всех участников flight. */
+    private void start(String key, String prompt, Flight flight) {
+        calls.increment();
+        CompletableFuture<String> call;
+        try {
+            call = delegate.streamGiftIdeas(prompt, flight::publish);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((ideas, error) -> {
+            // Забываем запрос до его завершения: следующие вызовы начнут новый
+            inFlight.remove(key, flight);
+            if (error != null)
+                flight.result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            else
+                flight.result.complete(ideas);
+        });
+    }
+
+    /** Выполняющийся запрос: общий результат и подписчики на промежуточный текст. */
+    private static final class Flight {
+        /** Завершается результатом или ошибкой запроса. */
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        /** Подписчики на промежуточный текст. */
+        final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+        /** Последний полученный промежуточный текст или null. */
+        volatile String latest;
+
+        /** Добавляет подписчика и сразу передаёт ему уже полученный текст. */
+        void listen(Consumer<String> listener) {
+            if (listener == null)
+                return;
+            listeners.add(listener);
+            String partial = latest;
+            if (partial != null)
+                listener.accept(partial);
+        }
+
+        /** Передаёт промежуточный текст всем подписчикам. */
+        void publish(String partial) {
+            latest = partial;
+            for (Consumer<String> l : listeners)
+                l.accept(partial);
+        }
+    }
+}
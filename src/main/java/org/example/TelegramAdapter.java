@@ -1,32 +1,191 @@
 package org.example.telegram;
 
 import com.pengrad.telegrambot.model.Update;
+import org.example.BotConfig;
 import org.example.BotLogic;
+import org.example.CachingGiftIdeaGenerator;
+import org.example.ChatStateStore;
+import org.example.GiftIdeaGenerator;
 import org.example.GiftIdeaService;
 import org.example.Keyboards;
+import org.example.ResilienceOptions;
+import org.example.ResilientGiftIdeaGenerator;
 import org.example.Response;
+import org.example.SessionPersister;
+import org.example.SingleFlightGiftIdeaGenerator;
+import org.example.db.AsyncFormStore;
+import org.example.db.FormCache;
 import org.example.db.FormRepository;
+import org.example.db.FormStore;
+import org.example.db.IdeaCacheRepository;
+import org.example.db.InMemoryFormStore;
+import org.example.db.SessionSnapshotRepository;
+import org.example.db.StorageProfile;
+import org.example.db.WriteBehindFormRepository;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /** Адаптер между Telegram Update и логикой бота. */
-public class TelegramAdapter {
+public class TelegramAdapter implements AutoCloseable {
 
     /** Логика бота для обработки команд и сообщений. */
-    private final BotLogic logic = new BotLogic(
-            new FormRepository(),
-            new GiftIdeaService(),
-            new Keyboards()
-    );
+    private final BotLogic logic;
+
+    /** Сохранение незавершённых опросов между перезапусками. */
+    private final SessionPersister persister;
+
+    /** Хранилище анкет пользователей с потоком записи и пулом чтения. */
+    private final AsyncFormStore forms;
+
+    /** Хранилище снимков незавершённых опросов. */
+    private final SessionSnapshotRepository snapshots;
+
+    /** Хранилище ответов нейросети или null, если кэш на диске выключен. */
+    private final IdeaCacheRepository ideaCache;
+
+    /** Создаёт адаптер с настройками из окружения и .env. */
+    public TelegramAdapter() {
+        this(new BotConfig());
+    }
+
+    /**
+     * Создаёт адаптер с заданными настройками.
+     * SESSION_TTL_MINUTES и SESSION_MAX ограничивают время жизни и число
+     * незавершённых опросов и редактирований. Они восстанавливаются из базы
+     * при старте и сохраняются каждые SESSION_FLUSH_SECONDS секунд.
+     * DB_POOL_SIZE задаёт число постоянных подключений к базе у каждого хранилища,
+     * а настройки DB_* — профиль SQLite (см. {@link #storageProfile(BotConfig)}).
+     * DB_SHARDS раскладывает анкеты по нескольким файлам forms.N.db.
+     * FORMS_ENGINE=memory хранит анкеты только в памяти (для нагрузочных прогонов).
+     * Анкеты записываются одним потоком, а читаются FORMS_READERS потоками.
+     * FORMS_WRITE_BEHIND=true включает отложенную запись анкет пачками
+     * до FORMS_BATCH_SIZE штук с ожиданием до FORMS_BATCH_DELAY_MS миллисекунд.
+     * FORMS_CACHE_SIZE анкет держится в памяти, пока к ним обращаются
+     * чаще, чем раз в FORMS_CACHE_IDLE_MINUTES минут (0 выключает кэш).
+     * IDEAS_CACHE_SIZE ответов нейросети хранятся IDEAS_CACHE_TTL_HOURS часов
+     * (0 выключает кэш), а при IDEAS_CACHE_DISK=true ещё и в базе.
+     * Одинаковые одновременные запросы к нейросети склеиваются в один,
+     * а сами запросы ограничены настройками IDEAS_* (см. {@link #resilienceOptions(BotConfig)}).
+     */
+    public TelegramAdapter(BotConfig config) {
+        ChatStateStore states = new ChatStateStore(
+                Duration.ofMinutes(config.getInt("SESSION_TTL_MINUTES", 24 * 60)),
+                config.getInt("SESSION_MAX", 100_000));
+        int poolSize = config.getInt("DB_POOL_SIZE", 4);
+        StorageProfile profile = storageProfile(config);
+        this.forms = new AsyncFormStore(openForms(config, poolSize, profile),
+                config.getInt("FORMS_READERS", Math.max(1, poolSize)));
+        this.snapshots = new SessionSnapshotRepository("forms.db", poolSize, profile);
+        this.persister = new SessionPersister(states, snapshots);
+        persister.restore();
+        persister.start(Duration.ofSeconds(config.getInt("SESSION_FLUSH_SECONDS", 5)));
+
+        GiftIdeaGenerator ideas = new SingleFlightGiftIdeaGenerator(
+                new ResilientGiftIdeaGenerator(new GiftIdeaService(), resilienceOptions(config)));
+        int ideasCacheSize = config.getInt("IDEAS_CACHE_SIZE", 1000);
+        boolean ideasOnDisk = ideasCacheSize > 0
+                && Boolean.parseBoolean(config.get("IDEAS_CACHE_DISK", "true"));
+        this.ideaCache = ideasOnDisk ? new IdeaCacheRepository("forms.db", 1, profile) : null;
+        if (ideasCacheSize > 0)
+            ideas = new CachingGiftIdeaGenerator(ideas, ideasCacheSize,
+                    Duration.ofHours(config.getInt("IDEAS_CACHE_TTL_HOURS", 24)), ideaCache);
+
+        this.logic = new BotLogic(
+                forms,
+                ideas,
+                new Keyboards(),
+                states
+        );
+    }
+
+    /**
+     * Открывает хранилище анкет по настройкам FORMS_ENGINE, DB_SHARDS,
+     * FORMS_CACHE_* и FORMS_WRITE_BEHIND / FORMS_BATCH_*.
+     */
+    private static FormStore openForms(BotConfig config, int poolSize, StorageProfile profile) {
+        String engine = config.get("FORMS_ENGINE", "sqlite");
+        if (engine.equals("memory"))
+            return new InMemoryFormStore();
+        if (!engine.equals("sqlite"))
+            throw new IllegalArgumentException("Неизвестное хранилище анкет FORMS_ENGINE: " + engine);
+        int shards = config.getInt("DB_SHARDS", 1);
+        int cacheSize = config.getInt("FORMS_CACHE_SIZE", 10_000);
+        FormCache cache = cacheSize > 0
+                ? new FormCache(cacheSize, Duration.ofMinutes(config.getInt("FORMS_CACHE_IDLE_MINUTES", 30)))
+                : null;
+        if (Boolean.parseBoolean(config.get("FORMS_WRITE_BEHIND", "false")))
+            return new WriteBehindFormRepository("forms.db", shards, poolSize, profile, cache,
+                    config.getInt("FORMS_BATCH_SIZE", 256),
+                    Duration.ofMillis(config.getInt("FORMS_BATCH_DELAY_MS", 10)));
+        return new FormRepository("forms.db", shards, poolSize, profile, cache);
+    }
+
+    /**
+     * Собирает настройки защиты запросов к нейросети из IDEAS_MAX_CONCURRENT,
+     * IDEAS_BREAKER_WINDOW, IDEAS_BREAKER_FAILURE_PERCENT, IDEAS_BREAKER_OPEN_SECONDS,
+     * IDEAS_TIMEOUT_MIN_MS, IDEAS_TIMEOUT_MAX_MS и IDEAS_TIMEOUT_P99_PERCENT.
+     * Незаданные настройки берутся из {@link ResilienceOptions#defaults()}.
+     */
+    private static ResilienceOptions resilienceOptions(BotConfig config) {
+        ResilienceOptions def = ResilienceOptions.defaults();
+        return new ResilienceOptions(
+                config.getInt("IDEAS_MAX_CONCURRENT", def.maxConcurrent()),
+                config.getInt("IDEAS_BREAKER_WINDOW", def.window()),
+                config.getInt("IDEAS_BREAKER_FAILURE_PERCENT", (int) Math.round(def.failureRate() * 100)) / 100.0,
+                Duration.ofSeconds(config.getInt("IDEAS_BREAKER_OPEN_SECONDS", (int) def.openDuration().toSeconds())),
+                Duration.ofMillis(config.getInt("IDEAS_TIMEOUT_MIN_MS", (int) def.minTimeout().toMillis())),
+                Duration.ofMillis(config.getInt("IDEAS_TIMEOUT_MAX_MS", (int) def.maxTimeout().toMillis())),
+                config.getInt("IDEAS_TIMEOUT_P99_PERCENT", (int) Math.round(def.timeoutFactor() * 100)) / 100.0);
+    }
+
+    /**
+     * Собирает профиль SQLite из настроек DB_JOURNAL_MODE, DB_SYNCHRONOUS,
+     * DB_CACHE_KB, DB_MMAP_MB, DB_TEMP_STORE и DB_BUSY_TIMEOUT_MS.
+     * Незаданные настройки берутся из {@link StorageProfile#defaults()}.
+     */
+    private static StorageProfile storageProfile(BotConfig config) {
+        StorageProfile def = StorageProfile.defaults();
+        return new StorageProfile(
+                config.get("DB_JOURNAL_MODE", def.journalMode()),
+                config.get("DB_SYNCHRONOUS", def.synchronous()),
+                config.getInt("DB_CACHE_KB", def.cacheSizeKb()),
+                config.getInt("DB_MMAP_MB", (int) (def.mmapSizeBytes() >> 20)) * 1024L * 1024L,
+                config.get("DB_TEMP_STORE", def.tempStore()),
+                config.getInt("DB_BUSY_TIMEOUT_MS", def.busyTimeoutMillis()));
+    }
+
+    /** Сохраняет незавершённые опросы и закрывает подключения к базе. */
+    @Override
+    public void close() {
+        persister.close();
+        snapshots.close();
+        if (ideaCache != null)
+            ideaCache.close();
+        forms.close();
+    }
 
     /** Обрабатывает обновление Telegram и передаёт в BotLogic. */
     public Response process(Update update) {
-        long chatId = extractChatId(update);
+        long chatId = chatIdOf(update);
         String text = extractText(update);
         String callback = extractCallback(update);
         return logic.process(chatId, text, callback);
     }
 
+    /**
+     * Передаёт обновление Telegram в BotLogic, не дожидаясь обращений к базе.
+     * Future завершается ответом или null, если ответ не нужен.
+     */
+    public CompletableFuture<Response> processAsync(Update update) {
+        long chatId = chatIdOf(update);
+        String text = extractText(update);
+        String callback = extractCallback(update);
+        return logic.processAsync(chatId, text, callback);
+    }
+
     /** Извлекает chatId из сообщения или callback. */
-    private long extractChatId(Update upd) {
+    public long chatIdOf(Update upd) {
         if (upd.message() != null) return upd.message().chat().id();
         if (upd.callbackQuery() != null) return upd.callbackQuery().message().chat().id();
         return -1;
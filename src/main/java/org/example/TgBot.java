@@ -3,10 +3,26 @@ package org.example;
 import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.UpdatesListener;
 import com.pengrad.telegrambot.model.Update;
-import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.request.DeleteWebhook;
+import com.pengrad.telegrambot.request.GetUpdates;
+import com.pengrad.telegrambot.request.SetWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.example.db.HandledUpdateRepository;
 import org.example.telegram.TelegramAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Класс TgBot отвечает только за связь между Telegram и логикой.
@@ -14,43 +30,269 @@ import java.util.List;
  */
 public class TgBot {
 
+    /** Логгер бота */
+    private static final Logger log = LoggerFactory.getLogger(TgBot.class);
+
+    /** Сколько раз повторять обновление, обработка которого падает, прежде чем пропустить его */
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
     /** Telegram API клиент */
     private final TelegramBot bot;
 
     /** Адаптер, который преобразует Telegram-обновления в универсальный формат */
     private final TelegramAdapter adapter = new TelegramAdapter();
 
+    /** Диспетчер, распределяющий обновления по полосам чатов */
+    private final UpdateDispatcher dispatcher;
+
+    /** Планировщик отправки ответов с учётом лимитов Telegram */
+    private final OutboundScheduler outbound;
+
+    /** Настройки приёма обновлений */
+    private final PollingOptions options;
+
+    /** Ограничение числа одновременно обрабатываемых обновлений */
+    private final Semaphore inFlightPermits;
+
+    /** Обновления, которые сейчас обрабатываются, по update_id */
+    private final Map<Integer, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /** Идентификаторы уже обработанных обновлений */
+    private final UpdateDedup processed;
+
+    /** Хранилище обработанных update_id, переживающее перезапуск */
+    private final HandledUpdateRepository handled;
+
+    /** Обработанные update_id, ещё не записанные в хранилище */
+    private final ConcurrentLinkedQueue<Integer> unsaved = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Последнее обновление каждого чата, ответ на которое ещё не поставлен в очередь отправки.
+     * Следующее обновление чата начинает обработку только после него.
+     */
+    private final Map<Long, CompletableFuture<CompletableFuture<Void>>> chatTails = new ConcurrentHashMap<>();
+
+    /** Число неудачных попыток обработки обновлений, по update_id */
+    private final Map<Integer, Integer> failures = new ConcurrentHashMap<>();
+
+    /** Webhook-сервер, если бот запущен в режиме webhook */
+    private WebhookServer webhook;
+
     /**
      * Конструктор TgBot.
-     * Принимает токен Telegram-бота и создаёт объект для работы с API.
+     * Принимает токен Telegram-бота и создаёт объект для работы с API
+     * поверх общего HTTP-клиента {@link HttpClientFactory#shared()}.
      */
     public TgBot(String token) {
-        this.bot = new TelegramBot(token);
+        this(new TelegramBot.Builder(token)
+                        .okHttpClient(HttpClientFactory.shared()
+                                .forTelegram(PollingOptions.defaults().pollTimeoutSeconds()))
+                        .build(),
+                new UpdateDispatcher(Runtime.getRuntime().availableProcessors() * 4, 256));
+    }
+
+    /**
+     * Создаёт бота с заданным диспетчером обновлений и стандартными лимитами отправки.
+     */
+    public TgBot(TelegramBot bot, UpdateDispatcher dispatcher) {
+        this(bot, dispatcher, new OutboundScheduler(bot), PollingOptions.defaults());
+    }
+
+    /**
+     * Создаёт бота с заданными диспетчером, планировщиком отправки и настройками приёма.
+     * Обработанные update_id хранятся в основной базе.
+     */
+    public TgBot(TelegramBot bot, UpdateDispatcher dispatcher, OutboundScheduler outbound, PollingOptions options) {
+        this(bot, dispatcher, outbound, options, new HandledUpdateRepository());
+    }
+
+    /**
+     * Создаёт бота с заданным хранилищем обработанных update_id.
+     * Последние dedupCapacity идентификаторов загружаются из него сразу,
+     * поэтому обновления, обработанные до перезапуска, не обрабатываются снова.
+     */
+    public TgBot(TelegramBot bot, UpdateDispatcher dispatcher, OutboundScheduler outbound, PollingOptions options,
+                 HandledUpdateRepository handled) {
+        this.bot = bot;
+        this.dispatcher = dispatcher;
+        this.outbound = outbound;
+        this.options = options;
+        this.inFlightPermits = new Semaphore(options.maxInFlight());
+        this.processed = new UpdateDedup(options.dedupCapacity());
+        this.handled = handled;
+        for (int updateId : handled.loadLatest(options.dedupCapacity()))
+            processed.add(updateId);
     }
 
     /**
      * Запускает бота и слушает обновления.
      */
     public void start() {
-        bot.setUpdatesListener(this::onUpdates, Throwable::printStackTrace);
+        GetUpdates request = new GetUpdates()
+                .limit(options.batchSize())
+                .timeout(options.pollTimeoutSeconds());
+        bot.setUpdatesListener(this::onUpdates, Throwable::printStackTrace, request);
         System.out.println("Bot started...");
     }
 
     /**
-     * Обрабатывает входящие обновления Telegram.
-     * Делегирует обработку в BotLogic через TelegramAdapter.
+     * Запускает бота в режиме webhook.
+     * Поднимает встроенный HTTP-сервер и регистрирует его публичный адрес в Telegram.
+     * Обновления попадают в тот же диспетчер, что и при long polling.
+     */
+    public void startWebhook(int port, String path, String publicUrl, String secret) throws IOException {
+        // Пачек нет: update_id записываются по завершении каждого обновления
+        // вместе с накопившимися к этому моменту
+        webhook = new WebhookServer(port, path, secret, 4,
+                upd -> accept(upd).whenComplete((r, e) -> saveHandled()));
+        webhook.start();
+
+        SetWebhook request = new SetWebhook().url(publicUrl + path);
+        if (secret != null && !secret.isBlank())
+            request.secretToken(secret);
+        BaseResponse resp = bot.execute(request);
+        if (resp == null || !resp.isOk())
+            throw new IllegalStateException("Не удалось зарегистрировать webhook: "
+                    + (resp == null ? "нет ответа" : resp.description()));
+        System.out.println("Bot started (webhook)...");
+    }
+
+    /**
+     * Останавливает получение обновлений, дожидается обработки уже принятых,
+     * сохраняет незавершённые опросы, отправляет накопленные ответы
+     * и записывает обработанные update_id.
+     */
+    public void stop() {
+        if (webhook != null) {
+            webhook.close();
+            bot.execute(new DeleteWebhook());
+        } else {
+            bot.removeGetUpdatesListener();
+        }
+        dispatcher.close();
+        adapter.close();
+        outbound.close();
+        saveHandled();
+        handled.close();
+    }
+
+    /**
+     * Обрабатывает пачку обновлений, полученную через long polling.
+     * Каждое обновление ставится в полосу своего чата, после чего бот ждёт
+     * обработки пачки и подтверждает только непрерывный префикс полностью
+     * обработанных обновлений. Остальные Telegram доставит повторно.
+     */
+    int onUpdates(List<Update> updates) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(updates.size());
+        for (Update upd : updates)
+            results.add(accept(upd));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.ackTimeoutSeconds());
+        int confirmed = UpdatesListener.CONFIRMED_UPDATES_NONE;
+        for (int i = 0; i < updates.size(); i++) {
+            int updateId = updates.get(i).updateId();
+            try {
+                results.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                int attempts = failures.merge(updateId, 1, Integer::sum);
+                if (attempts < MAX_UPDATE_ATTEMPTS)
+                    break;
+                log.error("Обновление {} не обработано после {} попыток, пропускаем", updateId, attempts);
+            }
+            failures.remove(updateId);
+            confirmed = updateId;
+        }
+        saveHandled();
+        return confirmed;
+    }
+
+    /**
+     * Записывает в хранилище накопившиеся обработанные update_id одной транзакцией.
+     * При long polling вызывается раз на пачку, перед её подтверждением.
+     * Ошибка записи не мешает работе: в худшем случае после перезапуска
+     * эти обновления будут обработаны повторно.
      */
-    private int onUpdates(List<Update> updates) {
-        for (Update upd : updates) {
-            Response resp = adapter.process(upd);
-            if (resp == null) continue;
+    private void saveHandled() {
+        List<Integer> batch = new ArrayList<>();
+        for (Integer id; (id = unsaved.poll()) != null; )
+            batch.add(id);
+        if (batch.isEmpty())
+            return;
+        try {
+            handled.saveAll(batch, options.dedupCapacity());
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить обработанные обновления", e);
+        }
+    }
 
-            SendMessage msg = new SendMessage(resp.getChatId(), resp.getText());
-            if (resp.getMarkup() != null)
-                msg.replyMarkup(resp.getMarkup());
+    /**
+     * Принимает одно обновление.
+     * Уже обработанное обновление пропускается, а повторно доставленное во время
+     * обработки получает тот же future, что и первая копия.
+     * Возвращает future, который завершается после обработки и отправки ответа.
+     */
+    CompletableFuture<Void> accept(Update upd) {
+        int updateId = upd.updateId();
+        if (processed.contains(updateId))
+            return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> running = inFlight.get(updateId);
+        if (running != null)
+            return running;
 
-            bot.execute(msg);
+        try {
+            inFlightPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> result;
+        try {
+            result = dispatcher.submit(adapter.chatIdOf(upd), () -> handle(upd))
+                    .thenCompose(sent -> sent);
+        } catch (RuntimeException e) {
+            inFlightPermits.release();
+            return CompletableFuture.failedFuture(e);
         }
-        return UpdatesListener.CONFIRMED_UPDATES_ALL;
+        inFlight.put(updateId, result);
+        result.whenComplete((r, e) -> {
+            if (e == null) {
+                processed.add(updateId);
+                unsaved.add(updateId);
+            }
+            inFlight.remove(updateId, result);
+            inFlightPermits.release();
+        });
+        return result;
+    }
+
+    /**
+     * Обрабатывает одно обновление: делегирует его в BotLogic через TelegramAdapter
+     * и ставит ответ в очередь отправки, не дожидаясь сетевого запроса.
+     * Полоса не ждёт обращений к базе: обработка продолжается в потоках хранилища.
+     * Обновления одного чата всё равно обрабатываются по очереди — следующее
+     * начинается, когда ответ на предыдущее поставлен в очередь отправки, —
+     * поэтому чат видит свои изменения и получает ответы в порядке сообщений.
+     * Вызывается в полосе чата, поэтому для одного чата вызовы не пересекаются.
+     * Возвращает future доставки ответа.
+     */
+    private CompletableFuture<Void> handle(Update upd) {
+        long chatId = adapter.chatIdOf(upd);
+        CompletableFuture<CompletableFuture<Void>> previous = chatTails.get(chatId);
+        CompletableFuture<Void> ready = previous == null
+                ? CompletableFuture.completedFuture(null)
+                : previous.handle((r, e) -> null);
+        CompletableFuture<CompletableFuture<Void>> queued = ready
+                .thenCompose(v -> adapter.processAsync(upd))
+                .thenApply(resp -> resp == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : outbound.submit(resp));
+        chatTails.put(chatId, queued);
+        queued.whenComplete((r, e) -> chatTails.remove(chatId, queued));
+        return queued.thenCompose(sent -> sent);
     }
 }
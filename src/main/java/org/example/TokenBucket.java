@@ -0,0 +1,91 @@
+package org.example;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Класс TokenBucket реализует ограничитель частоты «ведро токенов».
+ * Ведро пополняется с постоянной скоростью и вмещает не больше capacity токенов,
+ * поэтому допускает короткие всплески, но ограничивает среднюю частоту.
+ */
+public class TokenBucket {
+
+    /** Максимальное число накопленных токенов. */
+    private final double capacity;
+
+    /** Интервал пополнения одного токена в наносекундах. */
+    private final double nanosPerToken;
+
+    /** Текущее число токенов. */
+    private double tokens;
+
+    /** Момент последнего пополнения. */
+    private long refilledAt;
+
+    /** Момент (System.nanoTime), до которого токены не выдаются. */
+    private long pausedUntil;
+
+    /** Создаёт полное ведро с заданной скоростью (токенов в секунду) и ёмкостью. */
+    public TokenBucket(double perSecond, int capacity) {
+        if (perSecond <= 0 || capacity < 1)
+            throw new IllegalArgumentException("Скорость и ёмкость должны быть положительными");
+        this.capacity = capacity;
+        this.nanosPerToken = 1_000_000_000d / perSecond;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Пытается взять токен.
+     * Возвращает 0, если токен взят, иначе — сколько наносекунд ждать до следующего.
+     */
+    public synchronized long tryAcquire() {
+        long paused = pausedUntil - System.nanoTime();
+        if (paused > 0)
+            return paused;
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - tokens) * nanosPerToken));
+    }
+
+    /** Берёт токен, при необходимости ожидая его появления. */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Приостанавливает выдачу токенов на указанное время.
+     * Ведро опустошается, а пополнение начинается после паузы,
+     * поэтому после неё не будет всплеска накопленных токенов.
+     */
+    public synchronized void pause(long nanos) {
+        long until = System.nanoTime() + nanos;
+        if (until - pausedUntil > 0)
+            pausedUntil = until;
+        tokens = 0;
+        refilledAt = pausedUntil;
+    }
+
+    /** Возвращает true, если ведро полностью заполнено. */
+    public synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    /** Добавляет токены за прошедшее время. */
+    private void refill() {
+        long now = System.nanoTime();
+        if (now - refilledAt <= 0)
+            return;
+        tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Класс UpdateDedup запоминает идентификаторы последних обработанных обновлений.
+ * Хранит фиксированное число update_id в кольцевом буфере,
+ * поэтому повторно доставленное обновление не обрабатывается дважды,
+ * а память не растёт со временем.
+ */
+public class UpdateDedup {
+
+    /** Кольцевой буфер идентификаторов в порядке добавления. */
+    private final int[] ring;
+
+    /** Те же идентификаторы для быстрой проверки наличия. */
+    private final Set<Integer> present;
+
+    /** Позиция следующей записи в буфере. */
+    private int next;
+
+    /** Число занятых ячеек буфера. */
+    private int size;
+
+    /** Создаёт буфер на заданное число идентификаторов. */
+    public UpdateDedup(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Размер буфера должен быть положительным");
+        this.ring = new int[capacity];
+        this.present = new HashSet<>(capacity * 2);
+    }
+
+    /** Возвращает true, если обновление уже было обработано. */
+    public synchronized boolean contains(int updateId) {
+        return present.contains(updateId);
+    }
+
+    /**
+     * Отмечает обновление как обработанное.
+     * Самый старый идентификатор вытесняется, если буфер заполнен.
+     */
+    public synchronized void add(int updateId) {
+        if (!present.add(updateId))
+            return;
+        if (size == ring.length)
+            present.remove(ring[next]);
+        else
+            size++;
+        ring[next] = updateId;
+        next = (next + 1) % ring.length;
+    }
+}
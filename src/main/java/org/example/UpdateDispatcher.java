@@ -0,0 +1,124 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Класс UpdateDispatcher распределяет обработку обновлений по «полосам» (lanes).
+ * Полоса выбирается по chatId, поэтому сообщения одного чата обрабатываются
+ * строго по очереди, а разные чаты — параллельно.
+ * Каждая полоса — отдельный поток с ограниченной очередью задач.
+ */
+public class UpdateDispatcher implements AutoCloseable {
+
+    /** Логгер диспетчера. */
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    /** Полосы обработки: однопоточные исполнители с ограниченной очередью. */
+    private final ThreadPoolExecutor[] lanes;
+
+    /**
+     * Создаёт диспетчер с заданным числом полос и размером очереди каждой полосы.
+     * Если очередь полосы заполнена, отправитель ждёт освобождения места.
+     */
+    public UpdateDispatcher(int laneCount, int queueCapacity) {
+        if (laneCount < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Число полос и размер очереди должны быть положительными");
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new BlockWhenFull());
+        }
+    }
+
+    /**
+     * Ставит задачу в полосу чата.
+     * Возвращает future, который завершается после выполнения задачи.
+     */
+    public CompletableFuture<Void> dispatch(long chatId, Runnable task) {
+        return submit(chatId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Ставит задачу с результатом в полосу чата.
+     * Возвращает future с результатом задачи или её исключением.
+     */
+    public <T> CompletableFuture<T> submit(long chatId, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.get();
+            } catch (RuntimeException e) {
+                log.error("Ошибка при обработке обновления чата {}", chatId, e);
+                throw e;
+            }
+        }, lanes[laneOf(chatId)]);
+    }
+
+    /** Возвращает номер полосы для чата. */
+    int laneOf(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) lanes.length);
+    }
+
+    /** Возвращает число полос. */
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    /** Возвращает количество задач, ожидающих в очередях всех полос. */
+    public int queuedTasks() {
+        int total = 0;
+        for (ThreadPoolExecutor lane : lanes)
+            total += lane.getQueue().size();
+        return total;
+    }
+
+    /** Останавливает полосы, дожидаясь завершения уже поставленных задач. */
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor lane : lanes)
+            lane.shutdown();
+        try {
+            for (ThreadPoolExecutor lane : lanes)
+                lane.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Политика переполнения: вместо отказа блокирует отправителя,
+     * пока в очереди полосы не появится место.
+     */
+    private static class BlockWhenFull implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown())
+                throw new RejectedExecutionException("Диспетчер остановлен");
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Ожидание очереди прервано", e);
+            }
+        }
+    }
+}
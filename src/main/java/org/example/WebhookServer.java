@@ -0,0 +1,107 @@
+package org.example;
+
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Класс WebhookServer принимает обновления Telegram через webhook.
+ * Встроенный HTTP-сервер JDK разбирает JSON обновления в Update,
+ * передаёт его обработчику и сразу отвечает 200, не дожидаясь обработки.
+ */
+public class WebhookServer implements AutoCloseable {
+
+    /** Логгер webhook-сервера. */
+    private static final Logger log = LoggerFactory.getLogger(WebhookServer.class);
+
+    /** Заголовок, в котором Telegram передаёт секретный токен webhook. */
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    /** HTTP-сервер JDK. */
+    private final HttpServer server;
+
+    /** Потоки, обслуживающие HTTP-запросы. */
+    private final ExecutorService workers;
+
+    /** Секретный токен или null, если проверка не нужна. */
+    private final String secret;
+
+    /** Получатель разобранных обновлений. */
+    private final Consumer<Update> sink;
+
+    /**
+     * Создаёт сервер на указанном порту и пути.
+     * Порт 0 означает любой свободный порт.
+     */
+    public WebhookServer(int port, String path, String secret, int threads, Consumer<Update> sink) throws IOException {
+        this.secret = secret == null || secret.isBlank() ? null : secret;
+        this.sink = sink;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "webhook");
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(path, this::handle);
+        this.server.setExecutor(workers);
+    }
+
+    /** Запускает приём запросов. */
+    public void start() {
+        server.start();
+        log.info("Webhook слушает порт {}", port());
+    }
+
+    /** Возвращает фактический порт сервера. */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Останавливает сервер. */
+    @Override
+    public void close() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    /** Обрабатывает один HTTP-запрос от Telegram. */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (secret != null && !secret.equals(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+
+            Update update;
+            try (InputStream in = exchange.getRequestBody()) {
+                update = BotUtils.parseUpdate(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                log.warn("Некорректное обновление webhook", e);
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            if (update == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            sink.accept(update);
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+}
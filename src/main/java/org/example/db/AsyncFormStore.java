@@ -0,0 +1,172 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Класс AsyncFormStore даёт неблокирующий доступ к хранилищу анкет.
+ * У каждого файла базы свой поток записи forms-writer-N: записи одного файла
+ * выполняются по очереди, поэтому писатели не спорят за блокировку SQLite
+ * и не получают SQLITE_BUSY, а записи в разные файлы идут параллельно.
+ * Поток выбирается по {@link Shards#shardOf}, так что все записи чата
+ * идут через один поток в порядке вызова.
+ * Чтения идут параллельно в пуле потоков forms-reader-N.
+ *
+ * Чтение чата, у которого есть незавершённая запись, начинается после неё:
+ * пользователь всегда видит свои последние изменения. Чтения и записи
+ * разных чатов друг друга не ждут.
+ */
+public class AsyncFormStore implements AutoCloseable {
+
+    /** Хранилище, к которому обращаются потоки. */
+    private final FormStore store;
+
+    /** Потоки записи по файлам базы или null, если операции выполняются в вызывающем потоке. */
+    private final List<ExecutorService> writers;
+
+    /** Потоки чтения или null, если операции выполняются в вызывающем потоке. */
+    private final ExecutorService readers;
+
+    /** Последняя незавершённая запись каждого чата. */
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+
+    /** Создаёт обёртку с потоком записи на каждый файл базы и readerThreads потоками чтения. */
+    public AsyncFormStore(FormStore store, int readerThreads) {
+        if (readerThreads < 1)
+            throw new IllegalArgumentException("Число потоков чтения должно быть положительным");
+        this.store = store;
+        List<ExecutorService> writers = new ArrayList<>(store.shardCount());
+        for (int i = 0; i < store.shardCount(); i++) {
+            String name = "forms-writer-" + i;
+            writers.add(Executors.newSingleThreadExecutor(r -> daemon(r, name)));
+        }
+        this.writers = List.copyOf(writers);
+        AtomicInteger counter = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(readerThreads,
+                r -> daemon(r, "forms-reader-" + counter.getAndIncrement()));
+    }
+
+    /** Конструктор без потоков: операции выполняются сразу в вызывающем потоке. */
+    private AsyncFormStore(FormStore store) {
+        this.store = store;
+        this.writers = null;
+        this.readers = null;
+    }
+
+    /**
+     * Возвращает обёртку, которая выполняет операции в вызывающем потоке
+     * и возвращает уже завершённые future. Нужна для тестов и синхронного кода.
+     */
+    public static AsyncFormStore direct(FormStore store) {
+        return new AsyncFormStore(store);
+    }
+
+    /** Возвращает обёрнутое хранилище. */
+    public FormStore store() {
+        return store;
+    }
+
+    /** Сохраняет копию анкеты; future завершается после записи. */
+    public CompletableFuture<Void> upsert(UserForm f) {
+        UserForm copy = f.copy();
+        return write(copy.chatId, () -> store.upsert(copy));
+    }
+
+    /** Удаляет анкету; future завершается после записи. */
+    public CompletableFuture<Void> delete(long chatId, String name) {
+        return write(chatId, () -> store.delete(chatId, name));
+    }
+
+    /** Читает анкету по имени; результат null, если её нет. */
+    public CompletableFuture<UserForm> get(long chatId, String name) {
+        return read(chatId, () -> store.get(chatId, name));
+    }
+
+    /** Читает имена всех анкет пользователя. */
+    public CompletableFuture<List<String>> listNames(long chatId) {
+        return read(chatId, () -> store.listNames(chatId));
+    }
+
+    /** Читает страницу имён анкет после after (null — с начала). */
+    public CompletableFuture<NamePage> listNamesAfter(long chatId, String after, int limit) {
+        return read(chatId, () -> store.listNamesAfter(chatId, after, limit));
+    }
+
+    /** Читает страницу имён анкет перед before. */
+    public CompletableFuture<NamePage> listNamesBefore(long chatId, String before, int limit) {
+        return read(chatId, () -> store.listNamesBefore(chatId, before, limit));
+    }
+
+    /**
+     * Дожидается уже поставленных операций, останавливает потоки
+     * и закрывает хранилище.
+     */
+    @Override
+    public void close() {
+        if (writers != null) {
+            writers.forEach(ExecutorService::shutdown);
+            readers.shutdown();
+            try {
+                for (ExecutorService writer : writers)
+                    writer.awaitTermination(30, TimeUnit.SECONDS);
+                readers.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        store.close();
+    }
+
+    /**
+     * Ставит запись в очередь потока записи файла, в котором лежит чат.
+     * Запись регистрируется внутри compute, поэтому для одного чата порядок
+     * в очереди совпадает с порядком в pendingWrites.
+     */
+    private CompletableFuture<Void> write(long chatId, Runnable op) {
+        if (writers == null)
+            return run(() -> {
+                op.run();
+                return null;
+            });
+        CompletableFuture<Void> done = pendingWrites.compute(chatId,
+                (id, previous) -> CompletableFuture.runAsync(op, writers.get(Shards.shardOf(id, writers.size()))));
+        done.whenComplete((r, e) -> pendingWrites.remove(chatId, done));
+        return done;
+    }
+
+    /** Ставит чтение в пул чтения после незавершённой записи того же чата. */
+    private <T> CompletableFuture<T> read(long chatId, Supplier<T> op) {
+        if (readers == null)
+            return run(op);
+        CompletableFuture<Void> write = pendingWrites.get(chatId);
+        if (write == null)
+            return CompletableFuture.supplyAsync(op, readers);
+        // Ошибка записи вернётся тому, кто писал; чтение всё равно выполняется
+        return write.handle((r, e) -> null).thenApplyAsync(ignored -> op.get(), readers);
+    }
+
+    /** Выполняет операцию в текущем потоке и возвращает завершённый future. */
+    private static <T> CompletableFuture<T> run(Supplier<T> op) {
+        try {
+            return CompletableFuture.completedFuture(op.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Создаёт фоновый поток с заданным именем. */
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,262 @@
+package org.example.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс ConnectionPool хранит открытые подключения к SQLite и выдаёт их повторно.
+ * Подключения открываются по требованию, но не больше заданного размера пула.
+ * Выданное подключение — обёртка: её close() возвращает подключение в пул,
+ * а не закрывает файл базы.
+ */
+class ConnectionPool implements AutoCloseable {
+
+    /** Подключение, простоявшее дольше этого времени, проверяется перед выдачей. */
+    private static final long VALIDATE_AFTER_MILLIS = 30_000;
+
+    /** Сколько секунд ждать свободного подключения. */
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    /** Открывает новые настоящие подключения. */
+    private final Opener opener;
+
+    /** Размер кэша подготовленных запросов каждого подключения, 0 — без кэша. */
+    private final int statementCacheSize;
+
+    /** Свободные подключения. */
+    private final BlockingQueue<PooledConnection> idle;
+
+    /** Разрешения на выдачу: по одному на каждое подключение пула. */
+    private final Semaphore permits;
+
+    /** Признак закрытого пула. */
+    private volatile boolean closed;
+
+    /**
+     * Создаёт пул на заданное число подключений.
+     * У каждого подключения свой кэш подготовленных запросов.
+     */
+    ConnectionPool(Opener opener, int size, int statementCacheSize) {
+        if (size < 1)
+            throw new IllegalArgumentException("Размер пула должен быть положительным");
+        this.opener = opener;
+        this.statementCacheSize = statementCacheSize;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Выдаёт подключение из пула или открывает новое.
+     * Если все подключения заняты, ждёт освобождения.
+     */
+    Connection acquire() throws SQLException {
+        if (closed)
+            throw new SQLException("Пул подключений закрыт");
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                throw new SQLException("Нет свободного подключения к базе");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание подключения прервано", e);
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.poll()) != null) {
+                if (isUsable(pooled))
+                    return pooled.lease();
+                pooled.closePhysical();
+            }
+            pooled = new PooledConnection(this, opener.open(), statementCacheSize);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Возвращает число свободных открытых подключений. */
+    int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Закрывает пул и все свободные подключения.
+     * Подключения, которые ещё используются, закрываются при возврате.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null)
+            pooled.closePhysical();
+    }
+
+    /** Проверяет подключение, которое долго не использовалось. */
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed())
+                return false;
+            if (System.currentTimeMillis() - pooled.releasedAt < VALIDATE_AFTER_MILLIS)
+                return true;
+            return pooled.physical.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Принимает подключение обратно после close() обёртки. */
+    private void release(PooledConnection pooled, boolean broken) {
+        try {
+            if (closed || broken || !pooled.reset()) {
+                pooled.closePhysical();
+            } else {
+                pooled.releasedAt = System.currentTimeMillis();
+                if (!idle.offer(pooled))
+                    pooled.closePhysical();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Способ открыть новое подключение к базе. */
+    @FunctionalInterface
+    interface Opener {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Физическое подключение пула.
+     * Каждая выдача получает новую обёртку, поэтому повторный close()
+     * старой обёртки не вернёт подключение в пул дважды.
+     */
+    static final class PooledConnection {
+        /** Пул, которому принадлежит подключение. */
+        private final ConnectionPool pool;
+
+        /** Настоящее подключение SQLite. */
+        final Connection physical;
+
+        /** Подготовленные запросы подключения или null, если кэш выключен. */
+        final StatementCache statements;
+
+        /** Момент последнего возврата в пул. */
+        long releasedAt = System.currentTimeMillis();
+
+        PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+            this.pool = pool;
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        }
+
+        /** Создаёт обёртку для очередной выдачи подключения. */
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(this));
+        }
+
+        /**
+         * Возвращает подключение в исходное состояние перед повторной выдачей:
+         * сбрасывает незакрытые запросы, откатывает незавершённую транзакцию
+         * и включает автокоммит.
+         */
+        boolean reset() {
+            if (statements != null)
+                statements.resetAll();
+            try {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Закрывает подготовленные запросы и настоящее подключение, игнорируя ошибки. */
+        void closePhysical() {
+            if (statements != null)
+                statements.closeAll();
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // подключение всё равно больше не используется
+            }
+        }
+    }
+
+    /**
+     * Обработчик вызовов обёртки: перехватывает close() и isClosed(),
+     * а prepareStatement(sql) отдаёт из кэша подключения.
+     */
+    private static final class Lease implements InvocationHandler {
+        /** Выданное подключение или null после возврата. */
+        private PooledConnection pooled;
+
+        /** Подключение сломалось во время использования. */
+        private boolean broken;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (pooled != null) {
+                        PooledConnection p = pooled;
+                        pooled = null;
+                        p.pool.release(p, broken);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    if (pooled == null)
+                        return true;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + (pooled == null ? "closed" : pooled.physical) + "]";
+                }
+                default -> {
+                }
+            }
+            if (pooled == null)
+                throw new SQLException("Подключение уже возвращено в пул");
+            try {
+                if (pooled.statements != null && StatementCache.isPlainPrepare(method))
+                    return pooled.statements.prepare((String) args[0]);
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sql && isFatal(sql))
+                    broken = true;
+                throw e.getCause();
+            }
+        }
+
+        /** Определяет ошибки, после которых подключение нельзя использовать повторно. */
+        private static boolean isFatal(SQLException e) {
+            String msg = e.getMessage();
+            return msg != null && (msg.contains("database connection closed")
+                    || msg.contains("SQLITE_IOERR") || msg.contains("SQLITE_CORRUPT")
+                    || msg.contains("SQLITE_NOTADB"));
+        }
+    }
+}
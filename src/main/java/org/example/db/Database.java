@@ -3,19 +3,33 @@ package org.example.db;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 /**
  Класс Database управляет подключением к SQLite.
- При первом подключении создаёт таблицу forms, если её ещё нет.
+ При создании приводит схему к последней версии (таблицы forms, chat_states
+ и их индексы), см. Migrations; если схема актуальна, DDL не выполняется.
+ Подключения берутся из пула и переиспользуются между запросами.
+ Каждое новое подключение настраивается по профилю StorageProfile.
  */
-class Database {
+class Database implements AutoCloseable {
+    /** Размер пула подключений по умолчанию. */
+    static final int DEFAULT_POOL_SIZE = 4;
+
+    /** Размер кэша подготовленных запросов на одно подключение. */
+    static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
     /**
      Адрес подключения к базе данных SQLite.
      "jdbc:sqlite:forms.db".
      */
     String url;
 
+    /** Настройки SQLite для каждого подключения. */
+    private final StorageProfile profile;
+
+    /** Пул подключений или null, если каждый запрос открывает своё подключение. */
+    private final ConnectionPool pool;
+
     /** Создаёт подключение к основной базе данных */
     Database() {
         this("jdbc:sqlite:forms.db");
@@ -23,35 +37,62 @@ class Database {
 
     /** Позволяет указать собственный путь к базе (например, для тестов) */
     Database(String url) {
+        this(url, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     Позволяет указать путь к базе и размер пула подключений.
+     При размере 0 подключение открывается заново на каждый запрос.
+     */
+    Database(String url, int poolSize) {
+        this(url, poolSize, StorageProfile.defaults());
+    }
+
+    /** Позволяет дополнительно задать настройки SQLite */
+    Database(String url, int poolSize, StorageProfile profile) {
+        this(url, poolSize, profile, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     Позволяет задать размер кэша подготовленных запросов (0 — без кэша).
+     Кэш работает только вместе с пулом подключений.
+     */
+    Database(String url, int poolSize, StorageProfile profile, int statementCacheSize) {
         this.url = url;
+        this.profile = profile;
+        this.pool = poolSize > 0 ? new ConnectionPool(this::open, poolSize, statementCacheSize) : null;
         initialize();
     }
 
-    /** Возвращает подключение к базе данных */
+    /**
+     Возвращает подключение к базе данных.
+     Вызов close() у подключения возвращает его в пул.
+     */
     Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url);
+        return pool != null ? pool.acquire() : open();
     }
 
-    /** Создаёт таблицу forms, если она отсутствует */
-    void initialize() {
-        String sql = """
-            CREATE TABLE IF NOT EXISTS forms (
-                        chat_id   INTEGER NOT NULL,
-                        name      TEXT NOT NULL,
-                        relation  TEXT,
-                        occasion  TEXT,
-                        age       INTEGER,
-                        hobbies   TEXT,
-                        budget    INTEGER,
-                        PRIMARY KEY(chat_id, name)
-                    );
-        """;
-
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+    /** Открывает новое подключение и применяет к нему профиль */
+    private Connection open() throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        try {
+            profile.apply(c);
         } catch (SQLException e) {
-            e.printStackTrace();
+            c.close();
+            throw e;
         }
+        return c;
+    }
+
+    /** Закрывает все подключения пула */
+    @Override
+    public void close() {
+        if (pool != null)
+            pool.close();
+    }
+
+    /** Приводит схему базы к последней версии (см. Migrations) */
+    void initialize() {
+        Migrations.ensureCurrent(url, this);
     }
 }
@@ -0,0 +1,239 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Класс FormCache хранит недавно прочитанные анкеты и списки имён анкет.
+ * Записи вытесняются по размеру (давно не использованные первыми)
+ * и по времени простоя. Наружу отдаются копии, потому что UserForm изменяемый.
+ *
+ * Чтобы чтение, начатое до записи, не положило в кэш устаревшие данные,
+ * у каждой группы чатов есть счётчик изменений: читатель запоминает его
+ * до обращения к базе, и запись в кэш отменяется, если счётчик успел измениться.
+ */
+public class FormCache {
+
+    /** Число независимых сегментов кэша и групп счётчиков изменений. */
+    private static final int SEGMENTS = 16;
+
+    /** Анкеты по ключу (чат, имя). */
+    private final Lru<FormKey, UserForm> forms;
+
+    /** Списки имён анкет по чату. */
+    private final Lru<Long, List<String>> names;
+
+    /** Счётчики изменений по группам чатов. */
+    private final AtomicLongArray versions = new AtomicLongArray(SEGMENTS);
+
+    /** Число попаданий в кэш. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Число промахов кэша. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Создаёт кэш на maxEntries анкет (и столько же списков имён). */
+    public FormCache(int maxEntries, Duration idleTtl) {
+        this(maxEntries, idleTtl, System::currentTimeMillis);
+    }
+
+    /** Конструктор для тестов — позволяет подменить часы. */
+    FormCache(int maxEntries, Duration idleTtl, LongSupplier clock) {
+        if (maxEntries < SEGMENTS)
+            throw new IllegalArgumentException("Размер кэша должен быть не меньше " + SEGMENTS);
+        this.forms = new Lru<>(maxEntries, idleTtl.toMillis(), clock);
+        this.names = new Lru<>(maxEntries, idleTtl.toMillis(), clock);
+    }
+
+    /** Возвращает копию анкеты из кэша или null. */
+    public UserForm getForm(long chatId, String name) {
+        UserForm f = forms.get(new FormKey(chatId, name));
+        count(f != null);
+        return f == null ? null : f.copy();
+    }
+
+    /** Возвращает копию списка имён анкет чата из кэша или null. */
+    public List<String> getNames(long chatId) {
+        List<String> list = names.get(chatId);
+        count(list != null);
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    /** Возвращает счётчик изменений чата; его нужно взять до чтения базы. */
+    public long stamp(long chatId) {
+        return versions.get(segmentOf(chatId));
+    }
+
+    /** Кладёт прочитанную анкету, если с момента stamp чат не менялся. */
+    public void putForm(UserForm f, long stamp) {
+        if (stamp(f.chatId) == stamp)
+            forms.put(new FormKey(f.chatId, f.name), f.copy());
+    }
+
+    /** Кладёт прочитанный список имён, если с момента stamp чат не менялся. */
+    public void putNames(long chatId, List<String> list, long stamp) {
+        if (stamp(chatId) == stamp)
+            names.put(chatId, List.copyOf(list));
+    }
+
+    /** Удаляет анкету и список имён её чата после изменения. */
+    public void invalidate(long chatId, String name) {
+        versions.incrementAndGet(segmentOf(chatId));
+        forms.remove(new FormKey(chatId, name));
+        names.remove(chatId);
+    }
+
+    /** Возвращает статистику кэша. */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), forms.evictions() + names.evictions(),
+                forms.size() + names.size());
+    }
+
+    /** Учитывает попадание или промах. */
+    private void count(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    /** Возвращает номер группы для чата. */
+    private static int segmentOf(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 60);
+    }
+
+    /**
+     * Статистика кэша.
+     *
+     * @param hits      число попаданий
+     * @param misses    число промахов
+     * @param evictions число вытесненных записей
+     * @param size      текущее число записей
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        /** Доля попаданий от 0 до 1. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * Сегментированный LRU-кэш с вытеснением по времени простоя.
+     * Каждый сегмент — LinkedHashMap в порядке доступа под своей блокировкой.
+     */
+    private static final class Lru<K, V> {
+        /** Сегменты кэша. */
+        private final List<Segment<K, V>> segments;
+
+        /** Время простоя, после которого запись устаревает. */
+        private final long idleMillis;
+
+        /** Источник текущего времени. */
+        private final LongSupplier clock;
+
+        /** Число вытесненных записей. */
+        private final LongAdder evictions = new LongAdder();
+
+        Lru(int maxEntries, long idleMillis, LongSupplier clock) {
+            this.idleMillis = idleMillis;
+            this.clock = clock;
+            List<Segment<K, V>> segments = new ArrayList<>(SEGMENTS);
+            for (int i = 0; i < SEGMENTS; i++)
+                segments.add(new Segment<>(maxEntries / SEGMENTS));
+            this.segments = List.copyOf(segments);
+        }
+
+        V get(K key) {
+            Segment<K, V> s = segmentFor(key);
+            long now = clock.getAsLong();
+            synchronized (s) {
+                Entry<V> e = s.map.get(key);
+                if (e == null)
+                    return null;
+                if (now - e.lastAccess > idleMillis) {
+                    s.map.remove(key);
+                    evictions.increment();
+                    return null;
+                }
+                e.lastAccess = now;
+                return e.value;
+            }
+        }
+
+        void put(K key, V value) {
+            Segment<K, V> s = segmentFor(key);
+            long now = clock.getAsLong();
+            synchronized (s) {
+                s.map.put(key, new Entry<>(value, now));
+                // Сначала самые старые: вытесняем лишние и устаревшие
+                Iterator<Entry<V>> it = s.map.values().iterator();
+                while (it.hasNext()) {
+                    Entry<V> eldest = it.next();
+                    if (s.map.size() <= s.capacity && now - eldest.lastAccess <= idleMillis)
+                        break;
+                    it.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        void remove(K key) {
+            Segment<K, V> s = segmentFor(key);
+            synchronized (s) {
+                s.map.remove(key);
+            }
+        }
+
+        int size() {
+            int total = 0;
+            for (Segment<K, V> s : segments) {
+                synchronized (s) {
+                    total += s.map.size();
+                }
+            }
+            return total;
+        }
+
+        long evictions() {
+            return evictions.sum();
+        }
+
+        private Segment<K, V> segmentFor(K key) {
+            int h = key.hashCode();
+            return segments.get((h ^ (h >>> 16)) & (SEGMENTS - 1));
+        }
+    }
+
+    /** Сегмент кэша. */
+    private static final class Segment<K, V> {
+        /** Наибольшее число записей в сегменте. */
+        final int capacity;
+
+        /** Записи в порядке доступа: первой идёт давно не использованная. */
+        final Map<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /** Запись кэша со временем последнего доступа. */
+    private static final class Entry<V> {
+        final V value;
+        long lastAccess;
+
+        Entry(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
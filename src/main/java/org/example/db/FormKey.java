@@ -0,0 +1,10 @@
+package org.example.db;
+
+/**
+ * Ключ анкеты: пользователь и название анкеты.
+ *
+ * @param chatId идентификатор чата
+ * @param name   название анкеты
+ */
+public record FormKey(long chatId, String name) {
+}
@@ -3,74 +3,176 @@ package org.example.db;
 import org.example.model.UserForm;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Класс FormRepository отвечает за работу с анкетами в базе данных.
  * Сохраняет, получает, удаляет и обновляет данные пользователя.
+ * Это основная реализация FormStore.
  * Использует класс Database для подключения к SQLite.
+ * Тексты запросов постоянные, поэтому подготовленные запросы
+ * берутся из кэша подключения и не разбираются заново.
+ * Необязательный FormCache избавляет от повторного чтения одних и тех же анкет.
+ * Анкеты можно разложить по нескольким файлам базы (см. Shards),
+ * тогда все анкеты одного чата лежат в одном файле.
  */
-public class FormRepository {
+public class FormRepository implements FormStore {
 
-    /** Объект для подключения к базе данных */
-    private final Database database;
+    /** Вставка анкеты или обновление существующей. */
+    private static final String UPSERT_SQL = """
+            INSERT INTO forms (chat_id, name, relation, occasion, age, hobbies, budget)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(chat_id, name) DO UPDATE SET
+                relation=excluded.relation,
+                occasion=excluded.occasion,
+                age=excluded.age,
+                hobbies=excluded.hobbies,
+                budget=excluded.budget
+        """;
+
+    /** Порядок имён, совпадающий с порядком SQLite (по байтам UTF-8, то есть по кодовым точкам). */
+    static final Comparator<String> NAME_ORDER = (a, b) -> {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i), cb = b.codePointAt(j);
+            if (ca != cb)
+                return Integer.compare(ca, cb);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    };
+
+    /** Удаление анкеты по имени. */
+    private static final String DELETE_SQL = "DELETE FROM forms WHERE chat_id = ? AND name = ?";
+
+    /** Базы данных по файлам; анкета чата хранится в файле Shards.shardOf(chatId) */
+    private final Database[] shards;
+
+    /** Кэш прочитанных анкет или null, если кэш выключен */
+    private final FormCache cache;
 
     /** Конструктор для продакшн-кода */
     public FormRepository() {
-        this.database = new Database();
+        this(new Database[]{new Database()}, null);
     }
 
     /** Конструктор для тестов — позволяет использовать отдельную базу */
     public FormRepository(String dbPath) {
-        this.database = new Database("jdbc:sqlite:" + dbPath);
+        this(new Database[]{new Database("jdbc:sqlite:" + dbPath)}, null);
+    }
+
+    /** Конструктор с заданным размером пула подключений (0 — без пула) */
+    public FormRepository(String dbPath, int poolSize) {
+        this(new Database[]{new Database("jdbc:sqlite:" + dbPath, poolSize)}, null);
+    }
+
+    /** Конструктор с размером пула и настройками SQLite */
+    public FormRepository(String dbPath, int poolSize, StorageProfile profile) {
+        this(dbPath, 1, poolSize, profile, null);
+    }
+
+    /** Конструктор с размером пула, настройками SQLite и кэшем анкет (null — без кэша) */
+    public FormRepository(String dbPath, int poolSize, StorageProfile profile, FormCache cache) {
+        this(dbPath, 1, poolSize, profile, cache);
+    }
+
+    /**
+     * Конструктор для нескольких файлов базы: у каждого файла свой пул
+     * подключений размера poolSize. Схема создаётся во всех файлах.
+     */
+    public FormRepository(String dbPath, int shardCount, int poolSize, StorageProfile profile, FormCache cache) {
+        this(Shards.open(dbPath, shardCount, poolSize, profile), cache);
+    }
+
+    /** Конструктор для тестов — позволяет передать настроенную базу */
+    FormRepository(Database database) {
+        this(new Database[]{database}, null);
+    }
+
+    /** Конструктор с готовыми базами и кэшем */
+    FormRepository(Database[] shards, FormCache cache) {
+        this.shards = shards;
+        this.cache = cache;
+    }
+
+    /** Возвращает кэш анкет или null, если он выключен */
+    public FormCache cache() {
+        return cache;
+    }
+
+    /** Возвращает число файлов базы */
+    @Override
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /** Закрывает подключения ко всем файлам базы */
+    @Override
+    public void close() {
+        for (Database shard : shards)
+            shard.close();
+    }
+
+    /** Возвращает номер файла базы, в котором хранятся анкеты чата */
+    int shardOf(long chatId) {
+        return Shards.shardOf(chatId, shards.length);
+    }
+
+    /** Возвращает подключение к файлу базы, в котором хранятся анкеты чата */
+    private Connection connect(long chatId) throws SQLException {
+        return shards[shardOf(chatId)].getConnection();
     }
 
     /**
      * Сохраняет или обновляет анкету в базе данных.
      * Если анкета уже существует, она перезаписывается.
      */
+    @Override
     public void upsert(UserForm f) {
-        String sql = """
-            INSERT INTO forms (chat_id, name, relation, occasion, age, hobbies, budget)
-            VALUES (?, ?, ?, ?, ?, ?, ?)
-            ON CONFLICT(chat_id, name) DO UPDATE SET
-                relation=excluded.relation,
-                occasion=excluded.occasion,
-                age=excluded.age,
-                hobbies=excluded.hobbies,
-                budget=excluded.budget
-        """;
-        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setLong(1, f.chatId);
-            ps.setString(2, f.name);
-            ps.setString(3, f.relation);
-            ps.setString(4, f.occasion);
-            ps.setObject(5, f.age);
-            ps.setString(6, f.hobbies);
-            ps.setObject(7, f.budget);
+        try (Connection c = connect(f.chatId); PreparedStatement ps = c.prepareStatement(UPSERT_SQL)) {
+            bindForm(ps, f);
             ps.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка при сохранении анкеты", e);
+        } finally {
+            invalidate(f.chatId, f.name);
         }
     }
 
-    /** Возвращает анкету по имени и ID пользователя. */
+    /**
+     * Возвращает анкету по имени и ID пользователя.
+     * Если включён кэш, сначала ищет анкету в нём.
+     */
+    @Override
     public UserForm get(long chatId, String name) {
-        String sql = "SELECT * FROM forms WHERE chat_id = ? AND name = ?";
-        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        if (cache == null)
+            return load(chatId, name);
+        UserForm cached = cache.getForm(chatId, name);
+        if (cached != null)
+            return cached;
+        long stamp = cache.stamp(chatId);
+        UserForm f = load(chatId, name);
+        if (f != null)
+            cache.putForm(f, stamp);
+        return f;
+    }
+
+    /** Читает анкету из базы. */
+    private UserForm load(long chatId, String name) {
+        String sql = "SELECT chat_id, name, relation, occasion, age, hobbies, budget FROM forms"
+                + " WHERE chat_id = ? AND name = ?";
+        try (Connection c = connect(chatId); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, chatId);
             ps.setString(2, name);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new UserForm(
-                        rs.getLong("chat_id"),
-                        rs.getString("name"),
-                        rs.getString("relation"),
-                        rs.getString("occasion"),
-                        rs.getInt("age"),
-                        rs.getString("hobbies"),
-                        rs.getInt("budget")
-                );
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next())
+                    return readForm(rs);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка при получении анкеты", e);
@@ -78,11 +180,31 @@ public class FormRepository {
         return null;
     }
 
-    /** Возвращает список всех имён анкет пользователя. */
+    /**
+     * Возвращает список всех имён анкет пользователя по возрастанию.
+     * Если включён кэш, сначала ищет список в нём.
+     */
+    @Override
     public List<String> listNames(long chatId) {
+        return cache == null ? loadNames(chatId) : cachedNames(chatId);
+    }
+
+    /** Возвращает имена анкет из кэша, при промахе читает их из базы и кладёт в кэш. */
+    private List<String> cachedNames(long chatId) {
+        List<String> cached = cache.getNames(chatId);
+        if (cached != null)
+            return cached;
+        long stamp = cache.stamp(chatId);
+        List<String> names = loadNames(chatId);
+        cache.putNames(chatId, names, stamp);
+        return names;
+    }
+
+    /** Читает имена анкет пользователя из базы по возрастанию. */
+    private List<String> loadNames(long chatId) {
         List<String> result = new ArrayList<>();
-        String sql = "SELECT name FROM forms WHERE chat_id = ?";
-        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        String sql = "SELECT name FROM forms WHERE chat_id = ? ORDER BY name";
+        try (Connection c = connect(chatId); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setLong(1, chatId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -94,15 +216,196 @@ public class FormRepository {
         return result;
     }
 
+    /**
+     * Возвращает страницу имён анкет, следующих за after (null — с начала).
+     * Запрос идёт по первичному ключу (chat_id, name), поэтому стоимость
+     * страницы не зависит от того, сколько всего анкет у пользователя.
+     * С кэшем страница вырезается из закэшированного списка имён.
+     */
+    @Override
+    public NamePage listNamesAfter(long chatId, String after, int limit) {
+        List<String> fetched = fetchPage(chatId, after, true, limit + 1);
+        return NamePage.after(fetched, after != null && reaches(chatId, after, false), limit);
+    }
+
+    /**
+     * Возвращает страницу имён анкет, предшествующих before.
+     * Имена на странице идут по возрастанию.
+     */
+    @Override
+    public NamePage listNamesBefore(long chatId, String before, int limit) {
+        List<String> fetched = fetchPage(chatId, before, false, limit + 1);
+        return NamePage.before(fetched, before != null && reaches(chatId, before, true), limit);
+    }
+
+    /**
+     * Возвращает true, если у чата осталась анкета bound или анкета за ней
+     * в направлении forward. Так страница узнаёт, есть ли что-то по другую
+     * сторону курсора, даже если анкеты там удалены.
+     */
+    private boolean reaches(long chatId, String bound, boolean forward) {
+        return !fetchPage(chatId, bound, forward, 1).isEmpty() || get(chatId, bound) != null;
+    }
+
+    /**
+     * Читает до fetchLimit имён после bound (forward) или перед bound (!forward)
+     * в порядке обхода: по возрастанию вперёд и по убыванию назад.
+     * Если включён кэш, имена берутся из закэшированного списка.
+     */
+    List<String> fetchPage(long chatId, String bound, boolean forward, int fetchLimit) {
+        if (cache != null)
+            return slice(cachedNames(chatId), bound, forward, fetchLimit);
+        String sql = "SELECT name FROM forms WHERE chat_id = ?"
+                + (bound == null ? "" : forward ? " AND name > ?" : " AND name < ?")
+                + (forward ? " ORDER BY name LIMIT ?" : " ORDER BY name DESC LIMIT ?");
+        List<String> result = new ArrayList<>();
+        try (Connection c = connect(chatId); PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            ps.setLong(i++, chatId);
+            if (bound != null)
+                ps.setString(i++, bound);
+            ps.setInt(i, fetchLimit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    result.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при получении страницы анкет", e);
+        }
+        return result;
+    }
+
+    /**
+     * Вырезает из списка имён по возрастанию до fetchLimit имён после bound
+     * (forward) или перед bound (!forward) в порядке обхода.
+     */
+    private static List<String> slice(List<String> sorted, String bound, boolean forward, int fetchLimit) {
+        int at;
+        if (bound == null) {
+            at = forward ? 0 : sorted.size();
+        } else {
+            int found = Collections.binarySearch(sorted, bound, NAME_ORDER);
+            at = found < 0 ? -found - 1 : forward ? found + 1 : found;
+        }
+        if (forward)
+            return new ArrayList<>(sorted.subList(at, Math.min(sorted.size(), at + fetchLimit)));
+        List<String> page = new ArrayList<>(sorted.subList(Math.max(0, at - fetchLimit), at));
+        Collections.reverse(page);
+        return page;
+    }
+
     /** Удаляет анкету пользователя по имени. */
+    @Override
     public void delete(long chatId, String name) {
-        String sql = "DELETE FROM forms WHERE chat_id = ? AND name = ?";
-        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = connect(chatId); PreparedStatement ps = c.prepareStatement(DELETE_SQL)) {
             ps.setLong(1, chatId);
             ps.setString(2, name);
             ps.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Ошибка при удалении анкеты", e);
+        } finally {
+            invalidate(chatId, name);
+        }
+    }
+
+    /**
+     * Записывает пачку изменений: по одной транзакции на каждый затронутый файл базы.
+     * Для каждой анкеты в пачке должно быть не больше одного изменения,
+     * поэтому порядок вставок и удалений не важен.
+     */
+    void writeBatch(Collection<UserForm> upserts, Collection<FormKey> deletes) {
+        try {
+            if (shards.length == 1) {
+                writeShard(0, upserts, deletes);
+                return;
+            }
+            Map<Integer, List<UserForm>> upsertsByShard = new HashMap<>();
+            Map<Integer, List<FormKey>> deletesByShard = new HashMap<>();
+            for (UserForm f : upserts)
+                upsertsByShard.computeIfAbsent(shardOf(f.chatId), i -> new ArrayList<>()).add(f);
+            for (FormKey key : deletes)
+                deletesByShard.computeIfAbsent(shardOf(key.chatId()), i -> new ArrayList<>()).add(key);
+            for (int i = 0; i < shards.length; i++) {
+                List<UserForm> u = upsertsByShard.getOrDefault(i, List.of());
+                List<FormKey> d = deletesByShard.getOrDefault(i, List.of());
+                if (!u.isEmpty() || !d.isEmpty())
+                    writeShard(i, u, d);
+            }
+        } finally {
+            for (UserForm f : upserts)
+                invalidate(f.chatId, f.name);
+            for (FormKey key : deletes)
+                invalidate(key.chatId(), key.name());
         }
     }
+
+    /** Записывает изменения одного файла базы одной транзакцией. */
+    private void writeShard(int shard, Collection<UserForm> upserts, Collection<FormKey> deletes) {
+        try (Connection c = shards[shard].getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ups = c.prepareStatement(UPSERT_SQL);
+                 PreparedStatement del = c.prepareStatement(DELETE_SQL)) {
+                for (UserForm f : upserts) {
+                    bindForm(ups, f);
+                    ups.addBatch();
+                }
+                for (FormKey key : deletes) {
+                    del.setLong(1, key.chatId());
+                    del.setString(2, key.name());
+                    del.addBatch();
+                }
+                if (!upserts.isEmpty())
+                    ups.executeBatch();
+                if (!deletes.isEmpty())
+                    del.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при сохранении пачки анкет", e);
+        }
+    }
+
+    /**
+     * Сбрасывает анкету в кэше после изменения.
+     * Вызывается и при ошибке: неизвестно, успела ли запись попасть в базу.
+     */
+    private void invalidate(long chatId, String name) {
+        if (cache != null)
+            cache.invalidate(chatId, name);
+    }
+
+    /**
+     * Читает анкету из строки запроса со столбцами
+     * chat_id, name, relation, occasion, age, hobbies, budget.
+     */
+    static UserForm readForm(ResultSet rs) throws SQLException {
+        return new UserForm(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getString(4),
+                nullableInt(rs, 5),
+                rs.getString(6),
+                nullableInt(rs, 7));
+    }
+
+    /** Читает число, которое может быть NULL. */
+    private static Integer nullableInt(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /** Подставляет поля анкеты в запрос вставки. */
+    private static void bindForm(PreparedStatement ps, UserForm f) throws SQLException {
+        ps.setLong(1, f.chatId);
+        ps.setString(2, f.name);
+        ps.setString(3, f.relation);
+        ps.setString(4, f.occasion);
+        ps.setObject(5, f.age);
+        ps.setString(6, f.hobbies);
+        ps.setObject(7, f.budget);
+    }
 }
@@ -0,0 +1,50 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+
+import java.util.List;
+
+/**
+ * Интерфейс FormStore описывает хранилище анкет пользователей.
+ * Основная реализация — FormRepository (SQLite), для тестов и нагрузочных
+ * прогонов есть InMemoryFormStore. Все анкеты принадлежат одному чату,
+ * поэтому каждая операция затрагивает анкеты только одного chatId.
+ */
+public interface FormStore extends AutoCloseable {
+
+    /**
+     * Сохраняет или обновляет анкету.
+     * Если анкета с таким именем уже существует, она перезаписывается.
+     */
+    void upsert(UserForm f);
+
+    /** Возвращает анкету по имени и ID пользователя или null, если её нет. */
+    UserForm get(long chatId, String name);
+
+    /** Возвращает список всех имён анкет пользователя. */
+    List<String> listNames(long chatId);
+
+    /** Возвращает страницу имён анкет, следующих за after (null — с начала). */
+    NamePage listNamesAfter(long chatId, String after, int limit);
+
+    /**
+     * Возвращает страницу имён анкет, предшествующих before (null — с конца).
+     * Имена на странице идут по возрастанию.
+     */
+    NamePage listNamesBefore(long chatId, String before, int limit);
+
+    /** Удаляет анкету пользователя по имени. */
+    void delete(long chatId, String name);
+
+    /**
+     * Возвращает число независимых файлов, между которыми разложены чаты
+     * по {@link Shards#shardOf}. Записи в разные файлы не мешают друг другу.
+     */
+    default int shardCount() {
+        return 1;
+    }
+
+    /** Освобождает ресурсы хранилища. */
+    @Override
+    void close();
+}
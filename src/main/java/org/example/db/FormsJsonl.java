@@ -0,0 +1,171 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Утилита FormsJsonl выгружает анкеты в файл JSONL (одна анкета — одна строка JSON)
+ * и загружает их обратно. Подходит для резервных копий, переноса и заполнения базы.
+ *
+ * Выгрузка читает таблицу forms курсором только вперёд, загрузка читает файл
+ * построчно и пишет анкеты пачками по BATCH штук в одной транзакции
+ * (INSERT ... ON CONFLICT, см. FormRepository#writeBatch). Поэтому память
+ * не зависит от числа анкет, а повторная загрузка того же файла безопасна.
+ * Пустые поля в JSON не записываются.
+ *
+ * Запуск: {@code java org.example.db.FormsJsonl export forms.db forms.jsonl [число файлов]}
+ * или {@code java org.example.db.FormsJsonl import forms.db forms.jsonl [число файлов]}.
+ */
+public final class FormsJsonl {
+
+    /** Сколько анкет записывать одной транзакцией при загрузке. */
+    private static final int BATCH = 10_000;
+
+    /** Сколько строк драйвер читает из базы за раз при выгрузке. */
+    private static final int FETCH_SIZE = 1000;
+
+    private FormsJsonl() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Использование: FormsJsonl export|import <база> <файл.jsonl> [число файлов базы]");
+            System.exit(2);
+        }
+        int shards = args.length == 4 ? Integer.parseInt(args[3]) : 1;
+        Path file = Path.of(args[2]);
+        long start = System.nanoTime();
+        long rows;
+        if (args[0].equals("export")) {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                rows = export(args[1], shards, out);
+            }
+        } else {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                rows = importForms(args[1], shards, in);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s анкет: %d за %.1f с (%.0f строк/с)%n",
+                args[0].equals("export") ? "Выгружено" : "Загружено", rows, seconds, rows / seconds);
+    }
+
+    /**
+     * Выгружает анкеты из всех shardCount файлов базы dbPath в out
+     * и возвращает их число. Поток out не закрывается.
+     */
+    public static long export(String dbPath, int shardCount, Writer out) {
+        BufferedWriter writer = out instanceof BufferedWriter b ? b : new BufferedWriter(out);
+        long rows = 0;
+        try {
+            for (int i = 0; i < shardCount; i++)
+                rows += exportFile(Shards.path(dbPath, i, shardCount), writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при записи файла выгрузки", e);
+        }
+        return rows;
+    }
+
+    /** Выгружает анкеты одного файла базы. */
+    private static long exportFile(String path, BufferedWriter out) throws IOException {
+        if (!new File(path).exists())
+            throw new IllegalArgumentException("Нет файла базы " + path);
+        String sql = "SELECT chat_id, name, relation, occasion, age, hobbies, budget FROM forms";
+        long rows = 0;
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + path);
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.write(toJson(FormRepository.readForm(rs)).toString());
+                    out.newLine();
+                    rows++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при выгрузке анкет из " + path, e);
+        }
+        return rows;
+    }
+
+    /**
+     * Загружает анкеты из in в shardCount файлов базы dbPath
+     * и возвращает их число. Пустые строки пропускаются.
+     */
+    public static long importForms(String dbPath, int shardCount, Reader in) {
+        BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in);
+        long rows = 0;
+        long lineNumber = 0;
+        try (FormRepository target = new FormRepository(dbPath, shardCount, 1, StorageProfile.defaults(), null)) {
+            List<UserForm> batch = new ArrayList<>(BATCH);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                batch.add(fromJson(line, lineNumber));
+                if (batch.size() == BATCH) {
+                    target.writeBatch(batch, List.of());
+                    rows += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                target.writeBatch(batch, List.of());
+                rows += batch.size();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при чтении файла загрузки", e);
+        }
+        return rows;
+    }
+
+    /** Превращает анкету в объект JSON. */
+    static JSONObject toJson(UserForm f) {
+        return new JSONObject()
+                .put("chat_id", f.chatId)
+                .put("name", f.name)
+                .putOpt("relation", f.relation)
+                .putOpt("occasion", f.occasion)
+                .putOpt("age", f.age)
+                .putOpt("hobbies", f.hobbies)
+                .putOpt("budget", f.budget);
+    }
+
+    /** Читает анкету из строки JSON; lineNumber нужен для сообщения об ошибке. */
+    static UserForm fromJson(String line, long lineNumber) {
+        try {
+            JSONObject json = new JSONObject(line);
+            return new UserForm(
+                    json.getLong("chat_id"),
+                    json.getString("name"),
+                    json.optString("relation", null),
+                    json.optString("occasion", null),
+                    json.isNull("age") ? null : json.getInt("age"),
+                    json.optString("hobbies", null),
+                    json.isNull("budget") ? null : json.getInt("budget"));
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Ошибка в строке " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+}
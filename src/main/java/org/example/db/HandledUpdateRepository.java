@@ -0,0 +1,80 @@
+package org.example.db;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Класс HandledUpdateRepository хранит update_id полностью обработанных обновлений
+ * в таблице handled_updates, чтобы после перезапуска бот не обрабатывал повторно
+ * доставленные Telegram обновления. Хранятся только последние идентификаторы.
+ */
+public class HandledUpdateRepository implements AutoCloseable {
+
+    /** Объект для подключения к базе данных */
+    private final Database database;
+
+    /** Конструктор для продакшн-кода */
+    public HandledUpdateRepository() {
+        this.database = new Database();
+    }
+
+    /** Конструктор для тестов — позволяет использовать отдельную базу */
+    public HandledUpdateRepository(String dbPath) {
+        this.database = new Database("jdbc:sqlite:" + dbPath);
+    }
+
+    /** Закрывает подключения к базе данных */
+    @Override
+    public void close() {
+        database.close();
+    }
+
+    /**
+     * Сохраняет идентификаторы обработанных обновлений и удаляет те,
+     * что отстали от самого нового больше чем на keep.
+     * Всё выполняется одной транзакцией.
+     */
+    public void saveAll(Collection<Integer> updateIds, int keep) {
+        String insert = "INSERT OR IGNORE INTO handled_updates (update_id) VALUES (?)";
+        String prune = "DELETE FROM handled_updates WHERE update_id <= (SELECT MAX(update_id) FROM handled_updates) - ?";
+        try (Connection c = database.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ins = c.prepareStatement(insert);
+                 PreparedStatement del = c.prepareStatement(prune)) {
+                for (Integer id : updateIds) {
+                    ins.setInt(1, id);
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+                del.setInt(1, keep);
+                del.executeUpdate();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при сохранении обработанных обновлений", e);
+        }
+    }
+
+    /** Возвращает не больше limit последних идентификаторов по возрастанию. */
+    public List<Integer> loadLatest(int limit) {
+        String sql = "SELECT update_id FROM handled_updates ORDER BY update_id DESC LIMIT ?";
+        List<Integer> ids = new ArrayList<>();
+        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    ids.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при чтении обработанных обновлений", e);
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+}
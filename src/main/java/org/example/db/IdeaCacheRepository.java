@@ -0,0 +1,95 @@
+package org.example.db;
+
+import java.sql.*;
+
+/**
+ * Класс IdeaCacheRepository хранит ответы нейросети в таблице gift_ideas,
+ * чтобы кэш идей подарков переживал перезапуск бота.
+ * Ключ — хеш запроса, значение — текст ответа и время его получения.
+ */
+public class IdeaCacheRepository implements AutoCloseable {
+
+    /** Объект для подключения к базе данных */
+    private final Database database;
+
+    /** Конструктор для тестов — позволяет использовать отдельную базу */
+    public IdeaCacheRepository(String dbPath) {
+        this.database = new Database("jdbc:sqlite:" + dbPath);
+    }
+
+    /** Конструктор с размером пула и настройками SQLite */
+    public IdeaCacheRepository(String dbPath, int poolSize, StorageProfile profile) {
+        this.database = new Database("jdbc:sqlite:" + dbPath, poolSize, profile);
+    }
+
+    /** Закрывает подключения к базе данных */
+    @Override
+    public void close() {
+        database.close();
+    }
+
+    /**
+     * Возвращает ответ по ключу, если он получен не раньше notBefore,
+     * иначе null.
+     */
+    public Entry get(String key, long notBefore) {
+        String sql = "SELECT response, created_at FROM gift_ideas WHERE cache_key = ? AND created_at >= ?";
+        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, key);
+            ps.setLong(2, notBefore);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Entry(rs.getString(1), rs.getLong(2)) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при чтении кэша идей", e);
+        }
+    }
+
+    /** Сохраняет ответ или заменяет старый. */
+    public void put(String key, String response, long createdAt) {
+        String sql = """
+            INSERT INTO gift_ideas (cache_key, response, created_at) VALUES (?, ?, ?)
+            ON CONFLICT(cache_key) DO UPDATE SET
+                response=excluded.response,
+                created_at=excluded.created_at
+        """;
+        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, key);
+            ps.setString(2, response);
+            ps.setLong(3, createdAt);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при сохранении кэша идей", e);
+        }
+    }
+
+    /**
+     * Удаляет ответы, полученные раньше notBefore, и самые старые ответы
+     * сверх maxEntries. Возвращает число удалённых ответов.
+     */
+    public int prune(long notBefore, int maxEntries) {
+        String expired = "DELETE FROM gift_ideas WHERE created_at < ?";
+        String overflow = """
+            DELETE FROM gift_ideas WHERE cache_key IN (
+                SELECT cache_key FROM gift_ideas ORDER BY created_at DESC LIMIT -1 OFFSET ?)
+        """;
+        try (Connection c = database.getConnection();
+             PreparedStatement exp = c.prepareStatement(expired);
+             PreparedStatement over = c.prepareStatement(overflow)) {
+            exp.setLong(1, notBefore);
+            over.setInt(1, maxEntries);
+            return exp.executeUpdate() + over.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при очистке кэша идей", e);
+        }
+    }
+
+    /**
+     * Сохранённый ответ.
+     *
+     * @param response  текст ответа нейросети
+     * @param createdAt время получения ответа в миллисекундах
+     */
+    public record Entry(String response, long createdAt) {
+    }
+}
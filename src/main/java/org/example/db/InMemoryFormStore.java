@@ -0,0 +1,95 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Класс InMemoryFormStore хранит анкеты в памяти, без базы данных.
+ * Нужен для тестов и нагрузочных прогонов: ведёт себя так же, как FormRepository,
+ * но данные пропадают при остановке.
+ *
+ * Анкеты чата лежат в ConcurrentSkipListMap, упорядоченной так же, как имена
+ * в SQLite, а сами чаты — в LongMap по chatId. Обе структуры работают без
+ * блокировок. Анкета изменяемая, поэтому хранятся и выдаются копии.
+ */
+public class InMemoryFormStore implements FormStore {
+
+    /** Сколько чатов помещается без роста таблицы. */
+    private static final int INITIAL_CHATS = 1024;
+
+    /** Анкеты по чатам; внутри чата — по имени. */
+    private final LongMap<ConcurrentSkipListMap<String, UserForm>> chats = new LongMap<>(INITIAL_CHATS);
+
+    /** Сохраняет или обновляет анкету. */
+    @Override
+    public void upsert(UserForm f) {
+        chats.computeIfAbsent(f.chatId, id -> new ConcurrentSkipListMap<>(FormRepository.NAME_ORDER))
+                .put(f.name, f.copy());
+    }
+
+    /** Возвращает копию анкеты или null. */
+    @Override
+    public UserForm get(long chatId, String name) {
+        ConcurrentSkipListMap<String, UserForm> forms = chats.get(chatId);
+        UserForm f = forms == null ? null : forms.get(name);
+        return f == null ? null : f.copy();
+    }
+
+    /** Возвращает имена анкет пользователя по возрастанию. */
+    @Override
+    public List<String> listNames(long chatId) {
+        ConcurrentSkipListMap<String, UserForm> forms = chats.get(chatId);
+        return forms == null ? new ArrayList<>() : new ArrayList<>(forms.keySet());
+    }
+
+    /** Возвращает страницу имён анкет, следующих за after (null — с начала). */
+    @Override
+    public NamePage listNamesAfter(long chatId, String after, int limit) {
+        ConcurrentSkipListMap<String, UserForm> forms = chats.get(chatId);
+        if (forms == null)
+            return NamePage.after(new ArrayList<>(), false, limit);
+        NavigableSet<String> names = after == null ? forms.keySet() : forms.keySet().tailSet(after, false);
+        boolean hasPrev = after != null && !forms.headMap(after, true).isEmpty();
+        return NamePage.after(take(names, limit + 1), hasPrev, limit);
+    }
+
+    /** Возвращает страницу имён анкет, предшествующих before (null — с конца). */
+    @Override
+    public NamePage listNamesBefore(long chatId, String before, int limit) {
+        ConcurrentSkipListMap<String, UserForm> forms = chats.get(chatId);
+        if (forms == null)
+            return NamePage.before(new ArrayList<>(), false, limit);
+        NavigableSet<String> names = before == null
+                ? forms.descendingKeySet()
+                : forms.keySet().headSet(before, false).descendingSet();
+        boolean hasNext = before != null && !forms.tailMap(before, true).isEmpty();
+        return NamePage.before(take(names, limit + 1), hasNext, limit);
+    }
+
+    /** Удаляет анкету пользователя по имени. */
+    @Override
+    public void delete(long chatId, String name) {
+        ConcurrentSkipListMap<String, UserForm> forms = chats.get(chatId);
+        if (forms != null)
+            forms.remove(name);
+    }
+
+    /** Хранилищу нечего закрывать. */
+    @Override
+    public void close() {
+    }
+
+    /** Возвращает не больше limit первых имён набора. */
+    private static List<String> take(NavigableSet<String> names, int limit) {
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        Iterator<String> it = names.iterator();
+        while (result.size() < limit && it.hasNext())
+            result.add(it.next());
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.db;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Класс LongMap — словарь с ключами long без упаковки в Long.
+ * Чтение и вставка не берут блокировок: корзина — неизменяемая цепочка узлов,
+ * новый узел добавляется в её начало через CAS.
+ * При росте таблицы корзины по одной переносятся в новую таблицу и заменяются
+ * пересылкой, поэтому операция, попавшая на перенесённую корзину,
+ * продолжается в новой таблице. Ключи не удаляются.
+ */
+final class LongMap<V> {
+
+    /** Наибольший размер таблицы. */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /** Текущая таблица корзин. */
+    private volatile Table<V> table;
+
+    /** Число ключей. */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Признак идущего переноса: таблицу увеличивает один поток. */
+    private final AtomicBoolean resizing = new AtomicBoolean();
+
+    /** Создаёт словарь на initialCapacity ключей без роста таблицы. */
+    LongMap(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity * 3 / 4 < initialCapacity)
+            capacity <<= 1;
+        this.table = new Table<>(capacity);
+    }
+
+    /** Возвращает значение по ключу или null. */
+    V get(long key) {
+        Table<V> t = table;
+        while (true) {
+            Node<V> head = t.bins.get(t.indexOf(key));
+            if (head instanceof Forward<V> forward) {
+                t = forward.next;
+                continue;
+            }
+            return find(head, key);
+        }
+    }
+
+    /**
+     * Возвращает значение по ключу, а если его нет — создаёт через factory.
+     * При гонке factory может быть вызвана несколько раз,
+     * но в словаре остаётся и всем возвращается одно значение.
+     */
+    V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        V created = null;
+        Table<V> t = table;
+        while (true) {
+            int i = t.indexOf(key);
+            Node<V> head = t.bins.get(i);
+            if (head instanceof Forward<V> forward) {
+                t = forward.next;
+                continue;
+            }
+            V found = find(head, key);
+            if (found != null)
+                return found;
+            if (created == null)
+                created = factory.apply(key);
+            if (t.bins.compareAndSet(i, head, new Node<>(key, created, head))) {
+                if (size.incrementAndGet() > table.threshold)
+                    resize();
+                return created;
+            }
+        }
+    }
+
+    /** Возвращает число ключей. */
+    int size() {
+        return size.get();
+    }
+
+    /** Ищет ключ в цепочке корзины. */
+    private static <V> V find(Node<V> head, long key) {
+        for (Node<V> n = head; n != null; n = n.next) {
+            if (n.key == key)
+                return n.value;
+        }
+        return null;
+    }
+
+    /**
+     * Удваивает таблицу. Корзина копируется и заменяется пересылкой через CAS;
+     * если за это время в неё вставили узел, копирование повторяется.
+     */
+    private void resize() {
+        if (!resizing.compareAndSet(false, true))
+            return;
+        try {
+            Table<V> old = table;
+            if (size.get() <= old.threshold || old.bins.length() >= MAX_CAPACITY)
+                return;
+            Table<V> next = new Table<>(old.bins.length() * 2);
+            Forward<V> forward = new Forward<>(next);
+            for (int i = 0; i < old.bins.length(); i++) {
+                while (true) {
+                    Node<V> head = old.bins.get(i);
+                    for (Node<V> n = head; n != null; n = n.next)
+                        next.putIfAbsent(n.key, n.value);
+                    if (old.bins.compareAndSet(i, head, forward))
+                        break;
+                }
+            }
+            table = next;
+        } finally {
+            resizing.set(false);
+        }
+    }
+
+    /** Таблица корзин. */
+    private static final class Table<V> {
+        /** Корзины: начало цепочки, пересылка или null. */
+        final AtomicReferenceArray<Node<V>> bins;
+
+        /** Число ключей, после которого таблицу пора увеличить. */
+        final int threshold;
+
+        Table(int capacity) {
+            this.bins = new AtomicReferenceArray<>(capacity);
+            this.threshold = capacity / 4 * 3;
+        }
+
+        /** Возвращает номер корзины для ключа. */
+        int indexOf(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (bins.length() - 1);
+        }
+
+        /** Добавляет ключ при переносе; новая таблица ещё не содержит пересылок. */
+        void putIfAbsent(long key, V value) {
+            int i = indexOf(key);
+            while (true) {
+                Node<V> head = bins.get(i);
+                if (find(head, key) != null
+                        || bins.compareAndSet(i, head, new Node<>(key, value, head)))
+                    return;
+            }
+        }
+    }
+
+    /** Узел цепочки. */
+    private static class Node<V> {
+        final long key;
+        final V value;
+        final Node<V> next;
+
+        Node(long key, V value, Node<V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /** Пересылка: корзина перенесена в таблицу next. */
+    private static final class Forward<V> extends Node<V> {
+        final Table<V> next;
+
+        Forward(Table<V> next) {
+            super(0, null, null);
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.db;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс Migrations ведёт версию схемы базы в таблице schema_version.
+ * Миграции применяются по порядку номеров, каждая — один раз, все недостающие —
+ * в одной транзакции BEGIN IMMEDIATE, поэтому два процесса не применят их дважды.
+ * Если схема уже актуальна, выполняется только чтение номера версии,
+ * а файл, проверенный в этом процессе, больше не проверяется.
+ *
+ * Новая миграция добавляется в конец списка SCHEMA со следующим номером;
+ * менять уже выпущенные миграции нельзя. Отдельный индекс по chat_id
+ * для forms не нужен: первичный ключ (chat_id, name) уже начинается с chat_id.
+ */
+final class Migrations {
+
+    /** Миграции схемы по возрастанию номера. */
+    static final List<Migration> SCHEMA = List.of(
+            new Migration(1, "таблицы forms и chat_states",
+                    """
+                    CREATE TABLE IF NOT EXISTS forms (
+                                chat_id   INTEGER NOT NULL,
+                                name      TEXT NOT NULL,
+                                relation  TEXT,
+                                occasion  TEXT,
+                                age       INTEGER,
+                                hobbies   TEXT,
+                                budget    INTEGER,
+                                PRIMARY KEY(chat_id, name)
+                            )
+                    """,
+                    // Снимки незавершённых опросов: переживают перезапуск бота
+                    """
+                    CREATE TABLE IF NOT EXISTS chat_states (
+                                chat_id     INTEGER PRIMARY KEY,
+                                state       BLOB NOT NULL,
+                                last_access INTEGER NOT NULL
+                            )
+                    """),
+            new Migration(2, "индекс для удаления устаревших снимков",
+                    "CREATE INDEX IF NOT EXISTS chat_states_last_access ON chat_states(last_access)"),
+            new Migration(3, "кэш ответов нейросети",
+                    """
+                    CREATE TABLE IF NOT EXISTS gift_ideas (
+                                cache_key  TEXT PRIMARY KEY,
+                                response   TEXT NOT NULL,
+                                created_at INTEGER NOT NULL
+                            )
+                    """,
+                    "CREATE INDEX IF NOT EXISTS gift_ideas_created_at ON gift_ideas(created_at)"),
+            new Migration(4, "обработанные обновления Telegram",
+                    "CREATE TABLE IF NOT EXISTS handled_updates (update_id INTEGER PRIMARY KEY)")
+    );
+
+    /** Таблица с номерами применённых миграций. */
+    private static final String VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                        version     INTEGER PRIMARY KEY,
+                        description TEXT NOT NULL,
+                        applied_at  INTEGER NOT NULL
+                    )
+            """;
+
+    /** Файлы баз, схема которых уже проверена в этом процессе. */
+    private static final Set<String> CURRENT = ConcurrentHashMap.newKeySet();
+
+    private Migrations() {
+    }
+
+    /**
+     * Приводит схему базы по адресу url к последней версии SCHEMA.
+     * Файл, уже проверенный в этом процессе, пропускается, пока он существует.
+     */
+    static void ensureCurrent(String url, Database database) {
+        String file = fileOf(url);
+        if (file != null && CURRENT.contains(file) && new File(file).exists())
+            return;
+        try (Connection c = database.getConnection()) {
+            migrate(c, SCHEMA);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при обновлении схемы базы " + url, e);
+        }
+        if (file != null)
+            CURRENT.add(file);
+    }
+
+    /**
+     * Применяет недостающие миграции из списка и возвращает их число.
+     * Если схема актуальна, DDL не выполняется.
+     */
+    static int migrate(Connection c, List<Migration> migrations) throws SQLException {
+        int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+        if (currentVersion(c) >= latest)
+            return 0;
+        try (Statement st = c.createStatement()) {
+            st.execute("BEGIN IMMEDIATE");
+            try {
+                st.execute(VERSION_TABLE);
+                // Пока ждали блокировку, схему мог обновить другой процесс
+                int current = currentVersion(c);
+                int applied = 0;
+                int previous = 0;
+                for (Migration m : migrations) {
+                    if (m.version() <= previous)
+                        throw new IllegalStateException("Номера миграций должны возрастать: " + m.version());
+                    previous = m.version();
+                    if (m.version() <= current)
+                        continue;
+                    for (String sql : m.statements())
+                        st.execute(sql);
+                    record(c, m);
+                    applied++;
+                }
+                st.execute("COMMIT");
+                return applied;
+            } catch (SQLException | RuntimeException e) {
+                st.execute("ROLLBACK");
+                throw e;
+            }
+        }
+    }
+
+    /** Возвращает номер последней применённой миграции или 0 для новой базы. */
+    static int currentVersion(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'schema_version'")) {
+            if (!rs.next())
+                return 0;
+        }
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /** Записывает номер применённой миграции. */
+    private static void record(Connection c, Migration m) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, m.version());
+            ps.setString(2, m.description());
+            ps.setLong(3, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    /** Возвращает путь к файлу базы или null для базы в памяти. */
+    private static String fileOf(String url) {
+        String path = url.startsWith("jdbc:sqlite:") ? url.substring("jdbc:sqlite:".length()) : url;
+        if (path.isEmpty() || path.startsWith(":memory:") || path.startsWith("file:") || path.contains("?"))
+            return null;
+        return new File(path).getAbsolutePath();
+    }
+
+    /**
+     * Одна миграция схемы.
+     *
+     * @param version     номер миграции, начиная с 1
+     * @param description краткое описание для таблицы schema_version
+     * @param statements  SQL-команды миграции
+     */
+    record Migration(int version, String description, String... statements) {
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Одна страница списка имён анкет, отсортированных по имени.
+ *
+ * @param names   имена анкет на странице по возрастанию
+ * @param hasPrev перед страницей есть ещё анкеты
+ * @param hasNext после страницы есть ещё анкеты
+ */
+public record NamePage(List<String> names, boolean hasPrev, boolean hasNext) {
+
+    /** Возвращает true, если на странице нет анкет. */
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /**
+     * Собирает страницу из имён, прочитанных по возрастанию
+     * с запасом в одно имя: лишнее имя означает, что дальше есть ещё анкеты.
+     * hasPrev хранилище определяет по своим данным: осталась ли анкета до страницы.
+     */
+    static NamePage after(List<String> fetched, boolean hasPrev, int limit) {
+        boolean hasNext = fetched.size() > limit;
+        List<String> names = hasNext ? new ArrayList<>(fetched.subList(0, limit)) : fetched;
+        return new NamePage(names, hasPrev, hasNext);
+    }
+
+    /**
+     * Собирает страницу из имён, прочитанных по убыванию
+     * с запасом в одно имя; на странице имена разворачиваются по возрастанию.
+     * hasNext хранилище определяет по своим данным: осталась ли анкета после страницы.
+     */
+    static NamePage before(List<String> fetched, boolean hasNext, int limit) {
+        boolean hasPrev = fetched.size() > limit;
+        List<String> names = new ArrayList<>(hasPrev ? fetched.subList(0, limit) : fetched);
+        Collections.reverse(names);
+        return new NamePage(names, hasPrev, hasNext);
+    }
+}
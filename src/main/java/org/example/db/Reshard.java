@@ -0,0 +1,75 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Утилита Reshard переносит анкеты из одного файла базы в несколько.
+ * Строки читаются потоком и записываются пачками, поэтому память
+ * не зависит от размера исходной базы. Повторный запуск безопасен:
+ * анкеты перезаписываются, а не дублируются.
+ *
+ * Запуск: {@code java org.example.db.Reshard forms.db forms.db 4}
+ * создаст forms.0.db … forms.3.db из forms.db.
+ */
+public final class Reshard {
+
+    /** Сколько анкет записывать одной транзакцией. */
+    private static final int BATCH = 2000;
+
+    private Reshard() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Использование: Reshard <исходная база> <путь новых файлов> <число файлов>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        long moved = migrate(args[0], args[1], Integer.parseInt(args[2]));
+        System.out.printf("Перенесено анкет: %d за %.1f с%n", moved, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Переносит все анкеты из sourcePath в shardCount файлов с именами
+     * по правилу {@link Shards#path}. Возвращает число перенесённых анкет.
+     */
+    public static long migrate(String sourcePath, String targetPath, int shardCount) {
+        for (int i = 0; i < shardCount; i++) {
+            if (Shards.path(targetPath, i, shardCount).equals(sourcePath))
+                throw new IllegalArgumentException("Исходная база совпадает с одним из новых файлов");
+        }
+        String sql = "SELECT chat_id, name, relation, occasion, age, hobbies, budget FROM forms";
+        long moved = 0;
+        try (FormRepository target = new FormRepository(targetPath, shardCount, 1, StorageProfile.defaults(), null);
+             Connection c = DriverManager.getConnection("jdbc:sqlite:" + sourcePath);
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setFetchSize(BATCH);
+            List<UserForm> batch = new ArrayList<>(BATCH);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    batch.add(FormRepository.readForm(rs));
+                    if (batch.size() == BATCH) {
+                        target.writeBatch(batch, List.of());
+                        moved += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                target.writeBatch(batch, List.of());
+                moved += batch.size();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при переносе анкет", e);
+        }
+        return moved;
+    }
+}
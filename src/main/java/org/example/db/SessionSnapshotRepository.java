@@ -0,0 +1,124 @@
+package org.example.db;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Класс SessionSnapshotRepository хранит снимки состояний чатов в таблице chat_states.
+ * Снимки пишутся пачками в одной транзакции и читаются потоково при старте,
+ * чтобы незавершённые опросы переживали перезапуск бота.
+ */
+public class SessionSnapshotRepository implements AutoCloseable {
+
+    /** Объект для подключения к базе данных */
+    private final Database database;
+
+    /** Конструктор для продакшн-кода */
+    public SessionSnapshotRepository() {
+        this.database = new Database();
+    }
+
+    /** Конструктор для тестов — позволяет использовать отдельную базу */
+    public SessionSnapshotRepository(String dbPath) {
+        this.database = new Database("jdbc:sqlite:" + dbPath);
+    }
+
+    /** Конструктор с заданным размером пула подключений (0 — без пула) */
+    public SessionSnapshotRepository(String dbPath, int poolSize) {
+        this.database = new Database("jdbc:sqlite:" + dbPath, poolSize);
+    }
+
+    /** Конструктор с размером пула и настройками SQLite */
+    public SessionSnapshotRepository(String dbPath, int poolSize, StorageProfile profile) {
+        this.database = new Database("jdbc:sqlite:" + dbPath, poolSize, profile);
+    }
+
+    /** Закрывает подключения к базе данных */
+    @Override
+    public void close() {
+        database.close();
+    }
+
+    /**
+     * Сохраняет изменённые снимки и удаляет снимки завершённых сессий.
+     * Всё выполняется одной транзакцией.
+     */
+    public void saveAll(Map<Long, Snapshot> snapshots, Collection<Long> removed) {
+        String upsert = """
+            INSERT INTO chat_states (chat_id, state, last_access) VALUES (?, ?, ?)
+            ON CONFLICT(chat_id) DO UPDATE SET
+                state=excluded.state,
+                last_access=excluded.last_access
+        """;
+        String delete = "DELETE FROM chat_states WHERE chat_id = ?";
+        try (Connection c = database.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ups = c.prepareStatement(upsert);
+                 PreparedStatement del = c.prepareStatement(delete)) {
+                for (Map.Entry<Long, Snapshot> e : snapshots.entrySet()) {
+                    ups.setLong(1, e.getKey());
+                    ups.setBytes(2, e.getValue().state());
+                    ups.setLong(3, e.getValue().lastAccess());
+                    ups.addBatch();
+                }
+                for (Long chatId : removed) {
+                    del.setLong(1, chatId);
+                    del.addBatch();
+                }
+                ups.executeBatch();
+                del.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при сохранении снимков сессий", e);
+        }
+    }
+
+    /**
+     * Потоково читает все снимки и передаёт их получателю.
+     * Возвращает число прочитанных снимков.
+     */
+    public int loadAll(BiConsumer<Long, byte[]> consumer) {
+        String sql = "SELECT chat_id, state FROM chat_states";
+        int count = 0;
+        try (Connection c = database.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1), rs.getBytes(2));
+                count++;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при чтении снимков сессий", e);
+        }
+        return count;
+    }
+
+    /**
+     * Удаляет снимки, к которым не обращались с указанного момента.
+     * Возвращает число удалённых снимков.
+     */
+    public int deleteOlderThan(long lastAccess) {
+        String sql = "DELETE FROM chat_states WHERE last_access < ?";
+        try (Connection c = database.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, lastAccess);
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка при очистке снимков сессий", e);
+        }
+    }
+
+    /**
+     * Снимок состояния одного чата.
+     *
+     * @param state      закодированное состояние
+     * @param lastAccess время последнего обращения в миллисекундах
+     */
+    public record Snapshot(byte[] state, long lastAccess) {
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.db;
+
+/**
+ * Класс Shards описывает разбиение анкет по файлам SQLite.
+ * SQLite допускает одного писателя на файл, поэтому анкеты разных чатов
+ * раскладываются по нескольким файлам, и записи в них идут параллельно.
+ * Файл выбирается по стабильному хешу chat_id, который не меняется
+ * между запусками и версиями Java.
+ */
+public final class Shards {
+
+    private Shards() {
+    }
+
+    /** Возвращает номер файла для чата при заданном числе файлов. */
+    public static int shardOf(long chatId, int count) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) count);
+    }
+
+    /**
+     * Возвращает путь к файлу с номером index.
+     * Единственный файл сохраняет исходное имя (forms.db),
+     * иначе номер добавляется перед расширением: forms.0.db, forms.1.db и т.д.
+     */
+    public static String path(String dbPath, int index, int count) {
+        if (count == 1)
+            return dbPath;
+        int dot = dbPath.lastIndexOf('.');
+        int slash = Math.max(dbPath.lastIndexOf('/'), dbPath.lastIndexOf('\\'));
+        if (dot <= slash)
+            return dbPath + "." + index;
+        return dbPath.substring(0, dot) + "." + index + dbPath.substring(dot);
+    }
+
+    /** Открывает базы всех файлов с общими настройками. */
+    static Database[] open(String dbPath, int count, int poolSize, StorageProfile profile) {
+        if (count < 1)
+            throw new IllegalArgumentException("Число файлов базы должно быть положительным");
+        Database[] shards = new Database[count];
+        for (int i = 0; i < count; i++)
+            shards[i] = new Database("jdbc:sqlite:" + path(dbPath, i, count), poolSize, profile);
+        return shards;
+    }
+}
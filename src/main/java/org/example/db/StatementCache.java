@@ -0,0 +1,204 @@
+package org.example.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Класс StatementCache хранит подготовленные запросы одного подключения пула.
+ * SQLite разбирает и планирует текст запроса только при первом prepareStatement,
+ * дальше выдаётся тот же PreparedStatement. Его close() лишь сбрасывает
+ * параметры и открытый ResultSet, а настоящее закрытие происходит вместе
+ * с подключением, поэтому кэш не переживает переоткрытие подключения.
+ */
+class StatementCache {
+
+    /** Настоящее подключение, которому принадлежат запросы. */
+    private final Connection physical;
+
+    /** Наибольшее число запросов в кэше. */
+    private final int capacity;
+
+    /** Запросы по тексту SQL в порядке последнего использования. */
+    private final LinkedHashMap<String, Cached> statements;
+
+    /** Создаёт кэш заданного размера для подключения. */
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Возвращает подготовленный запрос из кэша или готовит новый.
+     * Если тот же запрос уже используется (вложенный вызов),
+     * возвращается отдельный некэшируемый запрос.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        Cached cached = statements.get(sql);
+        if (cached != null && cached.inUse)
+            return physical.prepareStatement(sql);
+        if (cached == null) {
+            cached = new Cached(physical.prepareStatement(sql));
+            statements.put(sql, cached);
+            evictOverflow();
+        }
+        cached.inUse = true;
+        return cached.lease();
+    }
+
+    /** Возвращает число запросов в кэше. */
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Сбрасывает запросы, которые не закрыли до возврата подключения в пул.
+     * Их старые обёртки после этого считаются закрытыми.
+     */
+    void resetAll() {
+        for (Cached cached : statements.values()) {
+            if (cached.inUse)
+                cached.reset();
+        }
+    }
+
+    /** Закрывает все запросы; вызывается перед закрытием подключения. */
+    void closeAll() {
+        for (Cached cached : statements.values())
+            cached.closePhysical();
+        statements.clear();
+    }
+
+    /** Закрывает давно не использованные запросы сверх лимита. */
+    private void evictOverflow() {
+        Iterator<Cached> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            Cached eldest = it.next();
+            if (eldest.inUse)
+                continue;
+            eldest.closePhysical();
+            it.remove();
+        }
+    }
+
+    /** Подготовленный запрос кэша и его текущая выдача. */
+    private static final class Cached {
+        /** Настоящий подготовленный запрос. */
+        final PreparedStatement statement;
+
+        /** Запрос выдан и ещё не закрыт. */
+        boolean inUse;
+
+        /** Последний ResultSet текущей выдачи. */
+        ResultSet open;
+
+        /** Номер выдачи: меняется при каждом сбросе, чтобы старые обёртки не работали. */
+        int generation;
+
+        Cached(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        /** Создаёт обёртку, у которой close() возвращает запрос в кэш. */
+        PreparedStatement lease() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Lease(this, generation));
+        }
+
+        /**
+         * Готовит запрос к следующей выдаче.
+         * Открытый ResultSet держит в SQLite снимок чтения, поэтому закрывается.
+         */
+        void reset() {
+            try {
+                if (open != null && !open.isClosed())
+                    open.close();
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException ignored) {
+                // запрос закроется вместе с подключением
+            } finally {
+                open = null;
+                inUse = false;
+                generation++;
+            }
+        }
+
+        /** Закрывает настоящий запрос, игнорируя ошибки. */
+        void closePhysical() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // запрос всё равно больше не используется
+            }
+        }
+    }
+
+    /** Обработчик вызовов обёртки запроса. */
+    private static final class Lease implements InvocationHandler {
+        /** Выданный запрос или null после close(). */
+        private Cached cached;
+
+        /** Номер выдачи, к которой относится обёртка. */
+        private final int generation;
+
+        Lease(Cached cached, int generation) {
+            this.cached = cached;
+            this.generation = generation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (cached != null && cached.generation != generation)
+                cached = null;
+            switch (method.getName()) {
+                case "close" -> {
+                    if (cached != null) {
+                        cached.reset();
+                        cached = null;
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    if (cached == null)
+                        return true;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                }
+            }
+            if (cached == null)
+                throw new SQLException("Запрос уже закрыт");
+            try {
+                Object result = method.invoke(cached.statement, args);
+                if (result instanceof ResultSet rs)
+                    cached.open = rs;
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** Проверяет, что у вызова prepareStatement только текст SQL. */
+    static boolean isPlainPrepare(Method method) {
+        return method.getName().equals("prepareStatement")
+                && method.getParameterCount() == 1
+                && method.getParameterTypes()[0] == String.class;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Настройки SQLite, которые применяются к каждому новому подключению.
+ *
+ * @param journalMode       режим журнала (WAL позволяет читать во время записи)
+ * @param synchronous       уровень синхронизации с диском (OFF, NORMAL, FULL, EXTRA)
+ * @param cacheSizeKb       размер кэша страниц в килобайтах
+ * @param mmapSizeBytes     размер отображения файла в память, 0 — без отображения
+ * @param tempStore         где хранить временные таблицы (DEFAULT, FILE, MEMORY)
+ * @param busyTimeoutMillis сколько ждать освобождения блокировки, прежде чем вернуть ошибку
+ */
+public record StorageProfile(String journalMode, String synchronous, int cacheSizeKb,
+                             long mmapSizeBytes, String tempStore, int busyTimeoutMillis) {
+
+    /** Допустимые режимы журнала. */
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+
+    /** Допустимые уровни синхронизации. */
+    private static final Set<String> SYNCHRONOUS = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+
+    /** Допустимые места хранения временных таблиц. */
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+    /** Проверяет значения, потому что они подставляются прямо в текст PRAGMA. */
+    public StorageProfile {
+        journalMode = journalMode.toUpperCase();
+        synchronous = synchronous.toUpperCase();
+        tempStore = tempStore.toUpperCase();
+        if (!JOURNAL_MODES.contains(journalMode))
+            throw new IllegalArgumentException("Неизвестный режим журнала: " + journalMode);
+        if (!SYNCHRONOUS.contains(synchronous))
+            throw new IllegalArgumentException("Неизвестный уровень synchronous: " + synchronous);
+        if (!TEMP_STORES.contains(tempStore))
+            throw new IllegalArgumentException("Неизвестное значение temp_store: " + tempStore);
+        if (cacheSizeKb < 0 || mmapSizeBytes < 0 || busyTimeoutMillis < 0)
+            throw new IllegalArgumentException("Размеры и таймаут не могут быть отрицательными");
+    }
+
+    /**
+     * Профиль по умолчанию: WAL, synchronous=NORMAL, кэш 16 МБ,
+     * отображение 64 МБ, временные таблицы в памяти, ожидание блокировки 5 с.
+     * В режиме WAL NORMAL не теряет целостность базы, а чтения не ждут записи.
+     */
+    public static StorageProfile defaults() {
+        return new StorageProfile("WAL", "NORMAL", 16 * 1024, 64L * 1024 * 1024, "MEMORY", 5000);
+    }
+
+    /** Стандартные настройки SQLite, с которыми бот работал раньше. */
+    public static StorageProfile legacy() {
+        return new StorageProfile("DELETE", "FULL", 2000, 0, "DEFAULT", 3000);
+    }
+
+    /** Применяет настройки к подключению. */
+    void apply(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            st.execute("PRAGMA journal_mode = " + journalMode);
+            st.execute("PRAGMA synchronous = " + synchronous);
+            // Отрицательное значение cache_size задаётся в килобайтах, а не в страницах
+            st.execute("PRAGMA cache_size = -" + cacheSizeKb);
+            st.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            st.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс WriteBehindFormRepository сохраняет анкеты отложенно, пачками.
+ * upsert и delete только ставят изменение в очередь, а один поток-писатель
+ * собирает изменения в пачку и записывает её одной транзакцией — один fsync
+ * на пачку вместо одного на каждую анкету. У каждого файла базы свой писатель,
+ * поэтому при нескольких файлах пачки пишутся параллельно.
+ * Пока изменение не записано, get и listNames видят его из памяти.
+ * Временные ошибки базы (занята, нет места, ошибка ввода-вывода) повторяются,
+ * пока запись не пройдёт; изменение, которое база отвергает по содержимому,
+ * отклоняется и пишется в лог.
+ */
+public class WriteBehindFormRepository extends FormRepository {
+
+    /** Логгер отложенной записи. */
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindFormRepository.class);
+
+    /** Сколько раз пытаться записать пачку после закрытия хранилища, прежде чем бросить её. */
+    private static final int MAX_ATTEMPTS_ON_CLOSE = 4;
+
+    /** Код SQLITE_CONSTRAINT: изменение нарушает ограничение таблицы. */
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    /** Код SQLITE_MISMATCH: значение не подходит по типу. */
+    private static final int SQLITE_MISMATCH = 20;
+
+    /** Пауза перед первым повтором записи; каждая следующая вдвое длиннее. */
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    /** Наибольшая пауза между повторами записи. */
+    private static final long MAX_RETRY_DELAY_MILLIS = 2000;
+
+    /** Наибольшее число анкет в одной транзакции. */
+    private final int maxBatch;
+
+    /** Сколько ждать заполнения пачки после первого изменения. */
+    private final long maxDelayNanos;
+
+    /** Незаписанные изменения по чатам: последнее изменение каждой анкеты. */
+    private final Map<Long, Map<String, Pending>> pending = new ConcurrentHashMap<>();
+
+    /** Очереди ключей изменённых анкет и маркеров flush(), по одной на файл базы. */
+    private final List<BlockingQueue<Object>> queues;
+
+    /** Потоки-писатели, по одному на файл базы. */
+    private final List<Thread> writers;
+
+    /** Признак закрытого хранилища. */
+    private volatile boolean closed;
+
+    /**
+     * Создаёт хранилище с отложенной записью.
+     * maxBatch ограничивает размер транзакции, maxDelay — время,
+     * которое изменение может ждать попутчиков в пачке.
+     */
+    public WriteBehindFormRepository(String dbPath, int poolSize, StorageProfile profile,
+                                     int maxBatch, Duration maxDelay) {
+        this(dbPath, poolSize, profile, null, maxBatch, maxDelay);
+    }
+
+    /** Создаёт хранилище с отложенной записью и кэшем прочитанных анкет (null — без кэша). */
+    public WriteBehindFormRepository(String dbPath, int poolSize, StorageProfile profile, FormCache cache,
+                                     int maxBatch, Duration maxDelay) {
+        this(dbPath, 1, poolSize, profile, cache, maxBatch, maxDelay);
+    }
+
+    /** Создаёт хранилище с отложенной записью в несколько файлов базы. */
+    public WriteBehindFormRepository(String dbPath, int shardCount, int poolSize, StorageProfile profile,
+                                     FormCache cache, int maxBatch, Duration maxDelay) {
+        super(dbPath, shardCount, poolSize, profile, cache);
+        if (maxBatch < 1)
+            throw new IllegalArgumentException("Размер пачки должен быть положительным");
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelay.toNanos();
+        List<BlockingQueue<Object>> queues = new ArrayList<>(shardCount());
+        List<Thread> writers = new ArrayList<>(shardCount());
+        for (int i = 0; i < shardCount(); i++) {
+            BlockingQueue<Object> queue = new LinkedBlockingQueue<>(maxBatch * 64);
+            Thread writer = new Thread(() -> writeLoop(queue), "forms-writer-" + i);
+            writer.setDaemon(true);
+            queues.add(queue);
+            writers.add(writer);
+        }
+        this.queues = List.copyOf(queues);
+        this.writers = List.copyOf(writers);
+        this.writers.forEach(Thread::start);
+    }
+
+    /** Ставит сохранение анкеты в очередь. */
+    @Override
+    public void upsert(UserForm f) {
+        enqueue(new FormKey(f.chatId, f.name), new Pending(f.copy()));
+    }
+
+    /** Ставит удаление анкеты в очередь. */
+    @Override
+    public void delete(long chatId, String name) {
+        enqueue(new FormKey(chatId, name), new Pending(null));
+    }
+
+    /** Возвращает анкету с учётом незаписанных изменений. */
+    @Override
+    public UserForm get(long chatId, String name) {
+        Map<String, Pending> chat = pending.get(chatId);
+        Pending p = chat == null ? null : chat.get(name);
+        if (p != null)
+            return p.form == null ? null : p.form.copy();
+        return super.get(chatId, name);
+    }
+
+    /**
+     * Возвращает имена анкет с учётом незаписанных изменений.
+     * Снимок изменений берётся до чтения базы, поэтому изменение,
+     * записанное между двумя чтениями, не теряется.
+     */
+    @Override
+    public List<String> listNames(long chatId) {
+        Map<String, Pending> chat = pending.get(chatId);
+        Map<String, Pending> snapshot = chat == null ? Map.of() : new HashMap<>(chat);
+        List<String> names = super.listNames(chatId);
+        for (Map.Entry<String, Pending> e : snapshot.entrySet()) {
+            if (e.getValue().form == null)
+                names.remove(e.getKey());
+            else if (!names.contains(e.getKey()))
+                names.add(e.getKey());
+        }
+        return names;
+    }
+
+    /**
+     * Читает страницу имён с учётом незаписанных изменений.
+     * Из базы берётся больше имён на число незаписанных удалений,
+     * а новые имена добавляются, только если попадают в прочитанный диапазон.
+     */
+    @Override
+    List<String> fetchPage(long chatId, String bound, boolean forward, int fetchLimit) {
+        Map<String, Pending> chat = pending.get(chatId);
+        if (chat == null || chat.isEmpty())
+            return super.fetchPage(chatId, bound, forward, fetchLimit);
+        Map<String, Pending> snapshot = new HashMap<>(chat);
+        int deletes = 0;
+        for (Pending p : snapshot.values())
+            if (p.form == null) deletes++;
+
+        int dbLimit = fetchLimit + deletes;
+        List<String> stored = super.fetchPage(chatId, bound, forward, dbLimit);
+        Comparator<String> order = forward ? NAME_ORDER : NAME_ORDER.reversed();
+        String edge = stored.size() == dbLimit ? stored.get(stored.size() - 1) : null;
+
+        TreeSet<String> merged = new TreeSet<>(order);
+        merged.addAll(stored);
+        for (Map.Entry<String, Pending> e : snapshot.entrySet()) {
+            String name = e.getKey();
+            if (e.getValue().form == null) {
+                merged.remove(name);
+            } else if ((bound == null || order.compare(name, bound) > 0)
+                    && (edge == null || order.compare(name, edge) <= 0)) {
+                merged.add(name);
+            }
+        }
+        List<String> result = new ArrayList<>(merged);
+        return result.size() > fetchLimit ? new ArrayList<>(result.subList(0, fetchLimit)) : result;
+    }
+
+    /** Возвращает число изменений, ожидающих записи. */
+    public int pendingWrites() {
+        int total = 0;
+        for (BlockingQueue<Object> queue : queues)
+            total += queue.size();
+        return total;
+    }
+
+    /** Ждёт, пока все поставленные до вызова изменения будут записаны. */
+    public void flush() {
+        flushAll().join();
+    }
+
+    /** Ставит маркер в очередь каждого писателя и возвращает общий future. */
+    private CompletableFuture<Void> flushAll() {
+        CompletableFuture<?>[] done = new CompletableFuture<?>[queues.size()];
+        for (int i = 0; i < queues.size(); i++) {
+            CompletableFuture<Void> marker = new CompletableFuture<>();
+            put(queues.get(i), marker);
+            done[i] = marker;
+        }
+        return CompletableFuture.allOf(done);
+    }
+
+    /** Записывает оставшиеся изменения и закрывает подключения. */
+    @Override
+    public void close() {
+        if (closed) return;
+        CompletableFuture<Void> done = flushAll();
+        closed = true;
+        try {
+            done.join();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать все анкеты при остановке", e);
+        }
+        try {
+            for (Thread writer : writers)
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        super.close();
+    }
+
+    /** Запоминает изменение и ставит его ключ в очередь. */
+    private void enqueue(FormKey key, Pending p) {
+        if (closed)
+            throw new RuntimeException("Хранилище анкет закрыто");
+        // Изменение кладётся внутри compute, чтобы писатель не удалил карту чата в этот момент
+        pending.compute(key.chatId(), (id, chat) -> {
+            if (chat == null)
+                chat = new ConcurrentHashMap<>();
+            chat.put(key.name(), p);
+            return chat;
+        });
+        put(queues.get(shardOf(key.chatId())), key);
+    }
+
+    /** Кладёт элемент в очередь, ожидая места. */
+    private static void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Ожидание очереди записи прервано", e);
+        }
+    }
+
+    /** Основной цикл потока-писателя своего файла базы. */
+    private void writeLoop(BlockingQueue<Object> queue) {
+        while (!closed || !queue.isEmpty()) {
+            Object first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) continue;
+
+            List<FormKey> keys = new ArrayList<>();
+            List<CompletableFuture<Void>> flushes = new ArrayList<>();
+            boolean flushNow = collect(first, keys, flushes);
+            long deadline = System.nanoTime() + maxDelayNanos;
+            while (!flushNow && keys.size() < maxBatch) {
+                Object next;
+                try {
+                    next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (next == null) break;
+                flushNow = collect(next, keys, flushes);
+            }
+
+            if (writeWithRetry(keys)) {
+                flushes.forEach(f -> f.complete(null));
+            } else {
+                RuntimeException error = new RuntimeException("Часть анкет пачки не записана");
+                flushes.forEach(f -> f.completeExceptionally(error));
+            }
+        }
+    }
+
+    /**
+     * Добавляет элемент очереди в пачку.
+     * Возвращает true для маркера flush(): пачку нужно записать сразу.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean collect(Object item, List<FormKey> keys, List<CompletableFuture<Void>> flushes) {
+        if (item instanceof FormKey key) {
+            keys.add(key);
+            return false;
+        }
+        flushes.add((CompletableFuture<Void>) item);
+        return true;
+    }
+
+    /**
+     * Записывает последние изменения анкет из пачки.
+     * Возвращает true, если записаны все изменения пачки.
+     */
+    private boolean writeWithRetry(List<FormKey> keys) {
+        Map<FormKey, Pending> batch = new LinkedHashMap<>();
+        for (FormKey key : keys) {
+            Map<String, Pending> chat = pending.get(key.chatId());
+            Pending p = chat == null ? null : chat.get(key.name());
+            if (p != null)
+                batch.put(key, p);
+        }
+        return batch.isEmpty() || writeOrSplit(batch) == 0;
+    }
+
+    /**
+     * Записывает пачку одной транзакцией.
+     * Временную ошибку повторяет с растущей паузой, пока запись не пройдёт:
+     * изменения остаются в памяти, а заполненная очередь сама притормаживает
+     * вызывающих. После закрытия хранилища попыток не больше MAX_ATTEMPTS_ON_CLOSE.
+     * Если база отвергла данные, пачка делится пополам и половины пишутся
+     * по отдельности, пока не останется изменение, которое записать нельзя:
+     * оно отклоняется, и писатель переходит к следующим.
+     * Возвращает число незаписанных изменений.
+     */
+    private int writeOrSplit(Map<FormKey, Pending> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                return 0;
+            } catch (RuntimeException e) {
+                if (isDataError(e))
+                    return split(batch, e);
+                if (closed && attempt >= MAX_ATTEMPTS_ON_CLOSE) {
+                    log.error("Пачка из {} анкет не записана при остановке за {} попыток", batch.size(), attempt, e);
+                    return batch.size();
+                }
+                log.warn("Ошибка записи пачки из {} анкет, попытка {}", batch.size(), attempt, e);
+                try {
+                    Thread.sleep(Math.min(RETRY_DELAY_MILLIS << Math.min(attempt - 1, 5), MAX_RETRY_DELAY_MILLIS));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return batch.size();
+                }
+            }
+        }
+    }
+
+    /**
+     * Делит пачку, которую база отвергла по содержимому, и пишет половины отдельно.
+     * Единственное изменение отклоняется. Возвращает число незаписанных изменений.
+     */
+    private int split(Map<FormKey, Pending> batch, RuntimeException cause) {
+        if (batch.size() == 1) {
+            reject(batch.entrySet().iterator().next(), cause);
+            return 1;
+        }
+        Map<FormKey, Pending> head = new LinkedHashMap<>();
+        Map<FormKey, Pending> tail = new LinkedHashMap<>();
+        for (Map.Entry<FormKey, Pending> entry : batch.entrySet())
+            (head.size() < batch.size() / 2 ? head : tail).put(entry.getKey(), entry.getValue());
+        return writeOrSplit(head) + writeOrSplit(tail);
+    }
+
+    /**
+     * Возвращает true, если база отвергла сами данные: нарушено ограничение
+     * или не подошёл тип. Повтор такой записи не поможет.
+     * Расширенные коды SQLite сводятся к основному по младшему байту.
+     */
+    private static boolean isDataError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                int code = sql.getErrorCode() & 0xff;
+                return code == SQLITE_CONSTRAINT || code == SQLITE_MISMATCH;
+            }
+        }
+        return false;
+    }
+
+    /** Записывает пачку одной транзакцией и убирает записанные изменения из памяти. */
+    private void write(Map<FormKey, Pending> batch) {
+        List<UserForm> upserts = new ArrayList<>();
+        List<FormKey> deletes = new ArrayList<>();
+        for (Map.Entry<FormKey, Pending> e : batch.entrySet()) {
+            if (e.getValue().form == null)
+                deletes.add(e.getKey());
+            else
+                upserts.add(e.getValue().form);
+        }
+        writeBatch(upserts, deletes);
+        batch.forEach(this::forget);
+    }
+
+    /**
+     * Отклоняет изменение, которое база не принимает: пишет в лог ключ анкеты
+     * без её содержимого и убирает изменение из памяти.
+     */
+    private void reject(Map.Entry<FormKey, Pending> change, RuntimeException cause) {
+        FormKey key = change.getKey();
+        if (change.getValue().form == null)
+            log.error("Удаление анкеты {} чата {} отклонено", key.name(), key.chatId(), cause);
+        else
+            log.error("Анкета {} чата {} отклонена", key.name(), key.chatId(), cause);
+        forget(key, change.getValue());
+    }
+
+    /** Убирает изменение из памяти, если его не сменило более новое. */
+    private void forget(FormKey key, Pending p) {
+        pending.computeIfPresent(key.chatId(), (id, chat) -> {
+            chat.remove(key.name(), p);
+            return chat.isEmpty() ? null : chat;
+        });
+    }
+
+    /** Незаписанное изменение анкеты: новая версия или удаление (form == null). */
+    private static final class Pending {
+        /** Новая версия анкеты или null для удаления. */
+        final UserForm form;
+
+        Pending(UserForm form) {
+            this.form = form;
+        }
+    }
+}
@@ -45,6 +45,11 @@ public class UserForm {
         this.budget = budget;
     }
 
+    /** Возвращает независимую копию анкеты. */
+    public UserForm copy() {
+        return new UserForm(chatId, name, relation, occasion, age, hobbies, budget);
+    }
+
     /** Возвращает короткий заголовок анкеты (например: “Анкета: мама”) */
     public String prettyCardTitle() {
         return "Анкета: " + name;
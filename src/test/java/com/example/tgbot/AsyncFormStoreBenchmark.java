@@ -0,0 +1,80 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Замеры AsyncFormStore на отдельной базе async_bench.db.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class AsyncFormStoreBenchmark {
+
+    /** Путь к базе замеров. */
+    static final String DB = "async_bench.db";
+
+    /** Удаляет базу замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(DB + suffix).delete();
+    }
+
+    /**
+     * Сравнивает одновременную запись из 8 потоков напрямую в FormRepository
+     * и через один поток записи AsyncFormStore.
+     */
+    @Test
+    void measureWriteThroughput() throws Exception {
+        int threads = 8;
+        int perThread = 250;
+        double direct;
+        try (FormRepository repo = new FormRepository(DB, threads)) {
+            direct = measure(threads, perThread, f -> {
+                repo.upsert(f);
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+        double async;
+        try (AsyncFormStore store = new AsyncFormStore(new FormRepository(DB, 2), 2)) {
+            async = measure(threads, perThread, store::upsert);
+        }
+        System.out.printf("Запись из %d потоков: напрямую %.0f оп/с, через поток записи %.0f оп/с%n",
+                threads, direct, async);
+        Assertions.assertTrue(direct > 0 && async > 0);
+    }
+
+    /** Выполняет записи из нескольких потоков и возвращает число операций в секунду. */
+    private static double measure(int threads, int perThread,
+                                  Function<UserForm, CompletableFuture<Void>> write)
+            throws Exception {
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long chat = t;
+            workers[t] = new Thread(() -> {
+                List<CompletableFuture<Void>> mine = new ArrayList<>();
+                for (int i = 0; i < perThread; i++)
+                    mine.add(write.apply(new UserForm(chat, "Анкета" + i, "друг", "ДР", 30, "книги", i)));
+                synchronized (all) {
+                    all.addAll(mine);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers)
+            w.join();
+        CompletableFuture.allOf(all.toArray(new CompletableFuture[0])).join();
+        return threads * perThread / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тесты для класса AsyncFormStore.
+ * Проверяют, что записи идут в потоке файла базы чата, чтения — параллельно,
+ * а чтение чата видит его незавершённые записи.
+ * Скорость записи через поток записи измеряет AsyncFormStoreBenchmark.
+ */
+class AsyncFormStoreTest {
+
+    /** Удаляет файлы тестовой базы вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File("async_test.db" + suffix).delete();
+    }
+
+    /** Проверяет, что при одном файле базы все записи выполняются в одном потоке. */
+    @Test
+    void shouldWriteOnSingleThread() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public void upsert(UserForm f) {
+                threads.add(Thread.currentThread().getName());
+                super.upsert(f);
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 4)) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                writes.add(store.upsert(new UserForm(i % 7, "Анкета" + i, "друг", "ДР", 30, "книги", i)));
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        }
+        Assertions.assertEquals(Set.of("forms-writer-0"), threads);
+    }
+
+    /** Проверяет, что записи чата идут в потоке его файла базы и в порядке вызова. */
+    @Test
+    void shouldWriteEachShardOnItsOwnThread() {
+        Map<Long, Set<String>> threads = new ConcurrentHashMap<>();
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public void upsert(UserForm f) {
+                threads.computeIfAbsent(f.chatId, id -> ConcurrentHashMap.newKeySet())
+                        .add(Thread.currentThread().getName());
+                super.upsert(f);
+            }
+
+            @Override
+            public int shardCount() {
+                return 4;
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 2)) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                writes.add(store.upsert(new UserForm(i % 20, "Мама", "мама", "ДР", 45, "сад", i)));
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+
+            for (long chat = 0; chat < 20; chat++) {
+                Assertions.assertEquals(Set.of("forms-writer-" + Shards.shardOf(chat, 4)), threads.get(chat));
+                Assertions.assertEquals(180 + chat, (long) store.get(chat, "Мама").join().budget);
+            }
+        }
+        Assertions.assertTrue(threads.values().stream().distinct().count() > 1);
+    }
+
+    /** Проверяет, что медленная запись в один файл не задерживает запись в другой. */
+    @Test
+    void shouldNotBlockOtherShards() throws Exception {
+        long slowChat = 1L;
+        long fastChat = 2L;
+        while (Shards.shardOf(fastChat, 2) == Shards.shardOf(slowChat, 2))
+            fastChat++;
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public void upsert(UserForm f) {
+                if (f.chatId == slowChat) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.upsert(f);
+            }
+
+            @Override
+            public int shardCount() {
+                return 2;
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 2)) {
+            CompletableFuture<Void> slow = store.upsert(new UserForm(slowChat, "Мама", "мама", "ДР", 45, "сад", 1));
+            store.upsert(new UserForm(fastChat, "Папа", "папа", "НГ", 50, "охота", 2)).get(5, TimeUnit.SECONDS);
+
+            Assertions.assertFalse(slow.isDone());
+            release.countDown();
+            slow.join();
+        }
+    }
+
+    /** Проверяет, что чтения выполняются одновременно в нескольких потоках. */
+    @Test
+    void shouldReadInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public UserForm get(long chatId, String name) {
+                bothStarted.countDown();
+                try {
+                    // Оба чтения должны дойти сюда, пока ни одно не закончилось
+                    Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.get(chatId, name);
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 2)) {
+            CompletableFuture<UserForm> a = store.get(1L, "Мама");
+            CompletableFuture<UserForm> b = store.get(2L, "Папа");
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Проверяет, что чтение ждёт незавершённую запись своего чата. */
+    @Test
+    void shouldReadOwnWrites() {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public void upsert(UserForm f) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.upsert(f);
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 2)) {
+            UserForm f = new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000);
+            CompletableFuture<Void> write = store.upsert(f);
+            f.budget = 1;
+            CompletableFuture<UserForm> read = store.get(1L, "Мама");
+            CompletableFuture<UserForm> other = store.get(2L, "Мама");
+
+            Assertions.assertNull(other.join());
+            Assertions.assertFalse(read.isDone());
+            release.countDown();
+
+            write.join();
+            Assertions.assertEquals(3000, read.join().budget);
+        }
+    }
+
+    /** Проверяет, что ошибка записи возвращается через future. */
+    @Test
+    void shouldReportWriteFailure() {
+        InMemoryFormStore memory = new InMemoryFormStore() {
+            @Override
+            public void delete(long chatId, String name) {
+                throw new RuntimeException("Ошибка при удалении анкеты");
+            }
+        };
+        try (AsyncFormStore store = new AsyncFormStore(memory, 1)) {
+            CompletableFuture<Void> delete = store.delete(1L, "Мама");
+
+            Assertions.assertThrows(Exception.class, delete::join);
+            Assertions.assertTrue(store.listNames(1L).join().isEmpty());
+        }
+    }
+
+    /** Проверяет, что без потоков операции выполняются сразу в вызывающем потоке. */
+    @Test
+    void shouldRunDirectlyInCallerThread() {
+        AsyncFormStore store = AsyncFormStore.direct(new InMemoryFormStore());
+
+        CompletableFuture<Void> write = store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+
+        Assertions.assertTrue(write.isDone());
+        Assertions.assertEquals(List.of("Мама"), store.listNames(1L).join());
+    }
+
+    /** Проверяет, что close() дожидается поставленных записей. */
+    @Test
+    void shouldDrainWritesOnClose() {
+        try (FormRepository check = new FormRepository("async_test.db", 1)) {
+            AsyncFormStore store = new AsyncFormStore(new FormRepository("async_test.db", 1), 2);
+            for (int i = 0; i < 200; i++)
+                store.upsert(new UserForm(1L, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+            store.close();
+
+            Assertions.assertEquals(200, check.listNames(1L).size());
+        }
+    }
+}
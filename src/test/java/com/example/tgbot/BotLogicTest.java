@@ -1,10 +1,15 @@
 package com.example.tgbot;
 
 import org.example.BotLogic;
+import org.example.ChatState;
+import org.example.ChatStateStore;
 import org.example.GiftIdeaService;
 import org.example.Keyboards;
 import org.example.Response;
-import org.example.db.FormRepository;
+import org.example.db.AsyncFormStore;
+import org.example.db.FormStore;
+import org.example.db.InMemoryFormStore;
+import org.example.db.NamePage;
 import org.example.model.UserForm;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +17,8 @@ import org.junit.jupiter.api.Assertions;
 import org.mockito.Mockito;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Тестовый класс, проверяющий работу основного класса логики BotLogic.
@@ -24,7 +31,7 @@ class BotLogicTest {
     BotLogic logic;
 
     /** мок репозиторий анкет для изоляции от базы данных. */
-    FormRepository mockRepo;
+    FormStore mockRepo;
 
     /** мок сервис идей подарков для изоляции от внешнего API. */
     GiftIdeaService mockIdeas;
@@ -34,7 +41,7 @@ class BotLogicTest {
 
     @BeforeEach
     void init() {
-        mockRepo = Mockito.mock(FormRepository.class);
+        mockRepo = Mockito.mock(FormStore.class);
         mockIdeas = Mockito.mock(GiftIdeaService.class);
         mockKb = Mockito.mock(Keyboards.class);
 
@@ -59,24 +66,26 @@ class BotLogicTest {
     /** Проверяет реакцию на отсутствие анкет у пользователя. */
     @Test
     void shouldHandleEmptyFormsList() {
-        Mockito.when(mockRepo.listNames(1L)).thenReturn(List.of());
+        Mockito.when(mockRepo.listNamesAfter(1L, null, BotLogic.PAGE_SIZE))
+                .thenReturn(new NamePage(List.of(), false, false));
         Response r = logic.process(1L, "Мои анкеты", null);
         Assertions.assertNotNull(r);
         Assertions.assertEquals("У вас пока нет анкет. Создайте новую через Создать анкету.", r.getText());
-        Mockito.verify(mockRepo).listNames(1L);
+        Mockito.verify(mockRepo).listNamesAfter(1L, null, BotLogic.PAGE_SIZE);
         Mockito.verify(mockKb).mainReply();
-        Mockito.verify(mockKb, Mockito.never()).formList(Mockito.any());
+        Mockito.verify(mockKb, Mockito.never()).formListPage(Mockito.any());
     }
 
     /** Проверяет, что бот корректно показывает список анкет пользователя. */
     @Test
     void shouldShowFormList() {
-        Mockito.when(mockRepo.listNames(1L)).thenReturn(List.of("Мама", "Брат"));
+        NamePage page = new NamePage(List.of("Брат", "Мама"), false, false);
+        Mockito.when(mockRepo.listNamesAfter(1L, null, BotLogic.PAGE_SIZE)).thenReturn(page);
         Response r = logic.process(1L, "Мои анкеты", null);
         Assertions.assertNotNull(r);
         Assertions.assertEquals("Выберите анкету для работы:", r.getText());
-        Mockito.verify(mockRepo).listNames(1L);
-        Mockito.verify(mockKb).formList(List.of("Мама", "Брат"));
+        Mockito.verify(mockRepo).listNamesAfter(1L, null, BotLogic.PAGE_SIZE);
+        Mockito.verify(mockKb).formListPage(page);
     }
 
     /** Проверяет начало создания новой анкеты через команду. */
@@ -158,64 +167,103 @@ class BotLogicTest {
     /** Проверяет реакцию на callback forms:list при отсутствии анкет. */
     @Test
     void shouldHandleFormsListCallbackWhenEmpty() {
-        Mockito.when(mockRepo.listNames(1L)).thenReturn(List.of());
+        Mockito.when(mockRepo.listNamesAfter(1L, null, BotLogic.PAGE_SIZE))
+                .thenReturn(new NamePage(List.of(), false, false));
         Response r = logic.process(1L, null, "forms:list");
         Assertions.assertNotNull(r);
         Assertions.assertEquals("У вас пока нет анкет.", r.getText());
-        Mockito.verify(mockRepo).listNames(1L);
+        Mockito.verify(mockRepo).listNamesAfter(1L, null, BotLogic.PAGE_SIZE);
         Mockito.verify(mockKb).mainReply();
-        Mockito.verify(mockKb, Mockito.never()).formList(Mockito.any());
+        Mockito.verify(mockKb, Mockito.never()).formListPage(Mockito.any());
     }
 
     /** Проверяет callback forms:list, когда анкеты есть. */
     @Test
     void shouldHandleFormsListCallbackWithNames() {
-        Mockito.when(mockRepo.listNames(1L)).thenReturn(List.of("Мама", "Папа"));
+        NamePage page = new NamePage(List.of("Мама", "Папа"), false, false);
+        Mockito.when(mockRepo.listNamesAfter(1L, null, BotLogic.PAGE_SIZE)).thenReturn(page);
         Response r = logic.process(1L, null, "forms:list");
         Assertions.assertNotNull(r);
         Assertions.assertEquals("Выберите анкету:", r.getText());
-        Mockito.verify(mockRepo).listNames(1L);
-        Mockito.verify(mockKb).formList(List.of("Мама", "Папа"));
+        Mockito.verify(mockRepo).listNamesAfter(1L, null, BotLogic.PAGE_SIZE);
+        Mockito.verify(mockKb).formListPage(page);
+    }
+
+    /** Проверяет переход к следующей и предыдущей странице списка анкет. */
+    @Test
+    void shouldHandlePageNavigation() {
+        NamePage next = new NamePage(List.of("Папа"), true, false);
+        NamePage prev = new NamePage(List.of("Мама"), false, true);
+        Mockito.when(mockRepo.listNamesAfter(1L, "Мама", BotLogic.PAGE_SIZE)).thenReturn(next);
+        Mockito.when(mockRepo.listNamesBefore(1L, "Папа", BotLogic.PAGE_SIZE)).thenReturn(prev);
+
+        Assertions.assertEquals("Выберите анкету:", logic.process(1L, null, "forms>:Мама").getText());
+        Assertions.assertEquals("Выберите анкету:", logic.process(1L, null, "forms<:Папа").getText());
+        Mockito.verify(mockKb).formListPage(next);
+        Mockito.verify(mockKb).formListPage(prev);
+    }
+
+    /** Проверяет возврат к первой странице, если соседние анкеты удалены. */
+    @Test
+    void shouldFallBackToFirstPageWhenNeighboursGone() {
+        NamePage first = new NamePage(List.of("Брат"), false, false);
+        Mockito.when(mockRepo.listNamesAfter(1L, "Мама", BotLogic.PAGE_SIZE))
+                .thenReturn(new NamePage(List.of(), true, false));
+        Mockito.when(mockRepo.listNamesAfter(1L, null, BotLogic.PAGE_SIZE)).thenReturn(first);
+
+        logic.process(1L, null, "forms>:Мама");
+        Mockito.verify(mockKb).formListPage(first);
     }
     /** Проверяет успешную генерацию идеи подарка через AI-сервис. */
     @Test
-    void shouldGenerateGiftIdea() throws Exception {
+    void shouldGenerateGiftIdea() {
         UserForm f = new UserForm(1L, "Мама", "мама", "ДР", 40, "сад", 3000);
         Mockito.when(mockRepo.get(1L, "Мама")).thenReturn(f);
-        Mockito.when(mockIdeas.fetchGiftIdeas(Mockito.anyString())).thenReturn("Подарок маме");
+        Mockito.when(mockIdeas.streamGiftIdeas(Mockito.anyString(), Mockito.any()))
+                .thenAnswer(inv -> {
+                    Consumer<String> onPartial = inv.getArgument(1);
+                    onPartial.accept("Подарок");
+                    return CompletableFuture.completedFuture("Подарок маме");
+                });
         Response r = logic.process(1L, null, "idea:Мама");
         Assertions.assertNotNull(r);
+        Assertions.assertEquals("Генерирую идеи подарков для Мама…", r.getText());
+        Assertions.assertNotNull(r.getFollowUp());
+        Assertions.assertEquals("Идея подарка для Мама:\nПодарок …", r.getProgress().latest().getText());
+
+        Response ideas = r.getFollowUp().join();
         Assertions.assertEquals("""
                 Идея подарка для Мама:
                 Подарок маме
-                """.strip(), r.getText().strip());
+                """.strip(), ideas.getText().strip());
 
         // промпт должен содержать данные анкеты
-        Mockito.verify(mockIdeas).fetchGiftIdeas(
+        Mockito.verify(mockIdeas).streamGiftIdeas(
                 Mockito.argThat(prompt ->
                         prompt.contains("мама") &&
                                 prompt.contains("ДР") &&
                                 prompt.contains("40") &&
                                 prompt.contains("сад") &&
-                                prompt.contains("3000"))
+                                prompt.contains("3000")),
+                Mockito.any()
         );
         Mockito.verify(mockKb).backToForms();
     }
 
     /** Проверяет корректную обработку ошибки при генерации идеи подарка. */
     @Test
-    void shouldHandleIdeaGenerationError() throws Exception {
+    void shouldHandleIdeaGenerationError() {
         UserForm f = new UserForm(1L, "Мама", "мама", "ДР", 40, "сад", 3000);
         Mockito.when(mockRepo.get(1L, "Мама")).thenReturn(f);
-        Mockito.when(mockIdeas.fetchGiftIdeas(Mockito.anyString()))
-                .thenThrow(new RuntimeException("API down"));
+        Mockito.when(mockIdeas.streamGiftIdeas(Mockito.anyString(), Mockito.any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("API down")));
         Response r = logic.process(1L, null, "idea:Мама");
         Assertions.assertNotNull(r);
         Assertions.assertEquals("""
                 Идея подарка для Мама:
                 Не удалось получить идею. Попробуйте позже.
-                """.strip(), r.getText().strip());
-        Mockito.verify(mockIdeas).fetchGiftIdeas(Mockito.anyString());
+                """.strip(), r.getFollowUp().join().getText().strip());
+        Mockito.verify(mockIdeas).streamGiftIdeas(Mockito.anyString(), Mockito.any());
         Mockito.verify(mockKb).backToForms();
     }
 
@@ -334,4 +382,38 @@ class BotLogicTest {
         Mockito.verify(mockRepo, Mockito.never()).upsert(Mockito.any());
         Mockito.verify(mockKb).mainReply();
     }
+
+    /**
+     * Проверяет, что с асинхронным хранилищем processAsync возвращает future,
+     * который завершается ответом после чтения анкеты в потоке хранилища.
+     */
+    @Test
+    void shouldComposeStoreFutures() {
+        try (AsyncFormStore store = new AsyncFormStore(new InMemoryFormStore(), 2)) {
+            BotLogic async = new BotLogic(store, mockIdeas, mockKb, new ChatStateStore());
+            store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 50, "сад", 3000)).join();
+
+            CompletableFuture<Response> r = async.processAsync(1L, null, "form:Мама");
+
+            Assertions.assertTrue(r.join().getText().startsWith("Анкета: Мама"));
+            Mockito.verify(mockKb).formActions("Мама");
+        }
+    }
+
+    /** Проверяет, что ответ на вопрос опроса отмечает чат изменённым и попадает в снимок. */
+    @Test
+    void shouldMarkChatDirtyAfterSurveyAnswer() {
+        ChatStateStore states = new ChatStateStore();
+        BotLogic withStates = new BotLogic(mockRepo, mockIdeas, mockKb, states);
+        withStates.process(1L, "Создать анкету", null);
+        withStates.process(1L, "Мама", null);
+        states.drainDirty();
+
+        withStates.process(1L, "мама", null);
+
+        Assertions.assertEquals(List.of(1L), states.drainDirty());
+        ChatState copy = ChatState.fromBytes(1L, states.peek(1L).toBytes());
+        Assertions.assertEquals(BotLogic.Step.REASON, copy.getSession().getStep());
+        Assertions.assertEquals("мама", copy.getSession().getWho());
+    }
 }
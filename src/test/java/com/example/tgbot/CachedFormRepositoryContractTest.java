@@ -0,0 +1,25 @@
+package org.example.db;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Общие тесты FormStore для FormRepository с кэшем анкет на отдельной базе
+ * form_store_cached_test.db: страницы вырезаются из закэшированного списка имён.
+ */
+class CachedFormRepositoryContractTest extends FormStoreContract {
+
+    @Override
+    FormStore createStore() {
+        cleanUp();
+        return new FormRepository("form_store_cached_test.db", 2, StorageProfile.defaults(),
+                new FormCache(1024, Duration.ofMinutes(1)));
+    }
+
+    /** Удаляет файл тестовой базы вместе с журналами WAL. */
+    @Override
+    void cleanUp() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File("form_store_cached_test.db" + suffix).delete();
+    }
+}
@@ -0,0 +1,183 @@
+package org.example;
+
+import org.example.db.IdeaCacheRepository;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Тесты для CachingGiftIdeaGenerator и IdeaCacheRepository.
+ * Проверяют нормализацию запросов, время жизни, вытеснение,
+ * хранение ответов в базе и то, что ошибки не кэшируются.
+ */
+class CachingGiftIdeaGeneratorTest {
+
+    /** Файл тестовой базы. */
+    private static final String DB = "test_ideas.db";
+
+    /** Управляемые часы. */
+    AtomicLong now;
+
+    /** Генератор-заглушка, считающий обращения. */
+    CountingGenerator generator;
+
+    /** Кэш на 2 ответа с временем жизни 1 час. */
+    CachingGiftIdeaGenerator cache;
+
+    @BeforeEach
+    void setUp() {
+        new File(DB).delete();
+        now = new AtomicLong(1_000_000);
+        generator = new CountingGenerator();
+        cache = new CachingGiftIdeaGenerator(generator, 2, Duration.ofHours(1), null, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(DB).delete();
+    }
+
+    /** Проверяет, что запросы, отличающиеся пробелами и регистром, дают один ответ. */
+    @Test
+    void shouldHitOnNormalizedPrompt() throws Exception {
+        String first = cache.fetchGiftIdeas("Подарок  для мамы,\n хобби: сад");
+        String second = cache.fetchGiftIdeas("  подарок для МАМЫ, хобби:   сад ");
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(1, generator.calls.get());
+        Assertions.assertEquals(1, cache.stats().hits());
+        Assertions.assertEquals(0.5, cache.stats().hitRate(), 1e-9);
+    }
+
+    /** Проверяет, что асинхронный путь использует тот же кэш. */
+    @Test
+    void shouldCacheAsyncCalls() throws Exception {
+        String sync = cache.fetchGiftIdeas("Папа");
+        String async = cache.fetchGiftIdeasAsync("папа").join();
+
+        Assertions.assertEquals(sync, async);
+        Assertions.assertEquals(1, generator.calls.get());
+    }
+
+    /** Проверяет, что устаревший ответ запрашивается заново. */
+    @Test
+    void shouldExpireAfterTtl() throws Exception {
+        cache.fetchGiftIdeas("Папа");
+        now.addAndGet(Duration.ofHours(1).toMillis());
+        cache.fetchGiftIdeas("Папа");
+
+        Assertions.assertEquals(2, generator.calls.get());
+    }
+
+    /** Проверяет вытеснение давно не использованного ответа. */
+    @Test
+    void shouldEvictLeastRecentlyUsed() throws Exception {
+        cache.fetchGiftIdeas("Мама");
+        cache.fetchGiftIdeas("Папа");
+        cache.fetchGiftIdeas("Мама");
+        cache.fetchGiftIdeas("Брат");
+        cache.fetchGiftIdeas("Мама");
+        cache.fetchGiftIdeas("Папа");
+
+        Assertions.assertEquals(4, generator.calls.get());
+        Assertions.assertEquals(2, cache.stats().size());
+        Assertions.assertTrue(cache.stats().evictions() >= 1);
+    }
+
+    /** Проверяет, что ошибки генератора не попадают в кэш. */
+    @Test
+    void shouldNotCacheFailures() throws Exception {
+        generator.failures = 1;
+        Assertions.assertThrows(IOException.class, () -> cache.fetchGiftIdeas("Мама"));
+        Assertions.assertNotNull(cache.fetchGiftIdeas("Мама"));
+
+        generator.failures = 1;
+        CompletionException e = Assertions.assertThrows(CompletionException.class,
+                () -> cache.fetchGiftIdeasAsync("Папа").join());
+        Assertions.assertInstanceOf(IOException.class, e.getCause());
+        Assertions.assertNotNull(cache.fetchGiftIdeasAsync("Папа").join());
+
+        Assertions.assertEquals(4, generator.calls.get());
+    }
+
+    /** Проверяет, что разные модели не делят ответы. */
+    @Test
+    void shouldSeparateScopes() {
+        CountingGenerator other = new CountingGenerator();
+        other.scope = "другая модель";
+        CachingGiftIdeaGenerator otherCache =
+                new CachingGiftIdeaGenerator(other, 2, Duration.ofHours(1), null, now::get);
+
+        Assertions.assertNotEquals(cache.keyOf("Мама"), otherCache.keyOf("Мама"));
+        Assertions.assertEquals(cache.keyOf("Мама"), cache.keyOf(" мама "));
+    }
+
+    /** Проверяет, что ответы из базы переживают перезапуск, а устаревшие удаляются. */
+    @Test
+    void shouldSurviveRestartOnDisk() throws Exception {
+        try (IdeaCacheRepository disk = new IdeaCacheRepository(DB)) {
+            new CachingGiftIdeaGenerator(generator, 2, Duration.ofHours(1), disk, now::get)
+                    .fetchGiftIdeas("Мама");
+        }
+
+        try (IdeaCacheRepository disk = new IdeaCacheRepository(DB)) {
+            CachingGiftIdeaGenerator restarted =
+                    new CachingGiftIdeaGenerator(generator, 2, Duration.ofHours(1), disk, now::get);
+            Assertions.assertEquals("идеи для мама", restarted.fetchGiftIdeas(" МАМА"));
+            Assertions.assertEquals(1, generator.calls.get());
+            Assertions.assertEquals(1, restarted.stats().diskHits());
+        }
+
+        now.addAndGet(Duration.ofHours(2).toMillis());
+        try (IdeaCacheRepository disk = new IdeaCacheRepository(DB)) {
+            new CachingGiftIdeaGenerator(generator, 2, Duration.ofHours(1), disk, now::get);
+            Assertions.assertNull(disk.get(cache.keyOf("Мама"), 0));
+        }
+    }
+
+    /** Проверяет, что очистка базы оставляет только самые свежие ответы. */
+    @Test
+    void shouldPruneOldestRows() {
+        try (IdeaCacheRepository disk = new IdeaCacheRepository(DB)) {
+            for (int i = 0; i < 5; i++)
+                disk.put("k" + i, "v" + i, i);
+
+            Assertions.assertEquals(3, disk.prune(0, 2));
+            Assertions.assertNull(disk.get("k2", 0));
+            Assertions.assertEquals("v4", disk.get("k4", 0).response());
+            Assertions.assertNull(disk.get("k4", 5));
+        }
+    }
+
+    /** Генератор-заглушка, возвращающий ответ по нормализованному запросу. */
+    static class CountingGenerator implements GiftIdeaGenerator {
+        /** Число обращений. */
+        final AtomicInteger calls = new AtomicInteger();
+
+        /** Сколько следующих обращений завершатся ошибкой. */
+        volatile int failures;
+
+        /** Область кэша. */
+        String scope = "заглушка";
+
+        @Override
+        public String fetchGiftIdeas(String prompt) throws IOException {
+            calls.incrementAndGet();
+            if (failures > 0) {
+                failures--;
+                throw new IOException("сбой");
+            }
+            return "идеи для " + CachingGiftIdeaGenerator.normalize(prompt);
+        }
+
+        @Override
+        public String cacheScope() {
+            return scope;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Замер ChatStateStore: стоимость обращения к состоянию чата
+ * при многопоточной нагрузке.
+ * Запускается профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class ChatStateStoreBenchmark {
+
+    /**
+     * Нагружает хранилище из нескольких потоков и выводит среднюю
+     * стоимость цикла «создать — прочитать — удалить» в наносекундах.
+     */
+    @Test
+    void measureConcurrentLookups() throws Exception {
+        ChatStateStore store = new ChatStateStore();
+        int threads = 8;
+        int opsPerThread = 200_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long base = t * 1_000_000L;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < opsPerThread; i++) {
+                    long chatId = base + (i & 1023);
+                    store.getOrCreate(chatId).startEdit("f", "age");
+                    ChatState state = store.get(chatId);
+                    state.finishEdit();
+                    store.removeIfEmpty(chatId);
+                }
+            }));
+        }
+        for (Future<?> f : futures)
+            f.get();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Assertions.assertEquals(0, store.size());
+        System.out.printf("ChatStateStore: %.1f нс на цикл в каждом из %d потоков%n",
+                (double) elapsed / opsPerThread, threads);
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Тесты для ChatStateStore и ChatState.
+ * Проверяют переходы состояния чата, удаление пустых состояний
+ * и работу хранилища при многопоточной нагрузке.
+ * Стоимость обращения к хранилищу измеряет ChatStateStoreBenchmark.
+ */
+class ChatStateStoreTest {
+
+    /** Проверяет полный цикл опроса: ожидание имени, шаги и завершение. */
+    @Test
+    void shouldWalkSurveyLifecycle() {
+        ChatStateStore store = new ChatStateStore();
+        ChatState state = store.getOrCreate(1L);
+        state.startSurvey();
+        Assertions.assertTrue(state.isAwaitingName());
+
+        state.acceptName("Мама");
+        Assertions.assertFalse(state.isAwaitingName());
+        Assertions.assertEquals(BotLogic.Step.WHO, state.getSession().getStep());
+
+        Assertions.assertEquals("Мама", state.finishSurvey());
+        store.removeIfEmpty(1L);
+        Assertions.assertNull(store.get(1L));
+    }
+
+    /** Проверяет, что состояние с незавершённым редактированием не удаляется. */
+    @Test
+    void shouldKeepNonEmptyState() {
+        ChatStateStore store = new ChatStateStore();
+        store.getOrCreate(1L).startEdit("Мама", "age");
+        store.removeIfEmpty(1L);
+        Assertions.assertNotNull(store.get(1L));
+
+        String[] edit = store.get(1L).finishEdit();
+        Assertions.assertEquals("Мама", edit[0]);
+        Assertions.assertEquals("age", edit[1]);
+        store.removeIfEmpty(1L);
+        Assertions.assertEquals(0, store.size());
+    }
+
+    /** Проверяет, что брошенный опрос удаляется после истечения TTL. */
+    @Test
+    void shouldExpireIdleState() {
+        AtomicLong now = new AtomicLong(0);
+        ChatStateStore store = new ChatStateStore(Duration.ofMinutes(10), 100, now::get);
+        store.getOrCreate(1L).startSurvey();
+
+        now.set(Duration.ofMinutes(9).toMillis());
+        Assertions.assertNotNull(store.get(1L));
+
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        Assertions.assertNull(store.get(1L));
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertEquals(1, store.expiredCount());
+    }
+
+    /** Проверяет, что в снимок попадают изменённые чаты, а не просто прочитанные. */
+    @Test
+    void shouldMarkDirtyOnlyOnChange() {
+        ChatStateStore store = new ChatStateStore();
+        store.getOrCreate(1L).startSurvey();
+        store.getOrCreate(2L).startEdit("Мама", "age");
+        Assertions.assertEquals(2, store.drainDirty().size());
+
+        Assertions.assertNotNull(store.get(1L));
+        Assertions.assertNotNull(store.get(2L));
+        Assertions.assertTrue(store.drainDirty().isEmpty());
+
+        store.get(1L).acceptName("Мама");
+        store.markDirty(1L);
+        store.get(2L).finishEdit();
+        store.removeIfEmpty(2L);
+        Assertions.assertEquals(List.of(1L, 2L), store.drainDirty().stream().sorted().toList());
+    }
+
+    /** Проверяет, что устаревшие состояния других чатов вычищаются при создании новых. */
+    @Test
+    void shouldSweepAbandonedChatsLazily() {
+        AtomicLong now = new AtomicLong(0);
+        ChatStateStore store = new ChatStateStore(Duration.ofMinutes(1), 1000, now::get);
+        for (long chat = 0; chat < 5; chat++)
+            store.getOrCreate(chat).startSurvey();
+
+        now.set(Duration.ofMinutes(2).toMillis());
+        store.getOrCreate(100L);
+
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertEquals(5, store.expiredCount());
+    }
+
+    /** Проверяет, что при превышении лимита вытесняются самые давние состояния. */
+    @Test
+    void shouldEvictWhenOverCapacity() {
+        ChatStateStore store = new ChatStateStore(Duration.ofDays(1), 3);
+        for (long chat = 1; chat <= 5; chat++)
+            store.getOrCreate(chat).startSurvey();
+
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals(2, store.overflowCount());
+        Assertions.assertNotNull(store.get(5L));
+    }
+
+    /**
+     * Проверяет, что при одновременной работе нескольких потоков
+     * после цикла «создать — прочитать — удалить» не остаётся состояний.
+     */
+    @Test
+    void shouldHandleConcurrentChats() throws Exception {
+        ChatStateStore store = new ChatStateStore();
+        int threads = 8;
+        int opsPerThread = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            long base = t * 1_000_000L;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < opsPerThread; i++) {
+                    long chatId = base + (i & 1023);
+                    store.getOrCreate(chatId).startEdit("f", "age");
+                    ChatState state = store.get(chatId);
+                    state.finishEdit();
+                    store.removeIfEmpty(chatId);
+                }
+            }));
+        }
+        for (Future<?> f : futures)
+            f.get();
+        pool.shutdown();
+
+        Assertions.assertEquals(0, store.size());
+    }
+}
@@ -68,4 +68,127 @@ class DatabaseTest {
     void shouldNotThrowOnRepeatedInitialization() {
         Assertions.assertDoesNotThrow(() -> new Database("jdbc:sqlite:test.db"));
     }
+
+    /** Проверяет, что закрытое подключение возвращается в пул и выдаётся повторно */
+    @Test
+    void shouldReuseReturnedConnection() throws SQLException {
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 2)) {
+            Connection first = pooled.getConnection();
+            String physical = first.getMetaData().getConnection().toString();
+            first.close();
+
+            Assertions.assertTrue(first.isClosed());
+            try (Connection second = pooled.getConnection()) {
+                Assertions.assertFalse(second.isClosed());
+                Assertions.assertEquals(physical, second.getMetaData().getConnection().toString());
+            }
+        }
+    }
+
+    /** Проверяет, что незавершённая транзакция откатывается при возврате подключения */
+    @Test
+    void shouldResetTransactionOnReturn() throws SQLException {
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 1)) {
+            try (Connection c = pooled.getConnection()) {
+                c.setAutoCommit(false);
+            }
+            try (Connection c = pooled.getConnection()) {
+                Assertions.assertTrue(c.getAutoCommit());
+            }
+        }
+    }
+
+    /** Проверяет, что повторный close() не возвращает подключение в пул дважды */
+    @Test
+    void shouldIgnoreDoubleClose() throws SQLException {
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 1)) {
+            Connection c = pooled.getConnection();
+            c.close();
+            c.close();
+            Assertions.assertThrows(SQLException.class, c::createStatement);
+            try (Connection again = pooled.getConnection()) {
+                Assertions.assertNotNull(again);
+            }
+        }
+    }
+
+    /** Проверяет, что после закрытия пул не выдаёт подключений */
+    @Test
+    void shouldRejectAfterClose() {
+        Database pooled = new Database("jdbc:sqlite:test.db", 1);
+        pooled.close();
+        Assertions.assertThrows(SQLException.class, pooled::getConnection);
+    }
+
+    /** Проверяет, что профиль SQLite применяется к каждому подключению */
+    @Test
+    void shouldApplyStorageProfile() throws SQLException {
+        try (Connection conn = db.getConnection(); Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("PRAGMA journal_mode")) {
+                Assertions.assertEquals("wal", rs.getString(1));
+            }
+            try (ResultSet rs = st.executeQuery("PRAGMA synchronous")) {
+                Assertions.assertEquals(1, rs.getInt(1), "synchronous должен быть NORMAL");
+            }
+            try (ResultSet rs = st.executeQuery("PRAGMA busy_timeout")) {
+                Assertions.assertEquals(5000, rs.getInt(1));
+            }
+        }
+    }
+
+    /** Проверяет, что недопустимое значение PRAGMA отклоняется */
+    @Test
+    void shouldRejectUnknownPragmaValue() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new StorageProfile("WAL; DROP TABLE forms", "NORMAL", 0, 0, "MEMORY", 0));
+    }
+
+    /** Проверяет, что подготовленный запрос переиспользуется между выдачами подключения */
+    @Test
+    void shouldReuseCachedStatement() throws SQLException {
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 1)) {
+            PreparedStatement first;
+            try (Connection c = pooled.getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT name FROM forms WHERE chat_id = ?")) {
+                first = ps.unwrap(PreparedStatement.class);
+                ps.setLong(1, 1L);
+                ps.executeQuery();
+            }
+            try (Connection c = pooled.getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT name FROM forms WHERE chat_id = ?")) {
+                Assertions.assertSame(first, ps.unwrap(PreparedStatement.class));
+            }
+        }
+    }
+
+    /** Проверяет, что кэш запросов не переживает закрытие подключения */
+    @Test
+    void shouldInvalidateStatementsWithConnection() throws SQLException {
+        PreparedStatement first;
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 1)) {
+            try (Connection c = pooled.getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT 1")) {
+                first = ps.unwrap(PreparedStatement.class);
+            }
+        }
+        Assertions.assertTrue(first.isClosed());
+    }
+
+    /** Проверяет, что незакрытый запрос сбрасывается при возврате подключения */
+    @Test
+    void shouldResetLeakedStatementOnReturn() throws SQLException {
+        try (Database pooled = new Database("jdbc:sqlite:test.db", 1)) {
+            PreparedStatement leaked;
+            try (Connection c = pooled.getConnection()) {
+                leaked = c.prepareStatement("SELECT 1");
+                leaked.executeQuery();
+            }
+            Assertions.assertTrue(leaked.isClosed());
+            try (Connection c = pooled.getConnection();
+                 PreparedStatement ps = c.prepareStatement("SELECT 1");
+                 ResultSet rs = ps.executeQuery()) {
+                Assertions.assertTrue(rs.next());
+            }
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Замеры FormRepository с кэшем анкет на отдельной базе forms_cache_bench.db.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class FormCacheBenchmark {
+
+    /** Путь к базе замеров. */
+    static final String DB = "forms_cache_bench.db";
+
+    /** Удаляет базу замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(DB + suffix).delete();
+    }
+
+    /** Сравнивает повторное открытие одной анкеты с кэшем и без него. */
+    @Test
+    void measureCachedReads() {
+        FormCache formCache = new FormCache(1024, Duration.ofMinutes(1));
+        try (FormRepository plain = new FormRepository(DB, 2);
+             FormRepository cached = new FormRepository(DB, 2, StorageProfile.defaults(), formCache)) {
+            plain.upsert(new UserForm(5L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            double plainMicros = measureReads(plain);
+            double cachedMicros = measureReads(cached);
+            System.out.printf("Открытие анкеты: без кэша %.1f мкс, с кэшем %.1f мкс, попаданий %.0f%%%n",
+                    plainMicros, cachedMicros, formCache.stats().hitRate() * 100);
+            Assertions.assertTrue(plainMicros > 0 && cachedMicros > 0);
+        }
+    }
+
+    /** Читает одну анкету и список имён много раз и возвращает задержку чтения в микросекундах. */
+    private static double measureReads(FormRepository repo) {
+        int rounds = 5000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            repo.get(5L, "Мама");
+            repo.listNames(5L);
+        }
+        return (System.nanoTime() - start) / 1e3 / (rounds * 2);
+    }
+}
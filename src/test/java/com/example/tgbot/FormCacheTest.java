@@ -0,0 +1,156 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Тесты для FormCache и FormRepository с включённым кэшем.
+ * Проверяют попадания, сброс при изменениях, вытеснение и статистику.
+ * Выигрыш от кэша по времени измеряет FormCacheBenchmark.
+ */
+class FormCacheTest {
+
+    /** Управляемые часы для проверки вытеснения по времени. */
+    AtomicLong now;
+
+    /** Кэш на 32 записи с простоем 10 секунд. */
+    FormCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(1_000);
+        cache = new FormCache(32, Duration.ofSeconds(10), now::get);
+    }
+
+    /** Проверяет попадание, промах и счётчики статистики. */
+    @Test
+    void shouldCountHitsAndMisses() {
+        Assertions.assertNull(cache.getForm(1L, "Мама"));
+        cache.putForm(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000), cache.stamp(1L));
+        Assertions.assertNotNull(cache.getForm(1L, "Мама"));
+
+        FormCache.Stats stats = cache.stats();
+        Assertions.assertEquals(1, stats.hits());
+        Assertions.assertEquals(1, stats.misses());
+        Assertions.assertEquals(0.5, stats.hitRate(), 1e-9);
+    }
+
+    /** Проверяет, что изменение выданной копии не портит кэш. */
+    @Test
+    void shouldReturnCopies() {
+        cache.putForm(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000), cache.stamp(1L));
+        cache.getForm(1L, "Мама").hobbies = "изменено";
+        cache.putNames(1L, List.of("Мама"), cache.stamp(1L));
+        cache.getNames(1L).add("Лишняя");
+
+        Assertions.assertEquals("сад", cache.getForm(1L, "Мама").hobbies);
+        Assertions.assertEquals(List.of("Мама"), cache.getNames(1L));
+    }
+
+    /** Проверяет, что изменение сбрасывает анкету и список имён только своего чата. */
+    @Test
+    void shouldInvalidatePrecisely() {
+        cache.putForm(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000), cache.stamp(1L));
+        cache.putForm(new UserForm(1L, "Папа", "папа", "НГ", 50, "охота", 3000), cache.stamp(1L));
+        cache.putNames(1L, List.of("Мама", "Папа"), cache.stamp(1L));
+
+        cache.invalidate(1L, "Мама");
+
+        Assertions.assertNull(cache.getForm(1L, "Мама"));
+        Assertions.assertNotNull(cache.getForm(1L, "Папа"));
+        Assertions.assertNull(cache.getNames(1L));
+    }
+
+    /** Проверяет, что чтение, начатое до изменения, не попадает в кэш. */
+    @Test
+    void shouldRejectStaleFill() {
+        long stamp = cache.stamp(1L);
+        cache.invalidate(1L, "Мама");
+        cache.putForm(new UserForm(1L, "Мама", "мама", "ДР", 45, "старое", 3000), stamp);
+
+        Assertions.assertNull(cache.getForm(1L, "Мама"));
+    }
+
+    /** Проверяет вытеснение по размеру. */
+    @Test
+    void shouldEvictBySize() {
+        for (int i = 0; i < 1000; i++)
+            cache.putForm(new UserForm(i, "Анкета", "друг", "ДР", 30, "книги", i), cache.stamp(i));
+
+        FormCache.Stats stats = cache.stats();
+        Assertions.assertTrue(stats.size() <= 32, "Размер кэша: " + stats.size());
+        Assertions.assertTrue(stats.evictions() >= 1000 - 32);
+    }
+
+    /** Проверяет вытеснение по времени простоя. */
+    @Test
+    void shouldEvictIdleEntries() {
+        cache.putForm(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000), cache.stamp(1L));
+        now.addAndGet(5_000);
+        Assertions.assertNotNull(cache.getForm(1L, "Мама"));
+        now.addAndGet(11_000);
+        Assertions.assertNull(cache.getForm(1L, "Мама"));
+    }
+
+    /** Проверяет, что хранилище с кэшем видит собственные изменения. */
+    @Test
+    void shouldSeeWritesThroughRepository() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File("forms_cache_test.db" + suffix).delete();
+        try (FormRepository repo = new FormRepository("forms_cache_test.db", 2, StorageProfile.defaults(),
+                new FormCache(1024, Duration.ofMinutes(1)))) {
+            repo.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            Assertions.assertEquals(List.of("Мама"), repo.listNames(1L));
+            Assertions.assertEquals("сад", repo.get(1L, "Мама").hobbies);
+
+            repo.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "цветы", 3000));
+            repo.upsert(new UserForm(1L, "Папа", "папа", "НГ", 50, "охота", 3000));
+            Assertions.assertEquals("цветы", repo.get(1L, "Мама").hobbies);
+            Assertions.assertEquals(2, repo.listNames(1L).size());
+
+            repo.delete(1L, "Мама");
+            Assertions.assertNull(repo.get(1L, "Мама"));
+            Assertions.assertEquals(List.of("Папа"), repo.listNames(1L));
+        }
+    }
+
+    /** Проверяет, что страницы списка берутся из закэшированных имён и видят изменения. */
+    @Test
+    void shouldPageFromCachedNames() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File("forms_cache_test.db" + suffix).delete();
+        FormCache formCache = new FormCache(1024, Duration.ofMinutes(1));
+        try (FormRepository repo = new FormRepository("forms_cache_test.db", 2, StorageProfile.defaults(), formCache)) {
+            repo.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            repo.upsert(new UserForm(1L, "Папа", "папа", "НГ", 50, "охота", 3000));
+            Assertions.assertEquals(List.of("Мама", "Папа"), repo.listNamesAfter(1L, null, 10).names());
+
+            long misses = formCache.stats().misses();
+            Assertions.assertEquals(List.of("Папа"), repo.listNamesBefore(1L, null, 1).names());
+            Assertions.assertEquals(List.of("Мама"), repo.listNamesAfter(1L, null, 1).names());
+            Assertions.assertEquals(misses, formCache.stats().misses());
+
+            repo.upsert(new UserForm(1L, "Брат", "брат", "ДР", 20, "игры", 2000));
+            Assertions.assertEquals(List.of("Брат", "Мама", "Папа"), repo.listNamesAfter(1L, null, 10).names());
+        }
+    }
+
+    /** Проверяет, что повторные чтения одной анкеты и списка имён обслуживает кэш. */
+    @Test
+    void shouldServeRepeatedReadsFromCache() {
+        FormCache formCache = new FormCache(1024, Duration.ofMinutes(1));
+        try (FormRepository repo = new FormRepository("forms_cache_test.db", 2, StorageProfile.defaults(), formCache)) {
+            repo.upsert(new UserForm(5L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertEquals("сад", repo.get(5L, "Мама").hobbies);
+                Assertions.assertTrue(repo.listNames(5L).contains("Мама"));
+            }
+            Assertions.assertTrue(formCache.stats().hitRate() > 0.9);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Замеры FormRepository на отдельной базе forms_bench.db.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class FormRepositoryBenchmark {
+
+    /** Путь к базе замеров. */
+    static final String DB = "forms_bench.db";
+
+    /** Удаляет базу замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        delete(DB);
+    }
+
+    /** Удаляет файл базы вместе с журналами WAL. */
+    private static void delete(String dbPath) {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(dbPath + suffix).delete();
+    }
+
+    /**
+     * Сравнивает число операций get/upsert/listNames в секунду
+     * с пулом подключений и без него (новое подключение на каждый запрос).
+     */
+    @Test
+    void measurePooledThroughput() {
+        double direct = measureOps(0);
+        double pooled = measureOps(4);
+        System.out.printf("FormRepository: без пула %.0f оп/с, с пулом %.0f оп/с%n", direct, pooled);
+        Assertions.assertTrue(pooled > 0 && direct > 0);
+    }
+
+    /** Выполняет смешанную нагрузку и возвращает число операций в секунду. */
+    private static double measureOps(int poolSize) {
+        try (FormRepository r = new FormRepository(DB, poolSize)) {
+            int rounds = 300;
+            for (int i = 0; i < 20; i++)
+                r.upsert(new UserForm(7L, "Прогрев" + i, "друг", "ДР", 30, "книги", 1000));
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                r.upsert(new UserForm(7L, "Анкета" + (i % 20), "друг", "ДР", 30, "книги", 1000 + i));
+                r.get(7L, "Анкета" + (i % 20));
+                r.listNames(7L);
+            }
+            return rounds * 3 / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Сравнивает смешанную нагрузку (90% чтений, 10% записей из 4 потоков)
+     * на стандартных настройках SQLite и на профиле по умолчанию с WAL.
+     */
+    @Test
+    void measureReadWriteMixByProfile() throws Exception {
+        double legacy = measureMix("forms_legacy_bench.db", StorageProfile.legacy());
+        double wal = measureMix("forms_wal_bench.db", StorageProfile.defaults());
+        System.out.printf("Смешанная нагрузка: стандартный профиль %.0f оп/с, WAL %.0f оп/с%n", legacy, wal);
+        Assertions.assertTrue(legacy > 0 && wal > 0);
+    }
+
+    /** Запускает смешанную нагрузку на отдельной базе и возвращает число операций в секунду. */
+    private static double measureMix(String dbPath, StorageProfile profile) throws Exception {
+        int threads = 4;
+        int opsPerThread = 500;
+        try (FormRepository r = new FormRepository(dbPath, threads, profile)) {
+            for (int i = 0; i < 50; i++)
+                r.upsert(new UserForm(i, "Анкета", "друг", "ДР", 30, "книги", 1000));
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < opsPerThread; i++) {
+                        long chatId = (seed * 31L + i) % 50;
+                        if (i % 10 == 0)
+                            r.upsert(new UserForm(chatId, "Анкета", "друг", "ДР", 30, "книги", i));
+                        else if (i % 2 == 0)
+                            r.get(chatId, "Анкета");
+                        else
+                            r.listNames(chatId);
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers)
+                w.join();
+            return threads * opsPerThread / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            delete(dbPath);
+        }
+    }
+
+    /** Сравнивает задержку одной операции с кэшем подготовленных запросов и без него. */
+    @Test
+    void measureStatementCacheLatency() {
+        double uncached = measureLatencyMicros(0);
+        double cached = measureLatencyMicros(Database.DEFAULT_STATEMENT_CACHE_SIZE);
+        System.out.printf("Задержка операции: без кэша запросов %.1f мкс, с кэшем %.1f мкс%n", uncached, cached);
+        Assertions.assertTrue(uncached > 0 && cached > 0);
+    }
+
+    /** Выполняет get/upsert/listNames и возвращает среднюю задержку операции в микросекундах. */
+    private static double measureLatencyMicros(int statementCacheSize) {
+        Database db = new Database("jdbc:sqlite:" + DB, 1, StorageProfile.defaults(), statementCacheSize);
+        try (FormRepository r = new FormRepository(db)) {
+            int rounds = 2000;
+            for (int i = 0; i < 200; i++)
+                r.get(8L, "Прогрев");
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                r.upsert(new UserForm(8L, "Анкета" + (i % 10), "друг", "ДР", 30, "книги", i));
+                r.get(8L, "Анкета" + (i % 10));
+                r.listNames(8L);
+            }
+            return (System.nanoTime() - start) / 1e3 / (rounds * 3);
+        }
+    }
+
+    /** Сравнивает время чтения страницы у пользователя с 20 анкетами и с 19980 анкетами. */
+    @Test
+    void measurePageTime() throws SQLException {
+        try (FormRepository r = new FormRepository(DB)) {
+            try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + DB)) {
+                c.setAutoCommit(false);
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO forms (chat_id, name) VALUES (?, ?)")) {
+                    for (int i = 0; i < 20_000; i++) {
+                        ps.setLong(1, i < 20 ? 2L : 3L);
+                        ps.setString(2, String.format("Анкета%05d", i));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                c.commit();
+            }
+            double small = measurePageMicros(r, 2L, "Анкета00005");
+            double large = measurePageMicros(r, 3L, "Анкета10000");
+            System.out.printf("Страница анкет: 20 анкет %.1f мкс, 19980 анкет %.1f мкс%n", small, large);
+            Assertions.assertTrue(small > 0 && large > 0);
+        }
+    }
+
+    /** Возвращает среднее время чтения страницы в микросекундах. */
+    private static double measurePageMicros(FormRepository r, long chatId, String after) {
+        int rounds = 2000;
+        for (int i = 0; i < 200; i++)
+            r.listNamesAfter(chatId, after, 10);
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++)
+            r.listNamesAfter(chatId, after, 10);
+        return (System.nanoTime() - start) / 1e3 / rounds;
+    }
+}
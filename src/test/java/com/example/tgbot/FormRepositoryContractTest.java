@@ -0,0 +1,22 @@
+package org.example.db;
+
+import java.io.File;
+
+/**
+ * Общие тесты FormStore для FormRepository на отдельной базе form_store_test.db.
+ */
+class FormRepositoryContractTest extends FormStoreContract {
+
+    @Override
+    FormStore createStore() {
+        cleanUp();
+        return new FormRepository("form_store_test.db", 2);
+    }
+
+    /** Удаляет файл тестовой базы вместе с журналами WAL. */
+    @Override
+    void cleanUp() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File("form_store_test.db" + suffix).delete();
+    }
+}
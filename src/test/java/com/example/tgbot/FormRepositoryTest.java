@@ -8,6 +8,7 @@ import java.util.List;
 /**
  * Тесты для класса FormRepository.
  * Использует отдельную тестовую базу forms_test.db, чтобы не трогать реальные данные пользователей.
+ * Скорость операций измеряет FormRepositoryBenchmark.
  */
 class FormRepositoryTest {
 
@@ -44,6 +45,12 @@ class FormRepositoryTest {
         }
     }
 
+    /** Закрывает подключения репозитория после теста. */
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
     /**
      * Проверяет, что новая анкета корректно сохраняется в базе данных.
      * После вставки данные доступны через метод get().
@@ -123,4 +130,52 @@ class FormRepositoryTest {
     void shouldNotThrowWhenDeletingNonexistentForm() {
         Assertions.assertDoesNotThrow(() -> repo.delete(1L, "Несуществующая"));
     }
+
+    /** Проверяет переход по страницам вперёд и назад. */
+    @Test
+    void shouldPageThroughNames() {
+        for (int i = 0; i < 25; i++)
+            repo.upsert(new UserForm(1L, String.format("Анкета%02d", i), "друг", "ДР", 30, "книги", 1000));
+
+        NamePage first = repo.listNamesAfter(1L, null, 10);
+        Assertions.assertEquals(10, first.names().size());
+        Assertions.assertEquals("Анкета00", first.names().get(0));
+        Assertions.assertFalse(first.hasPrev());
+        Assertions.assertTrue(first.hasNext());
+
+        NamePage third = repo.listNamesAfter(1L, "Анкета19", 10);
+        Assertions.assertEquals(List.of("Анкета20", "Анкета21", "Анкета22", "Анкета23", "Анкета24"), third.names());
+        Assertions.assertFalse(third.hasNext());
+
+        NamePage second = repo.listNamesBefore(1L, "Анкета20", 10);
+        Assertions.assertEquals("Анкета10", second.names().get(0));
+        Assertions.assertEquals("Анкета19", second.names().get(9));
+        Assertions.assertTrue(second.hasPrev());
+        Assertions.assertTrue(second.hasNext());
+
+        NamePage back = repo.listNamesBefore(1L, "Анкета10", 10);
+        Assertions.assertEquals(first.names(), back.names());
+        Assertions.assertFalse(back.hasPrev());
+    }
+
+    /** Проверяет, что страница из середины длинного списка берёт только анкеты своего пользователя. */
+    @Test
+    void shouldPageWithinLongList() throws SQLException {
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:forms_test.db")) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO forms (chat_id, name) VALUES (?, ?)")) {
+                for (int i = 0; i < 2000; i++) {
+                    ps.setLong(1, i % 2 == 0 ? 2L : 3L);
+                    ps.setString(2, String.format("Анкета%05d", i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+        }
+        NamePage page = repo.listNamesAfter(3L, "Анкета01001", 3);
+        Assertions.assertEquals(List.of("Анкета01003", "Анкета01005", "Анкета01007"), page.names());
+        Assertions.assertTrue(page.hasPrev());
+        Assertions.assertTrue(page.hasNext());
+    }
 }
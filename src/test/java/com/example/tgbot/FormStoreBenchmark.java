@@ -0,0 +1,66 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+/**
+ * Сравнение реализаций FormStore на одинаковой смешанной нагрузке.
+ * FormRepository работает с отдельной базой form_store_bench.db.
+ * Запускается профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class FormStoreBenchmark {
+
+    /** Путь к базе замеров. */
+    static final String DB = "form_store_bench.db";
+
+    /** Удаляет базу замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(DB + suffix).delete();
+    }
+
+    /** Сравнивает число операций в секунду у хранилища в SQLite и в памяти. */
+    @Test
+    void measureMixedWorkload() {
+        double sqlite;
+        try (FormStore store = new FormRepository(DB, 2)) {
+            sqlite = measureMix(store);
+        }
+        double memory;
+        try (FormStore store = new InMemoryFormStore()) {
+            memory = measureMix(store);
+        }
+        System.out.printf("Смешанная нагрузка: FormRepository %.0f оп/с, InMemoryFormStore %.0f оп/с%n",
+                sqlite, memory);
+        Assertions.assertTrue(sqlite > 0 && memory > 0);
+    }
+
+    /**
+     * Выполняет смешанную нагрузку: на одну запись четыре чтения и одна страница.
+     * Возвращает число операций в секунду.
+     */
+    private static double measureMix(FormStore store) {
+        int chats = 200;
+        int rounds = 5000;
+        for (long chat = 0; chat < chats; chat++)
+            for (int i = 0; i < 5; i++)
+                store.upsert(new UserForm(chat, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            long chat = i % chats;
+            store.upsert(new UserForm(chat, "Анкета" + i % 5, "друг", "ДР", 30, "книги", i));
+            for (int r = 0; r < 4; r++)
+                store.get(chat, "Анкета" + r);
+            store.listNamesAfter(chat, null, 10);
+        }
+        return rounds * 6 / ((System.nanoTime() - start) / 1e9);
+    }
+}
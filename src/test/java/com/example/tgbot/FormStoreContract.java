@@ -0,0 +1,237 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общие тесты для всех реализаций FormStore.
+ * Наследник создаёт хранилище в createStore() и при необходимости
+ * убирает за ним в cleanUp(). Скорость реализаций на одинаковой
+ * нагрузке сравнивает FormStoreBenchmark.
+ */
+abstract class FormStoreContract {
+
+    /** Проверяемое хранилище. */
+    FormStore store;
+
+    /** Создаёт пустое хранилище для очередного теста. */
+    abstract FormStore createStore();
+
+    /** Удаляет данные хранилища после закрытия (файлы базы и т.п.). */
+    void cleanUp() {
+    }
+
+    @BeforeEach
+    void openStore() {
+        store = createStore();
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+        cleanUp();
+    }
+
+    /** Проверяет сохранение и чтение анкеты. */
+    @Test
+    void shouldStoreAndReadForm() {
+        store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+
+        UserForm f = store.get(1L, "Мама");
+
+        Assertions.assertNotNull(f);
+        Assertions.assertEquals(1L, f.chatId);
+        Assertions.assertEquals("мама", f.relation);
+        Assertions.assertEquals("ДР", f.occasion);
+        Assertions.assertEquals(45, f.age);
+        Assertions.assertEquals("сад", f.hobbies);
+        Assertions.assertEquals(3000, f.budget);
+        Assertions.assertNull(store.get(1L, "Папа"));
+        Assertions.assertNull(store.get(2L, "Мама"));
+    }
+
+    /** Проверяет, что незаполненные поля читаются как null, а не как 0. */
+    @Test
+    void shouldKeepEmptyFields() {
+        store.upsert(new UserForm(1L, "Коллега", null, null, null, null, null));
+
+        UserForm f = store.get(1L, "Коллега");
+
+        Assertions.assertNull(f.relation);
+        Assertions.assertNull(f.age);
+        Assertions.assertNull(f.budget);
+    }
+
+    /** Проверяет, что повторное сохранение перезаписывает анкету. */
+    @Test
+    void shouldOverwriteForm() {
+        store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+        store.upsert(new UserForm(1L, "Мама", "мама", "8 марта", 46, "книги", 5000));
+
+        UserForm f = store.get(1L, "Мама");
+
+        Assertions.assertEquals("8 марта", f.occasion);
+        Assertions.assertEquals(5000, f.budget);
+        Assertions.assertEquals(List.of("Мама"), store.listNames(1L));
+    }
+
+    /** Проверяет, что изменение полученной анкеты не меняет хранилище. */
+    @Test
+    void shouldNotShareFormInstances() {
+        UserForm original = new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000);
+        store.upsert(original);
+        original.budget = 1;
+        store.get(1L, "Мама").budget = 2;
+
+        Assertions.assertEquals(3000, store.get(1L, "Мама").budget);
+    }
+
+    /** Проверяет, что анкеты разных чатов не смешиваются. */
+    @Test
+    void shouldSeparateChats() {
+        store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+        store.upsert(new UserForm(1L, "Брат", "брат", "ДР", 20, "игры", 2000));
+        store.upsert(new UserForm(2L, "Коллега", "коллега", "НГ", 30, "кофе", 1000));
+
+        Assertions.assertEquals(Set.of("Мама", "Брат"), new HashSet<>(store.listNames(1L)));
+        Assertions.assertEquals(List.of("Коллега"), store.listNames(2L));
+        Assertions.assertTrue(store.listNames(3L).isEmpty());
+    }
+
+    /** Проверяет удаление, в том числе несуществующей анкеты. */
+    @Test
+    void shouldDeleteForm() {
+        store.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+
+        store.delete(1L, "Мама");
+        store.delete(1L, "Мама");
+        store.delete(5L, "Никто");
+
+        Assertions.assertNull(store.get(1L, "Мама"));
+        Assertions.assertTrue(store.listNames(1L).isEmpty());
+    }
+
+    /** Проверяет листание страниц вперёд и назад в порядке SQLite. */
+    @Test
+    void shouldPageInNameOrder() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+            names.add(String.format("Анкета %02d", i));
+        names.add("Bob");
+        names.add("alice");
+        names.add("Ёлка");
+        for (String n : names)
+            store.upsert(new UserForm(7L, n, "друг", "ДР", 30, "книги", 1000));
+        names.sort(FormRepository.NAME_ORDER);
+
+        NamePage first = store.listNamesAfter(7L, null, 10);
+        Assertions.assertEquals(names.subList(0, 10), first.names());
+        Assertions.assertFalse(first.hasPrev());
+        Assertions.assertTrue(first.hasNext());
+
+        NamePage second = store.listNamesAfter(7L, first.names().get(9), 10);
+        Assertions.assertEquals(names.subList(10, 20), second.names());
+        Assertions.assertTrue(second.hasPrev());
+        Assertions.assertTrue(second.hasNext());
+
+        NamePage last = store.listNamesAfter(7L, second.names().get(9), 10);
+        Assertions.assertEquals(names.subList(20, 28), last.names());
+        Assertions.assertFalse(last.hasNext());
+
+        NamePage back = store.listNamesBefore(7L, last.names().get(0), 10);
+        Assertions.assertEquals(second.names(), back.names());
+        Assertions.assertTrue(back.hasPrev());
+        Assertions.assertTrue(back.hasNext());
+
+        NamePage start = store.listNamesBefore(7L, back.names().get(0), 10);
+        Assertions.assertEquals(first.names(), start.names());
+        Assertions.assertFalse(start.hasPrev());
+    }
+
+    /** Проверяет, что листание назад без курсора начинается с последней страницы. */
+    @Test
+    void shouldPageBackFromEnd() {
+        for (int i = 0; i < 5; i++)
+            store.upsert(new UserForm(8L, "Анкета" + i, "друг", "ДР", 30, "книги", 1000));
+
+        NamePage tail = store.listNamesBefore(8L, null, 3);
+        Assertions.assertEquals(List.of("Анкета2", "Анкета3", "Анкета4"), tail.names());
+        Assertions.assertTrue(tail.hasPrev());
+        Assertions.assertFalse(tail.hasNext());
+
+        NamePage all = store.listNamesBefore(8L, null, 10);
+        Assertions.assertEquals(5, all.names().size());
+        Assertions.assertFalse(all.hasPrev());
+        Assertions.assertFalse(all.hasNext());
+    }
+
+    /** Проверяет, что стрелки страницы учитывают анкеты, удалённые по другую сторону курсора. */
+    @Test
+    void shouldComputeArrowsFromRemainingForms() {
+        for (int i = 0; i < 6; i++)
+            store.upsert(new UserForm(9L, "Анкета" + i, "друг", "ДР", 30, "книги", 1000));
+
+        Assertions.assertTrue(store.listNamesAfter(9L, "Анкета2", 2).hasPrev());
+        Assertions.assertTrue(store.listNamesBefore(9L, "Анкета3", 2).hasNext());
+
+        for (int i = 0; i <= 2; i++)
+            store.delete(9L, "Анкета" + i);
+        NamePage after = store.listNamesAfter(9L, "Анкета2", 2);
+        Assertions.assertEquals(List.of("Анкета3", "Анкета4"), after.names());
+        Assertions.assertFalse(after.hasPrev());
+        Assertions.assertTrue(after.hasNext());
+
+        for (int i = 3; i <= 5; i++)
+            store.delete(9L, "Анкета" + i);
+        store.upsert(new UserForm(9L, "Анкета0", "друг", "ДР", 30, "книги", 1000));
+        NamePage before = store.listNamesBefore(9L, "Анкета3", 2);
+        Assertions.assertEquals(List.of("Анкета0"), before.names());
+        Assertions.assertFalse(before.hasPrev());
+        Assertions.assertFalse(before.hasNext());
+    }
+
+    /** Проверяет страницы чата без анкет. */
+    @Test
+    void shouldReturnEmptyPagesForUnknownChat() {
+        Assertions.assertTrue(store.listNamesAfter(42L, null, 10).isEmpty());
+        Assertions.assertFalse(store.listNamesAfter(42L, null, 10).hasNext());
+        Assertions.assertTrue(store.listNamesBefore(42L, "Мама", 10).isEmpty());
+        Assertions.assertTrue(store.listNamesBefore(42L, null, 10).isEmpty());
+    }
+
+    /** Проверяет одновременную запись из нескольких потоков в разные чаты. */
+    @Test
+    void shouldAcceptConcurrentWrites() throws Exception {
+        int threads = 4;
+        int perThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = t * 10_000L;
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        store.upsert(new UserForm(base + i % 50, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+                }));
+            }
+            // get() пробрасывает ошибку записи из рабочего потока в тест
+            for (Future<?> w : workers)
+                w.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int t = 0; t < threads; t++)
+            for (int chat = 0; chat < 50; chat++)
+                Assertions.assertEquals(perThread / 50, store.listNames(t * 10_000L + chat).size());
+    }
+}
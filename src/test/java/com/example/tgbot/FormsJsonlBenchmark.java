@@ -0,0 +1,61 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Замеры утилиты FormsJsonl на отдельных файлах jsonl_bench*.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class FormsJsonlBenchmark {
+
+    /** Удаляет файлы замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith("jsonl_bench"));
+        if (files != null)
+            for (File f : files)
+                f.delete();
+    }
+
+    /** Замеряет скорость выгрузки и загрузки 100 000 анкет через файл. */
+    @Test
+    void measureThroughput() throws IOException {
+        int rows = 100_000;
+        Path file = Path.of("jsonl_bench.jsonl");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++)
+                out.write(FormsJsonl.toJson(new UserForm(i / 10, "Анкета" + i % 10, "друг", "ДР", 30, "книги", i))
+                        + "\n");
+        }
+
+        long start = System.nanoTime();
+        long imported;
+        try (var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            imported = FormsJsonl.importForms("jsonl_bench.db", 1, in);
+        }
+        double importRate = imported / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        long exported;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            exported = FormsJsonl.export("jsonl_bench.db", 1, out);
+        }
+        double exportRate = exported / ((System.nanoTime() - start) / 1e9);
+
+        System.out.printf("JSONL: загрузка %.0f строк/с, выгрузка %.0f строк/с%n", importRate, exportRate);
+        Assertions.assertEquals(rows, imported);
+        Assertions.assertEquals(rows, exported);
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Тесты для утилиты FormsJsonl.
+ * Используют отдельные файлы jsonl_test*.db и удаляют их после себя.
+ * Скорость загрузки и выгрузки измеряет FormsJsonlBenchmark.
+ */
+class FormsJsonlTest {
+
+    /** Удаляет файлы тестовых баз вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith("jsonl_test"));
+        if (files != null)
+            for (File f : files)
+                f.delete();
+    }
+
+    /** Проверяет, что выгрузка и загрузка сохраняют все поля, включая пустые и спецсимволы. */
+    @Test
+    void shouldRoundTripForms() {
+        try (FormRepository source = new FormRepository("jsonl_test_src.db", 1)) {
+            source.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад \"и\" цветы\nи книги", 3000));
+            source.upsert(new UserForm(2L, "Коллега", null, null, null, null, null));
+        }
+        StringWriter out = new StringWriter();
+
+        Assertions.assertEquals(2, FormsJsonl.export("jsonl_test_src.db", 1, out));
+        Assertions.assertEquals(2, out.toString().lines().count());
+        Assertions.assertEquals(2, FormsJsonl.importForms("jsonl_test.db", 2, new StringReader(out.toString())));
+
+        try (FormRepository target = new FormRepository("jsonl_test.db", 2, 1, StorageProfile.defaults(), null)) {
+            UserForm mama = target.get(1L, "Мама");
+            Assertions.assertEquals("сад \"и\" цветы\nи книги", mama.hobbies);
+            Assertions.assertEquals(45, mama.age);
+            Assertions.assertEquals(3000, mama.budget);
+            UserForm colleague = target.get(2L, "Коллега");
+            Assertions.assertNull(colleague.relation);
+            Assertions.assertNull(colleague.budget);
+        }
+    }
+
+    /** Проверяет, что повторная загрузка не дублирует анкеты, а пустые строки пропускаются. */
+    @Test
+    void shouldImportIdempotently() {
+        String jsonl = "{\"chat_id\":5,\"name\":\"Брат\",\"budget\":100}\n\n"
+                + "{\"chat_id\":5,\"name\":\"Брат\",\"budget\":200,\"age\":null}\n";
+
+        FormsJsonl.importForms("jsonl_test.db", 1, new StringReader(jsonl));
+        FormsJsonl.importForms("jsonl_test.db", 1, new StringReader(jsonl));
+
+        try (FormRepository target = new FormRepository("jsonl_test.db", 1)) {
+            Assertions.assertEquals(1, target.listNames(5L).size());
+            Assertions.assertEquals(200, target.get(5L, "Брат").budget);
+            Assertions.assertNull(target.get(5L, "Брат").age);
+        }
+    }
+
+    /** Проверяет сообщение об ошибке с номером строки. */
+    @Test
+    void shouldReportBrokenLine() {
+        String jsonl = "{\"chat_id\":5,\"name\":\"Брат\"}\n{\"chat_id\":5}\n";
+
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FormsJsonl.importForms("jsonl_test.db", 1, new StringReader(jsonl)));
+
+        Assertions.assertTrue(e.getMessage().contains("строке 2"));
+    }
+
+    /** Проверяет, что выгрузка из несуществующей базы не создаёт пустой файл. */
+    @Test
+    void shouldRejectMissingDatabase() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> FormsJsonl.export("jsonl_test_missing.db", 1, new StringWriter()));
+        Assertions.assertFalse(new File("jsonl_test_missing.db").exists());
+    }
+
+    /** Проверяет загрузку и выгрузку через файл, когда строк больше, чем помещается в одну пачку. */
+    @Test
+    void shouldRoundTripSeveralBatchesThroughFile() throws IOException {
+        int rows = 12_000;
+        Path file = Path.of("jsonl_test.jsonl");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++)
+                out.write(FormsJsonl.toJson(new UserForm(i / 10, "Анкета" + i % 10, "друг", "ДР", 30, "книги", i))
+                        + "\n");
+        }
+
+        long imported;
+        try (var in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            imported = FormsJsonl.importForms("jsonl_test.db", 1, in);
+        }
+        long exported;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            exported = FormsJsonl.export("jsonl_test.db", 1, out);
+        }
+
+        Assertions.assertEquals(rows, imported);
+        Assertions.assertEquals(rows, exported);
+        Assertions.assertEquals(rows, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+        try (FormRepository repo = new FormRepository("jsonl_test.db", 1)) {
+            Assertions.assertEquals(11_999, repo.get(1199L, "Анкета9").budget);
+        }
+    }
+}
@@ -6,6 +6,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Тесты для GiftIdeaService, проверяющие разбор
  * JSON и обработку ошибок при работе с API. */
@@ -43,6 +48,130 @@ class GiftIdeaServiceTest {
         server.shutdown();
     }
 
+    /** Асинхронный запрос возвращает разобранный ответ через future */
+    @Test
+    void shouldReturnParsedGiftIdeaAsync() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "application/json")
+                .setBody("{\"choices\":[{\"message\":{\"content\":\" 🎁 Книга \"}}]}"));
+
+        GiftIdeaService service = new GiftIdeaService() {
+            @Override
+            protected String apiUrl() {
+                return server.url("/chat/completions").toString();
+            }
+        };
+
+        String result = service.fetchGiftIdeasAsync("подарок для брата").get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals("🎁 Книга", result);
+
+        server.shutdown();
+    }
+
+    /** Асинхронный запрос завершается ошибкой при коде ответа 500 */
+    @Test
+    void shouldFailAsyncOnServerError() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        GiftIdeaService service = new GiftIdeaService() {
+            @Override
+            protected String apiUrl() {
+                return server.url("/chat/completions").toString();
+            }
+        };
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> service.fetchGiftIdeasAsync("test").get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+
+        server.shutdown();
+    }
+
+    /** Потоковый запрос передаёт накопленный текст после каждого фрагмента SSE */
+    @Test
+    void shouldStreamPartialText() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "text/event-stream")
+                .setBody("""
+                        : OPENROUTER PROCESSING
+
+                        data: {"choices":[{"delta":{"role":"assistant","content":""}}]}
+
+                        data: {"choices":[{"delta":{"content":"🎁 Кни"}}]}
+
+                        data: {"choices":[{"delta":{"content":"га "}}]}
+
+                        data: {"choices":[{"delta":{},"finish_reason":"stop"}]}
+
+                        data: [DONE]
+
+                        """));
+
+        GiftIdeaService service = new GiftIdeaService() {
+            @Override
+            protected String apiUrl() {
+                return server.url("/chat/completions").toString();
+            }
+        };
+
+        List<String> partials = new CopyOnWriteArrayList<>();
+        String result = service.streamGiftIdeas("подарок для брата", partials::add).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("🎁 Книга", result);
+        Assertions.assertEquals(List.of("🎁 Кни", "🎁 Книга "), partials);
+        Assertions.assertTrue(server.takeRequest().getBody().readUtf8().contains("\"stream\":true"));
+
+        server.shutdown();
+    }
+
+    /**
+     * Первый текст потокового ответа виден задолго до конца генерации.
+     * Сервер отдаёт 40 фрагментов примерно за секунду.
+     */
+    @Test
+    void shouldShowFirstTextBeforeCompletion() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 40; i++)
+            body.append("data: {\"choices\":[{\"delta\":{\"content\":\"идея ").append(i).append(" \"}}]}\n\n");
+        body.append("data: [DONE]\n\n");
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .addHeader("Content-Type", "text/event-stream")
+                .setBody(body.toString())
+                .throttleBody(128, 50, TimeUnit.MILLISECONDS));
+
+        GiftIdeaService service = new GiftIdeaService() {
+            @Override
+            protected String apiUrl() {
+                return server.url("/chat/completions").toString();
+            }
+        };
+
+        long start = System.nanoTime();
+        AtomicLong firstText = new AtomicLong();
+        String result = service.streamGiftIdeas("подарок",
+                        partial -> firstText.compareAndSet(0, System.nanoTime() - start))
+                .get(10, TimeUnit.SECONDS);
+        long total = System.nanoTime() - start;
+
+        Assertions.assertTrue(result.endsWith("идея 39"));
+        Assertions.assertTrue(firstText.get() > 0 && firstText.get() < total / 2,
+                "Первый текст через " + firstText.get() / 1_000_000 + " мс из " + total / 1_000_000);
+
+        server.shutdown();
+    }
+
     /** Ошибка внешнего API: код ответа 500 */
 
 
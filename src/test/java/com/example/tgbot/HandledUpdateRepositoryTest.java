@@ -0,0 +1,52 @@
+package org.example.db;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Тесты для HandledUpdateRepository.
+ * Используют отдельную базу handled_test.db, чтобы не трогать реальные данные.
+ */
+class HandledUpdateRepositoryTest {
+
+    /** Путь к тестовой базе данных. */
+    static final String DB = "handled_test.db";
+
+    /** Хранилище в тестовой базе. */
+    HandledUpdateRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(DB + suffix).delete();
+        repo = new HandledUpdateRepository(DB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    /** Проверяет, что сохранённые идентификаторы читаются после «перезапуска» по возрастанию. */
+    @Test
+    void shouldSurviveRestart() {
+        repo.saveAll(List.of(12, 10, 11), 100);
+        repo.saveAll(List.of(11, 13), 100);
+        repo.close();
+
+        repo = new HandledUpdateRepository(DB);
+        Assertions.assertEquals(List.of(10, 11, 12, 13), repo.loadLatest(100));
+        Assertions.assertEquals(List.of(12, 13), repo.loadLatest(2));
+    }
+
+    /** Проверяет, что хранятся только последние keep идентификаторов. */
+    @Test
+    void shouldPruneOldIds() {
+        repo.saveAll(List.of(1, 2, 3, 4, 5), 3);
+        repo.saveAll(List.of(6), 3);
+
+        Assertions.assertEquals(List.of(4, 5, 6), repo.loadLatest(100));
+    }
+}
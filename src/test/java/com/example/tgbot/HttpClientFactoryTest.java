@@ -0,0 +1,84 @@
+package org.example;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Тесты для HttpClientFactory.
+ * Проверяют настройки клиентов, общий пул и диспетчер
+ * и счётчики переиспользования соединений.
+ */
+class HttpClientFactoryTest {
+
+    /** Фабрика с небольшими таймаутами и лимитами. */
+    HttpClientFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        factory = new HttpClientFactory(Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(20),
+                4, Duration.ofMinutes(1), 8, 3, true);
+    }
+
+    /** Проверяет, что клиенты Telegram и OpenRouter делят пул и диспетчер, но не таймауты. */
+    @Test
+    void shouldShareResourcesBetweenClients() {
+        OkHttpClient api = factory.forApi();
+        OkHttpClient telegram = factory.forTelegram(30);
+
+        Assertions.assertSame(api.connectionPool(), telegram.connectionPool());
+        Assertions.assertSame(api.dispatcher(), telegram.dispatcher());
+        Assertions.assertEquals(8, api.dispatcher().getMaxRequests());
+        Assertions.assertEquals(3, api.dispatcher().getMaxRequestsPerHost());
+        Assertions.assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), api.protocols());
+
+        Assertions.assertEquals(2_000, api.connectTimeoutMillis());
+        Assertions.assertEquals(20_000, api.callTimeoutMillis());
+        Assertions.assertEquals(5_000, api.readTimeoutMillis());
+        Assertions.assertEquals(0, telegram.callTimeoutMillis());
+        Assertions.assertTrue(telegram.readTimeoutMillis() > 30_000);
+    }
+
+    /** Проверяет, что без HTTP/2 остаётся только HTTP/1.1. */
+    @Test
+    void shouldUseHttp11WhenHttp2Disabled() {
+        HttpClientFactory http11 = new HttpClientFactory(Duration.ofSeconds(2), Duration.ofSeconds(5),
+                Duration.ZERO, 4, Duration.ofMinutes(1), 8, 3, false);
+
+        Assertions.assertEquals(List.of(Protocol.HTTP_1_1), http11.forApi().protocols());
+    }
+
+    /** Проверяет, что повторные запросы к одному серверу идут по уже открытому соединению. */
+    @Test
+    void shouldCountConnectionReuse() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.start();
+        for (int i = 0; i < 5; i++)
+            server.enqueue(new MockResponse().setBody("ok"));
+
+        OkHttpClient api = factory.forApi();
+        OkHttpClient telegram = factory.forTelegram(30);
+        for (int i = 0; i < 5; i++) {
+            OkHttpClient client = i % 2 == 0 ? api : telegram;
+            try (Response r = client.newCall(new Request.Builder().url(server.url("/")).build()).execute()) {
+                Assertions.assertEquals("ok", r.body().string());
+            }
+        }
+
+        HttpClientFactory.Stats stats = factory.stats();
+        Assertions.assertEquals(5, stats.calls());
+        Assertions.assertEquals(1, stats.connectionsOpened());
+        Assertions.assertEquals(5, stats.connectionsAcquired());
+        Assertions.assertEquals(0.8, stats.reuseRate(), 1e-9);
+        Assertions.assertEquals(1, stats.pooled());
+
+        server.shutdown();
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.db;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тесты для класса InMemoryFormStore: общие тесты FormStore
+ * и проверка роста словаря чатов LongMap под параллельной вставкой.
+ */
+class InMemoryFormStoreTest extends FormStoreContract {
+
+    @Override
+    FormStore createStore() {
+        return new InMemoryFormStore();
+    }
+
+    /**
+     * Проверяет, что при росте таблицы из нескольких потоков
+     * ни один ключ не теряется и каждому ключу соответствует одно значение.
+     */
+    @Test
+    void shouldKeepKeysWhileGrowing() throws Exception {
+        LongMap<Long> map = new LongMap<>(1);
+        AtomicInteger created = new AtomicInteger();
+        int threads = 4;
+        int keys = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    for (long k = 0; k < keys; k++) {
+                        Long v = map.computeIfAbsent(k * 31, key -> {
+                            created.incrementAndGet();
+                            return key;
+                        });
+                        Assertions.assertEquals(k * 31, v);
+                    }
+                }));
+            }
+            // get() пробрасывает ошибку проверки из рабочего потока в тест
+            for (Future<?> w : workers)
+                w.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Assertions.assertEquals(keys, map.size());
+        for (long k = 0; k < keys; k++)
+            Assertions.assertEquals(k * 31, map.get(k * 31));
+        Assertions.assertNull(map.get(-1));
+        Assertions.assertTrue(created.get() >= keys);
+    }
+}
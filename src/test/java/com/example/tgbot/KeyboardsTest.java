@@ -2,6 +2,7 @@ package org.example;
 
 import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.model.request.ReplyKeyboardMarkup;
+import org.example.db.NamePage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -63,6 +64,29 @@ class KeyboardsTest {
         Assertions.assertTrue(json.contains("form:Брат"));
     }
 
+    /**
+     * Проверяет, что страница списка анкет содержит кнопки «◀ ▶»
+     * с первым и последним именем страницы в callback.
+     */
+    @Test
+    void shouldCreatePagedFormListKeyboard() {
+        InlineKeyboardMarkup markup = kb.formListPage(new NamePage(List.of("Брат", "Мама"), true, true));
+        String json = markup.toString();
+
+        Assertions.assertTrue(json.contains("form:Брат"));
+        Assertions.assertTrue(json.contains("forms<:Брат"));
+        Assertions.assertTrue(json.contains("forms>:Мама"));
+    }
+
+    /** Проверяет, что на единственной странице нет кнопок навигации. */
+    @Test
+    void shouldOmitNavigationOnSinglePage() {
+        String json = kb.formListPage(new NamePage(List.of("Мама"), false, false)).toString();
+
+        Assertions.assertFalse(json.contains("forms<:"));
+        Assertions.assertFalse(json.contains("forms>:"));
+    }
+
     /**
      * Проверяет, что метод formActions создаёт клавиатуру с действиями над анкетой.
      * Клавиатура должна включать три кнопки:
@@ -0,0 +1,148 @@
+package org.example.db;
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тесты для класса Migrations.
+ * Используют отдельную базу migrations_test.db, которая удаляется после каждого теста.
+ */
+class MigrationsTest {
+
+    /** Путь к тестовой базе. */
+    private static final String PATH = "migrations_test.db";
+
+    /** Подключение к тестовой базе. */
+    Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        deleteFiles();
+        conn = DriverManager.getConnection("jdbc:sqlite:" + PATH);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+        deleteFiles();
+    }
+
+    /** Проверяет, что новая база получает все миграции. */
+    @Test
+    void shouldMigrateEmptyDatabase() throws SQLException {
+        int applied = Migrations.migrate(conn, Migrations.SCHEMA);
+
+        Assertions.assertEquals(Migrations.SCHEMA.size(), applied);
+        Assertions.assertEquals(latest(Migrations.SCHEMA), Migrations.currentVersion(conn));
+        Assertions.assertTrue(exists("table", "forms"));
+        Assertions.assertTrue(exists("table", "chat_states"));
+        Assertions.assertTrue(exists("index", "chat_states_last_access"));
+    }
+
+    /** Проверяет, что при актуальной схеме ничего не выполняется. */
+    @Test
+    void shouldSkipWhenCurrent() throws SQLException {
+        Migrations.migrate(conn, Migrations.SCHEMA);
+
+        Assertions.assertEquals(0, Migrations.migrate(conn, Migrations.SCHEMA));
+        Assertions.assertEquals(Migrations.SCHEMA.size(), count("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    /** Проверяет, что база, созданная до появления миграций, обновляется без потери данных. */
+    @Test
+    void shouldAdoptDatabaseWithoutVersionTable() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(Migrations.SCHEMA.get(0).statements()[0]);
+            st.execute("INSERT INTO forms (chat_id, name) VALUES (1, 'Мама')");
+        }
+
+        Migrations.migrate(conn, Migrations.SCHEMA);
+
+        Assertions.assertEquals(1, count("SELECT COUNT(*) FROM forms"));
+        Assertions.assertEquals(latest(Migrations.SCHEMA), Migrations.currentVersion(conn));
+    }
+
+    /** Проверяет, что новая миграция в конце списка применяется одна. */
+    @Test
+    void shouldApplyOnlyNewMigration() throws SQLException {
+        Migrations.migrate(conn, Migrations.SCHEMA);
+        List<Migrations.Migration> next = new ArrayList<>(Migrations.SCHEMA);
+        next.add(new Migrations.Migration(latest(Migrations.SCHEMA) + 1, "индекс по чату",
+                "CREATE INDEX forms_chat ON forms(chat_id)"));
+
+        Assertions.assertEquals(1, Migrations.migrate(conn, next));
+        Assertions.assertTrue(exists("index", "forms_chat"));
+        Assertions.assertEquals(latest(next), Migrations.currentVersion(conn));
+    }
+
+    /** Проверяет, что ошибочная миграция откатывается целиком. */
+    @Test
+    void shouldRollBackFailedMigration() throws SQLException {
+        Migrations.migrate(conn, Migrations.SCHEMA);
+        List<Migrations.Migration> broken = new ArrayList<>(Migrations.SCHEMA);
+        broken.add(new Migrations.Migration(latest(Migrations.SCHEMA) + 1, "сломанная",
+                "CREATE TABLE extra (id INTEGER)",
+                "CREATE INDEX missing_idx ON missing_table(id)"));
+
+        Assertions.assertThrows(SQLException.class, () -> Migrations.migrate(conn, broken));
+        Assertions.assertFalse(exists("table", "extra"));
+        Assertions.assertEquals(latest(Migrations.SCHEMA), Migrations.currentVersion(conn));
+        Assertions.assertTrue(conn.getAutoCommit());
+    }
+
+    /** Проверяет, что номера миграций должны возрастать. */
+    @Test
+    void shouldRejectUnorderedMigrations() throws SQLException {
+        List<Migrations.Migration> unordered = List.of(
+                new Migrations.Migration(2, "вторая", "CREATE TABLE a (id INTEGER)"),
+                new Migrations.Migration(1, "первая", "CREATE TABLE b (id INTEGER)"),
+                new Migrations.Migration(3, "третья", "CREATE TABLE c (id INTEGER)"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> Migrations.migrate(conn, unordered));
+        Assertions.assertEquals(0, Migrations.currentVersion(conn));
+    }
+
+    /** Проверяет, что Database приводит схему к последней версии. */
+    @Test
+    void shouldMigrateOnDatabaseStart() throws SQLException {
+        try (Database db = new Database("jdbc:sqlite:" + PATH, 1);
+             Connection c = db.getConnection()) {
+            Assertions.assertEquals(latest(Migrations.SCHEMA), Migrations.currentVersion(c));
+        }
+    }
+
+    /** Возвращает номер последней миграции списка. */
+    private static int latest(List<Migrations.Migration> migrations) {
+        return migrations.get(migrations.size() - 1).version();
+    }
+
+    /** Проверяет наличие таблицы или индекса. */
+    private boolean exists(String type, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = ? AND name = ?")) {
+            ps.setString(1, type);
+            ps.setString(2, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Выполняет запрос с одним числом в ответе. */
+    private int count(String sql) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** Удаляет файл тестовой базы вместе с журналами. */
+    private static void deleteFiles() {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"})
+            new File(PATH + suffix).delete();
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.EditMessageText;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.ResponseParameters;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тесты для OutboundScheduler.
+ * Проверяют соблюдение лимита чата, повтор и общую паузу после 429, редактирование заглушки
+ * и частоту промежуточных правок.
+ */
+class OutboundSchedulerTest {
+
+    /** мок Telegram API клиента. */
+    TelegramBot bot;
+
+    /** Планировщик с быстрыми лимитами для тестов. */
+    OutboundScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        bot = Mockito.mock(TelegramBot.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null)
+            scheduler.close();
+    }
+
+    /** Создаёт успешный ответ Telegram с указанным идентификатором сообщения. */
+    private SendResponse ok(int messageId) {
+        SendResponse resp = Mockito.mock(SendResponse.class);
+        Message message = Mockito.mock(Message.class);
+        Mockito.when(resp.isOk()).thenReturn(true);
+        Mockito.when(resp.message()).thenReturn(message);
+        Mockito.when(message.messageId()).thenReturn(messageId);
+        return resp;
+    }
+
+    /** Проверяет, что сообщения одного чата не отправляются чаще лимита чата. */
+    @Test
+    void shouldRespectPerChatRate() throws Exception {
+        SendResponse ok = ok(1);
+        Mockito.when(bot.execute(Mockito.any(SendMessage.class))).thenReturn(ok);
+        scheduler = new OutboundScheduler(bot, 1000, 10, 1, 2);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 4; i++)
+            last = scheduler.submit(new Response(1L, "msg " + i));
+        last.get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // первое сообщение уходит сразу, остальные три — с интервалом 100 мс
+        Assertions.assertTrue(elapsedMs >= 250, "слишком быстро: " + elapsedMs + " мс");
+        Mockito.verify(bot, Mockito.times(4)).execute(Mockito.any(SendMessage.class));
+        Assertions.assertEquals(0, scheduler.queueDepth());
+    }
+
+    /** Проверяет повтор отправки после ответа 429 с retry_after. */
+    @Test
+    void shouldRetryAfterTooManyRequests() throws Exception {
+        SendResponse limited = Mockito.mock(SendResponse.class);
+        ResponseParameters params = Mockito.mock(ResponseParameters.class);
+        Mockito.when(limited.isOk()).thenReturn(false);
+        Mockito.when(limited.errorCode()).thenReturn(429);
+        Mockito.when(limited.parameters()).thenReturn(params);
+        Mockito.when(params.retryAfter()).thenReturn(1);
+        SendResponse ok = ok(1);
+        Mockito.when(bot.execute(Mockito.any(SendMessage.class))).thenReturn(limited, ok);
+        scheduler = new OutboundScheduler(bot, 1000, 1000, 10, 1);
+
+        long start = System.nanoTime();
+        scheduler.submit(new Response(1L, "привет")).get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMs >= 900, "повтор раньше retry_after: " + elapsedMs + " мс");
+        Mockito.verify(bot, Mockito.times(2)).execute(Mockito.any(SendMessage.class));
+    }
+
+    /** Проверяет, что после 429 в одном чате отправка в другие чаты тоже ждёт retry_after. */
+    @Test
+    void shouldPauseAllChatsAfterTooManyRequests() throws Exception {
+        SendResponse limited = Mockito.mock(SendResponse.class);
+        ResponseParameters params = Mockito.mock(ResponseParameters.class);
+        Mockito.when(limited.isOk()).thenReturn(false);
+        Mockito.when(limited.errorCode()).thenReturn(429);
+        Mockito.when(limited.parameters()).thenReturn(params);
+        Mockito.when(params.retryAfter()).thenReturn(1);
+        SendResponse ok = ok(1);
+        Mockito.when(bot.execute(Mockito.any(SendMessage.class))).thenReturn(limited, ok);
+        scheduler = new OutboundScheduler(bot, 1000, 1000, 10, 1);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> first = scheduler.submit(new Response(1L, "привет"));
+        Mockito.verify(bot, Mockito.timeout(5000)).execute(Mockito.any(SendMessage.class));
+        scheduler.submit(new Response(2L, "привет")).get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        first.get(5, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(elapsedMs >= 900, "другой чат не ждал retry_after: " + elapsedMs + " мс");
+        Mockito.verify(bot, Mockito.times(3)).execute(Mockito.any(SendMessage.class));
+    }
+
+    /** Проверяет, что отложенный ответ редактирует отправленную заглушку. */
+    @Test
+    void shouldEditPlaceholderWithFollowUp() throws Exception {
+        SendResponse ok = ok(77);
+        Mockito.when(bot.execute(Mockito.any(BaseRequest.class))).thenReturn(ok);
+        scheduler = new OutboundScheduler(bot, 1000, 1000, 10, 1);
+
+        CompletableFuture<Response> followUp = new CompletableFuture<>();
+        scheduler.submit(new Response(1L, "Генерирую…", null, followUp)).get(5, TimeUnit.SECONDS);
+        followUp.complete(new Response(1L, "Готово"));
+
+        Mockito.verify(bot, Mockito.timeout(5000)).execute(Mockito.any(EditMessageText.class));
+    }
+
+    /**
+     * Проверяет, что промежуточные версии редактируют заглушку не чаще интервала,
+     * а последним редактированием остаётся отложенный ответ.
+     */
+    @Test
+    void shouldThrottleProgressEdits() throws Exception {
+        SendResponse ok = ok(77);
+        Mockito.when(bot.execute(Mockito.any(BaseRequest.class))).thenReturn(ok);
+        scheduler = new OutboundScheduler(bot, 1000, 1000, 10, 1, 200);
+
+        CompletableFuture<Response> followUp = new CompletableFuture<>();
+        ResponseStream progress = new ResponseStream();
+        scheduler.submit(new Response(1L, "Генерирую…", null, followUp, progress)).get(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 50; i++) {
+            progress.publish(new Response(1L, "Идея " + i + " …"));
+            Thread.sleep(10);
+        }
+        followUp.complete(new Response(1L, "Готово"));
+
+        Mockito.verify(bot, Mockito.timeout(5000).atLeast(3)).execute(Mockito.any(BaseRequest.class));
+        Thread.sleep(300);
+        ArgumentCaptor<BaseRequest> requests = ArgumentCaptor.forClass(BaseRequest.class);
+        Mockito.verify(bot, Mockito.atLeast(3)).execute(requests.capture());
+
+        List<EditMessageText> sent = requests.getAllValues().stream()
+                .filter(EditMessageText.class::isInstance)
+                .map(EditMessageText.class::cast)
+                .toList();
+        // 50 версий за ~0.5 с при интервале 200 мс — не больше 4 промежуточных правок
+        Assertions.assertTrue(sent.size() <= 5, "Слишком много правок: " + sent.size());
+        Assertions.assertEquals("Готово", sent.get(sent.size() - 1).getParameters().get("text"));
+    }
+}
@@ -0,0 +1,320 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Тесты для ResilientGiftIdeaGenerator.
+ * Нейросеть заменяет заглушка с настраиваемой задержкой и ошибками.
+ * Проверяют ограничитель, предохранитель и подстройку таймаута,
+ * в том числе таймаут ожидания фрагментов потокового ответа.
+ */
+class ResilientGiftIdeaGeneratorTest {
+
+    /** Заглушка нейросети. */
+    StandIn standIn;
+
+    /** Сдвиг часов предохранителя относительно реального времени (наносекунды). */
+    AtomicLong shift;
+
+    @BeforeEach
+    void setUp() {
+        standIn = new StandIn();
+        shift = new AtomicLong();
+    }
+
+    @AfterEach
+    void tearDown() {
+        standIn.timer.shutdownNow();
+    }
+
+    /** Создаёт защиту с заданным лимитом, окном и таймаутами; предохранитель размыкается на 10 с. */
+    private ResilientGiftIdeaGenerator guard(int maxConcurrent, int window, long minMs, long maxMs) {
+        return new ResilientGiftIdeaGenerator(standIn,
+                new ResilienceOptions(maxConcurrent, window, 0.5, Duration.ofSeconds(10),
+                        Duration.ofMillis(minMs), Duration.ofMillis(maxMs), 2.0),
+                () -> System.nanoTime() + shift.get());
+    }
+
+    /** Проверяет, что лишние одновременные запросы отклоняются сразу. */
+    @Test
+    void shouldRejectOverBulkhead() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(2, 10, 1000, 5000);
+        standIn.latencyMillis = 200;
+
+        CompletableFuture<String> a = guard.fetchGiftIdeasAsync("Мама");
+        CompletableFuture<String> b = guard.fetchGiftIdeasAsync("Папа");
+        CompletableFuture<String> c = guard.fetchGiftIdeasAsync("Брат");
+
+        CompletionException e = Assertions.assertThrows(CompletionException.class, c::join);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        Assertions.assertEquals("идеи: Мама", a.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("идеи: Папа", b.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, standIn.calls.get());
+
+        Assertions.assertEquals("идеи: Брат", guard.fetchGiftIdeas("Брат"));
+        Assertions.assertEquals(1, guard.stats().bulkheadRejected());
+    }
+
+    /** Проверяет, что при доле ошибок выше порога запросы отклоняются без обращения к API. */
+    @Test
+    void shouldOpenCircuitOnFailures() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 4, 1000, 5000);
+        standIn.failEvery = 2;
+        for (int i = 0; i < 4; i++) {
+            try {
+                guard.fetchGiftIdeas("Мама");
+            } catch (IOException expected) {
+                // половина запросов сбоит
+            }
+        }
+        Assertions.assertEquals(ResilientGiftIdeaGenerator.State.OPEN, guard.stats().state());
+
+        long started = System.nanoTime();
+        Assertions.assertThrows(RejectedExecutionException.class, () -> guard.fetchGiftIdeas("Мама"));
+        Assertions.assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertEquals(4, standIn.calls.get());
+        Assertions.assertEquals(1, guard.stats().circuitRejected());
+    }
+
+    /** Проверяет пробный запрос: успех замыкает предохранитель, ошибка снова размыкает. */
+    @Test
+    void shouldProbeAfterOpenDuration() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 2, 1000, 5000);
+        standIn.failEvery = 1;
+        for (int i = 0; i < 2; i++)
+            Assertions.assertThrows(IOException.class, () -> guard.fetchGiftIdeas("Мама"));
+        Assertions.assertEquals(ResilientGiftIdeaGenerator.State.OPEN, guard.stats().state());
+
+        shift.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        Assertions.assertThrows(IOException.class, () -> guard.fetchGiftIdeas("Мама"));
+        Assertions.assertEquals(ResilientGiftIdeaGenerator.State.OPEN, guard.stats().state());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> guard.fetchGiftIdeas("Мама"));
+
+        shift.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        standIn.failEvery = 0;
+        Assertions.assertEquals("идеи: Мама", guard.fetchGiftIdeas("Мама"));
+        Assertions.assertEquals(ResilientGiftIdeaGenerator.State.CLOSED, guard.stats().state());
+        Assertions.assertEquals(4, standIn.calls.get());
+    }
+
+    /** Проверяет, что пока предохранитель полуоткрыт, пробный запрос один. */
+    @Test
+    void shouldAllowSingleTrial() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 1, 1000, 5000);
+        standIn.failEvery = 1;
+        Assertions.assertThrows(IOException.class, () -> guard.fetchGiftIdeas("Мама"));
+
+        shift.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        standIn.failEvery = 0;
+        standIn.latencyMillis = 100;
+        CompletableFuture<String> trial = guard.fetchGiftIdeasAsync("Мама");
+        CompletableFuture<String> other = guard.fetchGiftIdeasAsync("Папа");
+
+        Assertions.assertThrows(CompletionException.class, other::join);
+        Assertions.assertEquals("идеи: Мама", trial.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, standIn.calls.get());
+    }
+
+    /** Проверяет, что медленный запрос прерывается по таймауту, а генератор отменяется. */
+    @Test
+    void shouldTimeOutSlowCall() {
+        ResilientGiftIdeaGenerator guard = guard(8, 10, 50, 100);
+        standIn.latencyMillis = 2000;
+
+        long started = System.nanoTime();
+        Assertions.assertThrows(TimeoutException.class, () -> guard.fetchGiftIdeas("Мама"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Assertions.assertTrue(elapsed < 1000, "Таймаут сработал через " + elapsed + " мс");
+        Assertions.assertTrue(standIn.last.isCancelled());
+        Assertions.assertEquals(1, guard.stats().timeouts());
+    }
+
+    /**
+     * Проверяет, что таймаут подстраивается под 99-й перцентиль задержки:
+     * после быстрых ответов медленный запрос обрывается задолго до верхней границы.
+     */
+    @Test
+    void shouldAdaptTimeoutToP99() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 100, 30, 3000);
+        Assertions.assertEquals(3000, guard.timeoutMillis());
+
+        standIn.latencyMillis = 10;
+        for (int i = 0; i < 25; i++)
+            guard.fetchGiftIdeas("Мама");
+        long adapted = guard.timeoutMillis();
+        Assertions.assertTrue(adapted >= 30 && adapted < 500, "Таймаут " + adapted + " мс");
+
+        standIn.latencyMillis = 2000;
+        long started = System.nanoTime();
+        Assertions.assertThrows(TimeoutException.class, () -> guard.fetchGiftIdeas("Мама"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        Assertions.assertTrue(elapsed < 1000, "Таймаут сработал через " + elapsed + " мс");
+    }
+
+    /** Проверяет, что поток длиннее таймаута не обрывается, пока фрагменты приходят вовремя. */
+    @Test
+    void shouldExtendStreamTimeoutOnEachPartial() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 10, 50, 300);
+        standIn.latencyMillis = 100;
+        standIn.chunks = 10;
+        List<String> partials = new CopyOnWriteArrayList<>();
+
+        String ideas = guard.streamGiftIdeas("Мама", partials::add).get(5, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("идеи: Мама", ideas);
+        Assertions.assertEquals(10, partials.size());
+        Assertions.assertEquals(0, guard.stats().timeouts());
+    }
+
+    /** Проверяет, что поток обрывается, если фрагмент не пришёл за таймаут. */
+    @Test
+    void shouldTimeOutStalledStream() {
+        ResilientGiftIdeaGenerator guard = guard(8, 10, 50, 100);
+        standIn.latencyMillis = 2000;
+        standIn.chunks = 3;
+
+        long started = System.nanoTime();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> guard.streamGiftIdeas("Мама", text -> { }).get(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+        Assertions.assertTrue(elapsed < 1000, "Таймаут сработал через " + elapsed + " мс");
+        Assertions.assertTrue(standIn.last.isCancelled());
+    }
+
+    /** Проверяет, что быстрые обычные запросы не укорачивают таймаут потоковых. */
+    @Test
+    void shouldKeepStreamLatenciesApart() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(8, 100, 30, 3000);
+        standIn.latencyMillis = 10;
+        for (int i = 0; i < 25; i++)
+            guard.fetchGiftIdeas("Мама");
+        Assertions.assertTrue(guard.timeoutMillis() < 500, "Таймаут " + guard.timeoutMillis() + " мс");
+        Assertions.assertEquals(3000, guard.streamTimeoutMillis());
+
+        standIn.latencyMillis = 200;
+        standIn.chunks = 2;
+        Assertions.assertEquals("идеи: Мама",
+                guard.streamGiftIdeas("Мама", text -> { }).get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(guard.stats().streamP99Millis() >= 150);
+    }
+
+    /**
+     * Проверяет, что ожидание первого фрагмента учитывается отдельно от пауз:
+     * быстрые паузы не укорачивают таймаут первого фрагмента.
+     */
+    @Test
+    void shouldTimeFirstFragmentApartFromGaps() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(32, 100, 30, 3000);
+        standIn.firstChunkMillis = 150;
+        standIn.latencyMillis = 5;
+        standIn.chunks = 5;
+        List<CompletableFuture<String>> streams = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            streams.add(guard.streamGiftIdeas("Мама", text -> { }));
+        for (CompletableFuture<String> s : streams)
+            Assertions.assertEquals("идеи: Мама", s.get(5, TimeUnit.SECONDS));
+
+        ResilientGiftIdeaGenerator.Stats stats = guard.stats();
+        Assertions.assertTrue(stats.firstTokenP99Millis() >= 140, stats.toString());
+        Assertions.assertTrue(guard.firstTokenTimeoutMillis() >= 280, stats.toString());
+        Assertions.assertTrue(guard.streamTimeoutMillis() < 150, stats.toString());
+
+        Assertions.assertEquals("идеи: Мама", guard.streamGiftIdeas("Мама", text -> { }).get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, guard.stats().timeouts());
+    }
+
+    /** Проверяет, что медленная и сбоящая нейросеть не задерживает остальные запросы. */
+    @Test
+    void shouldFailFastUnderDegradation() throws Exception {
+        ResilientGiftIdeaGenerator guard = guard(4, 8, 50, 200);
+        standIn.latencyMillis = 1000;
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int i = 0; i < 40; i++) {
+            results.add(guard.fetchGiftIdeasAsync("Мама " + i));
+            Thread.sleep(10);
+        }
+        for (CompletableFuture<String> r : results)
+            Assertions.assertThrows(ExecutionException.class, () -> r.get(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        ResilientGiftIdeaGenerator.Stats stats = guard.stats();
+        Assertions.assertTrue(standIn.calls.get() < 40, "Запросов к API: " + standIn.calls.get() + ", " + stats);
+        Assertions.assertTrue(elapsed < 2000, "Все ответы получены через " + elapsed + " мс");
+    }
+
+    /** Заглушка нейросети с настраиваемой задержкой и долей ошибок. */
+    static class StandIn implements GiftIdeaGenerator {
+        /** Поток, завершающий ответы после задержки. */
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+        /** Число обращений. */
+        final AtomicInteger calls = new AtomicInteger();
+
+        /** Задержка ответа. */
+        volatile long latencyMillis;
+
+        /** Каждое failEvery-е обращение сбоит (0 — без ошибок). */
+        volatile int failEvery;
+
+        /** Число фрагментов потокового ответа; каждый приходит через latencyMillis. */
+        volatile int chunks;
+
+        /** Ожидание первого фрагмента (0 — как у остальных, latencyMillis). */
+        volatile long firstChunkMillis;
+
+        /** Future последнего обращения. */
+        volatile CompletableFuture<String> last;
+
+        @Override
+        public String fetchGiftIdeas(String prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+            int n = calls.incrementAndGet();
+            boolean fail = failEvery > 0 && n % failEvery == 0;
+            CompletableFuture<String> result = new CompletableFuture<>();
+            last = result;
+            timer.schedule(() -> {
+                if (fail)
+                    result.completeExceptionally(new IOException("сбой"));
+                else
+                    result.complete("идеи: " + prompt);
+            }, latencyMillis, TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+            calls.incrementAndGet();
+            CompletableFuture<String> result = new CompletableFuture<>();
+            last = result;
+            long first = firstChunkMillis > 0 ? firstChunkMillis : latencyMillis;
+            for (int i = 1; i <= chunks; i++) {
+                int chunk = i;
+                timer.schedule(() -> {
+                    if (result.isDone())
+                        return;
+                    onPartial.accept("фрагмент " + chunk);
+                    if (chunk == chunks)
+                        result.complete("идеи: " + prompt);
+                }, first + latencyMillis * (chunk - 1), TimeUnit.MILLISECONDS);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-замер Router в сравнении с цепочкой startsWith, которая была в BotLogic.
+ * Запускается профилем bench: mvn -Pbench test -Djmh.include=RouterBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    /** Данные кнопки или команда, которую нужно разобрать. */
+    @Param({"form:Мама", "editfield:Мама:age", "deleteok:Мама", "idea:Мама", "forms:list"})
+    public String input;
+
+    /** Маршрутизатор с теми же префиксами, что и у кнопок бота. */
+    private Router<String> router;
+
+    @Setup
+    public void setUp() {
+        router = new Router<String>()
+                .exact("forms:list", (id, in, at) -> in)
+                .prefix("form:", (id, in, at) -> in.substring(at))
+                .prefix("edit:", (id, in, at) -> in.substring(at))
+                .prefix("editfield:", (id, in, at) -> in.substring(at))
+                .prefix("delete:", (id, in, at) -> in.substring(at))
+                .prefix("deleteok:", (id, in, at) -> in.substring(at))
+                .prefix("idea:", (id, in, at) -> in.substring(at));
+    }
+
+    /** Выбор обработчика через Router. */
+    @Benchmark
+    public String router() {
+        return router.route(1, input);
+    }
+
+    /** Выбор обработчика цепочкой startsWith. */
+    @Benchmark
+    public String startsWithChain() {
+        return chain(input);
+    }
+
+    /** Цепочка startsWith в том виде, в каком она была в BotLogic. */
+    private static String chain(String data) {
+        if (data.startsWith("form:")) return data.substring(5);
+        if (data.startsWith("edit:")) return data.substring(5);
+        if (data.startsWith("editfield:")) return data.split(":", 3)[2];
+        if (data.startsWith("delete:")) return data.substring(7);
+        if (data.startsWith("deleteok:")) return data.substring(9);
+        if (data.startsWith("idea:")) return data.substring(5);
+        if (data.equals("forms:list")) return data;
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для Router.
+ * Проверяют выбор маршрута. Скорость в сравнении с цепочкой startsWith
+ * измеряет JMH-замер RouterBenchmark.
+ */
+class RouterTest {
+
+    /** Маршрутизатор с теми же префиксами, что и у кнопок бота. */
+    Router<String> router;
+
+    @BeforeEach
+    void setUp() {
+        router = new Router<String>()
+                .exact("forms:list", (id, in, at) -> "list")
+                .exact("/help", (id, in, at) -> "help")
+                .prefix("form:", (id, in, at) -> "form " + in.substring(at))
+                .prefix("edit:", (id, in, at) -> "edit " + in.substring(at))
+                .prefix("editfield:", (id, in, at) -> "editfield " + in.substring(at))
+                .prefix("delete:", (id, in, at) -> "delete " + in.substring(at))
+                .prefix("deleteok:", (id, in, at) -> "deleteok " + in.substring(at))
+                .prefix("idea:", (id, in, at) -> "idea " + in.substring(at));
+    }
+
+    /** Проверяет выбор точных команд и префиксов. */
+    @Test
+    void shouldRouteExactAndPrefix() {
+        Assertions.assertEquals("list", router.route(1, "forms:list"));
+        Assertions.assertEquals("help", router.route(1, "/help"));
+        Assertions.assertEquals("form Мама", router.route(1, "form:Мама"));
+        Assertions.assertEquals("delete Мама", router.route(1, "delete:Мама"));
+        Assertions.assertEquals("deleteok Мама", router.route(1, "deleteok:Мама"));
+        Assertions.assertEquals("editfield Мама:age", router.route(1, "editfield:Мама:age"));
+        Assertions.assertEquals("idea a:b", router.route(1, "idea:a:b"));
+    }
+
+    /** Проверяет, что неизвестные данные не попадают ни в один маршрут. */
+    @Test
+    void shouldReturnNullForUnknown() {
+        Assertions.assertNull(router.route(1, "forms:other"));
+        Assertions.assertNull(router.route(1, "form"));
+        Assertions.assertNull(router.route(1, "unknown:x"));
+        Assertions.assertNull(router.route(1, ""));
+    }
+
+    /** Проверяет, что таблица префиксов растёт без потери маршрутов. */
+    @Test
+    void shouldKeepRoutesAfterGrowth() {
+        Router<String> big = new Router<>();
+        for (int i = 0; i < 100; i++) {
+            String p = "p" + i + ":";
+            big.prefix(p, (id, in, at) -> p + in.substring(at));
+        }
+        for (int i = 0; i < 100; i++)
+            Assertions.assertEquals("p" + i + ":x", big.route(1, "p" + i + ":x"));
+    }
+
+    /** Проверяет, что префикс без завершающего двоеточия не принимается. */
+    @Test
+    void shouldRejectMalformedPrefix() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Router<String>().prefix("form", (id, in, at) -> ""));
+    }
+}
@@ -0,0 +1,68 @@
+package org.example;
+
+import org.example.db.SessionSnapshotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Замер SessionPersister: время восстановления миллиона незавершённых опросов.
+ * Использует отдельную базу sessions_bench.db.
+ * Запускается профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class SessionPersisterBenchmark {
+
+    /** Путь к базе замера. */
+    static final String DB = "sessions_bench.db";
+
+    /** Хранилище снимков в базе замера. */
+    SessionSnapshotRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        new File(DB).delete();
+        repo = new SessionSnapshotRepository(DB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"})
+            new File(DB + suffix).delete();
+    }
+
+    /** Записывает миллион снимков и выводит время их восстановления. */
+    @Test
+    void measureBulkRestore() {
+        int total = 1_000_000;
+        long now = System.currentTimeMillis();
+        Map<Long, SessionSnapshotRepository.Snapshot> batch = new HashMap<>();
+        for (long chat = 0; chat < total; chat++) {
+            ChatState state = new ChatState(chat, now);
+            state.startSurvey();
+            state.acceptName("Анкета " + chat);
+            batch.put(chat, new SessionSnapshotRepository.Snapshot(state.toBytes(), now));
+            if (batch.size() == 100_000) {
+                repo.saveAll(batch, List.of());
+                batch.clear();
+            }
+        }
+
+        ChatStateStore store = new ChatStateStore(Duration.ofDays(1), total);
+        long start = System.nanoTime();
+        int restored = new SessionPersister(store, repo).restore();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Assertions.assertEquals(total, restored);
+        System.out.printf("Восстановление %d сессий: %d мс%n", total, elapsedMs);
+    }
+}
@@ -0,0 +1,140 @@
+package org.example;
+
+import org.example.db.SessionSnapshotRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тесты для SessionPersister и двоичного снимка ChatState.
+ * Используют отдельную базу sessions_test.db, чтобы не трогать реальные данные.
+ * Время восстановления миллиона сессий измеряет SessionPersisterBenchmark.
+ */
+class SessionPersisterTest {
+
+    /** Путь к тестовой базе данных. */
+    static final String DB = "sessions_test.db";
+
+    /** Хранилище снимков в тестовой базе. */
+    SessionSnapshotRepository repo;
+
+    /** Перед каждым тестом создаётся пустая база. */
+    @BeforeEach
+    void setUp() {
+        new File(DB).delete();
+        repo = new SessionSnapshotRepository(DB);
+    }
+
+    /** Проверяет, что снимок опроса восстанавливается без потерь. */
+    @Test
+    void shouldRoundTripSurveyState() {
+        ChatState state = new ChatState(7L, 123L);
+        state.startSurvey();
+        state.acceptName("Мама");
+        state.getSession().setWho("мама");
+        state.getSession().setAge(45);
+        state.getSession().setStep(BotLogic.Step.HOBBIES);
+        state.startEdit("Папа", "budget");
+
+        ChatState copy = ChatState.fromBytes(7L, state.toBytes());
+
+        Assertions.assertEquals(123L, copy.lastAccess());
+        Assertions.assertFalse(copy.isAwaitingName());
+        Assertions.assertEquals(BotLogic.Step.HOBBIES, copy.getSession().getStep());
+        Assertions.assertEquals("мама", copy.getSession().getWho());
+        Assertions.assertEquals(45, copy.getSession().getAge());
+        Assertions.assertNull(copy.getSession().getBudget());
+        Assertions.assertTrue(copy.isEditing());
+        String[] edit = copy.finishEdit();
+        Assertions.assertEquals("Папа", edit[0]);
+        Assertions.assertEquals("budget", edit[1]);
+        Assertions.assertEquals("Мама", copy.finishSurvey());
+    }
+
+    /** Проверяет, что снимок не застаёт ответ опроса записанным наполовину. */
+    @Test
+    void shouldSnapshotAnswerAtomically() throws Exception {
+        ChatState state = new ChatState(7L, 123L);
+        state.startSurvey();
+        state.acceptName("Мама");
+        int answers = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                for (int i = 0; i < answers; i++) {
+                    int answer = i;
+                    state.updateSession(s -> {
+                        s.setWho("ответ" + answer);
+                        s.setAge(answer);
+                        return null;
+                    });
+                }
+            });
+            Future<?> reader = pool.submit(() -> {
+                while (!writer.isDone()) {
+                    BotLogic.Session copy = ChatState.fromBytes(7L, state.toBytes()).getSession();
+                    if (copy.getAge() != null)
+                        Assertions.assertEquals("ответ" + copy.getAge(), copy.getWho());
+                }
+            });
+            writer.get(10, TimeUnit.SECONDS);
+            reader.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Проверяет, что незавершённый опрос переживает «перезапуск». */
+    @Test
+    void shouldRestoreSessionsAfterRestart() {
+        ChatStateStore before = new ChatStateStore();
+        SessionPersister persister = new SessionPersister(before, repo);
+        before.getOrCreate(1L).startSurvey();
+        before.get(1L).acceptName("Мама");
+        before.getOrCreate(2L).startEdit("Брат", "age");
+        persister.flush();
+
+        ChatStateStore after = new ChatStateStore();
+        int restored = new SessionPersister(after, repo).restore();
+
+        Assertions.assertEquals(2, restored);
+        Assertions.assertEquals(BotLogic.Step.WHO, after.get(1L).getSession().getStep());
+        Assertions.assertTrue(after.get(2L).isEditing());
+    }
+
+    /** Проверяет, что завершённая сессия удаляется из базы при следующем сохранении. */
+    @Test
+    void shouldDeleteFinishedSessions() {
+        ChatStateStore store = new ChatStateStore();
+        SessionPersister persister = new SessionPersister(store, repo);
+        store.getOrCreate(1L).startEdit("Мама", "age");
+        persister.flush();
+
+        store.get(1L).finishEdit();
+        store.removeIfEmpty(1L);
+        persister.flush();
+
+        Assertions.assertEquals(0, new SessionPersister(new ChatStateStore(), repo).restore());
+    }
+
+    /** Проверяет, что устаревшие снимки не восстанавливаются. */
+    @Test
+    void shouldSkipExpiredSnapshots() {
+        ChatState old = new ChatState(1L, System.currentTimeMillis() - Duration.ofDays(2).toMillis());
+        old.startSurvey();
+        repo.saveAll(Map.of(1L, new SessionSnapshotRepository.Snapshot(old.toBytes(), old.lastAccess())), List.of());
+
+        ChatStateStore store = new ChatStateStore(Duration.ofDays(1), 100);
+        Assertions.assertEquals(0, new SessionPersister(store, repo).restore());
+        Assertions.assertEquals(0, store.size());
+    }
+}
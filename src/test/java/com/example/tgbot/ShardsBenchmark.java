@@ -0,0 +1,59 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Замеры записи анкет в несколько файлов базы на отдельных файлах shards_bench*.db.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class ShardsBenchmark {
+
+    /** Удаляет файлы баз замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith("shards_bench"));
+        if (files != null)
+            for (File f : files)
+                f.delete();
+    }
+
+    /** Сравнивает скорость отложенной записи в один и в четыре файла. */
+    @Test
+    void measureShardedWriteThroughput() throws Exception {
+        double one = measureWrites(1);
+        double four = measureWrites(4);
+        System.out.printf("Запись анкет: 1 файл %.0f оп/с, 4 файла %.0f оп/с%n", one, four);
+        Assertions.assertTrue(one > 0 && four > 0);
+    }
+
+    /** Пишет анкеты из 8 потоков с отложенной записью и возвращает число операций в секунду. */
+    private static double measureWrites(int shards) throws Exception {
+        int threads = 8;
+        int perThread = 2000;
+        try (WriteBehindFormRepository repo = new WriteBehindFormRepository("shards_bench_w" + shards + ".db",
+                shards, 1, StorageProfile.defaults(), null, 64, Duration.ofMillis(2))) {
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        repo.upsert(new UserForm(seed * 1000L + i % 100, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers)
+                w.join();
+            repo.flush();
+            return threads * perThread / ((System.nanoTime() - start) / 1e9);
+        }
+    }
+}
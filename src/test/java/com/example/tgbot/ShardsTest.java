@@ -0,0 +1,112 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Тесты для хранения анкет в нескольких файлах базы и утилиты Reshard.
+ * Используют отдельные файлы shards_test*.db и удаляют их после себя.
+ * Скорость записи в один и в несколько файлов измеряет ShardsBenchmark.
+ */
+class ShardsTest {
+
+    /** Удаляет файлы тестовых баз вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith("shards_test"));
+        if (files != null)
+            for (File f : files)
+                f.delete();
+    }
+
+    /** Проверяет, что номер файла стабилен и покрывает все файлы. */
+    @Test
+    void shouldSpreadChatsStably() {
+        Set<Integer> used = new HashSet<>();
+        for (long chatId = 0; chatId < 1000; chatId++) {
+            int shard = Shards.shardOf(chatId, 4);
+            Assertions.assertEquals(shard, Shards.shardOf(chatId, 4));
+            used.add(shard);
+        }
+        Assertions.assertEquals(Set.of(0, 1, 2, 3), used);
+        Assertions.assertEquals(0, Shards.shardOf(-42L, 1));
+    }
+
+    /** Проверяет имена файлов. */
+    @Test
+    void shouldNameShardFiles() {
+        Assertions.assertEquals("forms.db", Shards.path("forms.db", 0, 1));
+        Assertions.assertEquals("forms.2.db", Shards.path("forms.db", 2, 4));
+        Assertions.assertEquals("data/forms.1", Shards.path("data/forms", 1, 2));
+    }
+
+    /** Проверяет, что анкеты читаются из того файла, в который записаны. */
+    @Test
+    void shouldReadBackFromShards() {
+        try (FormRepository repo = new FormRepository("shards_test.db", 3, 1, StorageProfile.defaults(), null)) {
+            for (long chatId = 1; chatId <= 30; chatId++)
+                repo.upsert(new UserForm(chatId, "Мама", "мама", "ДР", 40, "сад", (int) chatId));
+            for (long chatId = 1; chatId <= 30; chatId++)
+                Assertions.assertEquals((int) chatId, repo.get(chatId, "Мама").budget);
+        }
+        for (int i = 0; i < 3; i++)
+            Assertions.assertTrue(new File(Shards.path("shards_test.db", i, 3)).exists());
+    }
+
+    /** Проверяет перенос анкет из одного файла в несколько. */
+    @Test
+    void shouldReshardExistingDatabase() {
+        try (FormRepository single = new FormRepository("shards_test_src.db", 1)) {
+            for (long chatId = 1; chatId <= 500; chatId++)
+                single.upsert(new UserForm(chatId, "Анкета", "друг", "ДР", chatId % 2 == 0 ? null : 30, "книги", 1000));
+        }
+
+        long moved = Reshard.migrate("shards_test_src.db", "shards_test.db", 4);
+
+        Assertions.assertEquals(500, moved);
+        try (FormRepository sharded = new FormRepository("shards_test.db", 4, 1, StorageProfile.defaults(), null)) {
+            for (long chatId = 1; chatId <= 500; chatId++)
+                Assertions.assertNotNull(sharded.get(chatId, "Анкета"), "Анкета чата " + chatId);
+            Assertions.assertEquals(500, Reshard.migrate("shards_test_src.db", "shards_test.db", 4));
+        }
+    }
+
+    /** Проверяет, что нельзя переносить базу саму в себя. */
+    @Test
+    void shouldRejectReshardIntoSource() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> Reshard.migrate("shards_test.db", "shards_test.db", 1));
+    }
+
+    /** Проверяет, что отложенная запись в несколько файлов доносит до базы анкеты из всех потоков. */
+    @Test
+    void shouldPersistConcurrentShardedWrites() throws Exception {
+        int threads = 4;
+        int perThread = 200;
+        try (WriteBehindFormRepository repo = new WriteBehindFormRepository("shards_test_w.db",
+                4, 1, StorageProfile.defaults(), null, 64, Duration.ofMillis(2))) {
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++)
+                        repo.upsert(new UserForm(seed * 1000L + i % 20, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers)
+                w.join();
+            repo.flush();
+        }
+        try (FormRepository stored = new FormRepository("shards_test_w.db", 4, 1, StorageProfile.defaults(), null)) {
+            for (int t = 0; t < threads; t++)
+                for (long chat = t * 1000L; chat < t * 1000L + 20; chat++)
+                    Assertions.assertEquals(perThread / 20, stored.listNames(chat).size(), "Анкеты чата " + chat);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.example;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Тесты для SingleFlightGiftIdeaGenerator.
+ * Проверяют, что одновременные одинаковые запросы делят один вызов,
+ * его результат, ошибку и промежуточный текст, а завершённый запрос
+ * не переиспользуется.
+ */
+class SingleFlightGiftIdeaGeneratorTest {
+
+    /** Генератор-заглушка, отвечающий только после release. */
+    BlockingGenerator generator;
+
+    /** Проверяемая обёртка. */
+    SingleFlightGiftIdeaGenerator flights;
+
+    /** Потоки для одновременных вызовов. */
+    ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        generator = new BlockingGenerator();
+        flights = new SingleFlightGiftIdeaGenerator(generator);
+        pool = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /** Проверяет, что одновременные вызовы получают результат одного запроса. */
+    @Test
+    void shouldShareInFlightResult() throws Exception {
+        List<Future<String>> results = callConcurrently(16, "Подарок для мамы");
+        waitCoalesced(15);
+        generator.release.complete(null);
+
+        for (Future<String> r : results)
+            Assertions.assertEquals("идеи: Подарок для мамы", r.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, generator.calls.get());
+        Assertions.assertEquals(1, flights.calls());
+    }
+
+    /** Проверяет, что ошибка запроса достаётся всем ожидающим. */
+    @Test
+    void shouldShareInFlightError() throws Exception {
+        generator.fail = true;
+        List<Future<String>> results = callConcurrently(8, "Папа");
+        waitCoalesced(7);
+        generator.release.complete(null);
+
+        for (Future<String> r : results) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                    () -> r.get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(IOException.class, e.getCause());
+        }
+        Assertions.assertEquals(1, generator.calls.get());
+    }
+
+    /** Проверяет, что после завершения запрос выполняется заново. */
+    @Test
+    void shouldForgetCompletedFlight() throws Exception {
+        generator.release.complete(null);
+        flights.fetchGiftIdeas("Брат");
+        flights.fetchGiftIdeas(" брат ");
+
+        Assertions.assertEquals(2, generator.calls.get());
+        Assertions.assertEquals(0, flights.coalesced());
+    }
+
+    /** Проверяет, что отмена одной копии не отменяет общий запрос. */
+    @Test
+    void shouldNotCancelSharedFlight() throws Exception {
+        CompletableFuture<String> first = flights.fetchGiftIdeasAsync("Сестра");
+        CompletableFuture<String> second = flights.fetchGiftIdeasAsync("Сестра");
+        first.cancel(true);
+        generator.release.complete(null);
+
+        Assertions.assertEquals("идеи: Сестра", second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, generator.calls.get());
+    }
+
+    /** Проверяет, что присоединившийся вызов получает уже пришедший и следующий текст. */
+    @Test
+    void shouldSharePartialText() throws Exception {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        List<Consumer<String>> sinks = new ArrayList<>();
+        SingleFlightGiftIdeaGenerator streaming = new SingleFlightGiftIdeaGenerator(new GiftIdeaGenerator() {
+            @Override
+            public String fetchGiftIdeas(String prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<String> streamGiftIdeas(String prompt, Consumer<String> onPartial) {
+                sinks.add(onPartial);
+                return result;
+            }
+        });
+
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        CompletableFuture<String> a = streaming.streamGiftIdeas("Мама", first::add);
+        sinks.get(0).accept("Кни");
+        CompletableFuture<String> b = streaming.streamGiftIdeas("Мама", second::add);
+        sinks.get(0).accept("Книга");
+        result.complete("Книга");
+
+        Assertions.assertEquals(1, sinks.size());
+        Assertions.assertEquals(List.of("Кни", "Книга"), first);
+        Assertions.assertEquals(List.of("Кни", "Книга"), second);
+        Assertions.assertEquals("Книга", a.join());
+        Assertions.assertEquals("Книга", b.join());
+    }
+
+    /**
+     * Нагрузочная проверка: много потоков вызывают несколько одинаковых
+     * запросов в нескольких раундах. Каждый получает свой ответ, а число
+     * запросов к генератору не больше числа раундов на ключ.
+     */
+    @Test
+    void shouldCoalesceUnderContention() throws Exception {
+        generator.release.complete(null);
+        generator.delayMillis = 20;
+        int rounds = 20;
+        int threads = 16;
+        String[] prompts = {"Мама", "Папа", "Брат", "Сестра"};
+
+        for (int round = 0; round < rounds; round++) {
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Future<String>> results = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String prompt = prompts[t % prompts.length];
+                expected.add("идеи: " + prompt);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return flights.fetchGiftIdeas(prompt);
+                }));
+            }
+            for (int i = 0; i < threads; i++)
+                Assertions.assertEquals(expected.get(i), results.get(i).get(10, TimeUnit.SECONDS));
+        }
+
+        long total = (long) rounds * threads;
+        Assertions.assertEquals(total, flights.calls() + flights.coalesced());
+        Assertions.assertTrue(generator.calls.get() <= rounds * prompts.length * 2,
+                "Слишком много запросов: " + generator.calls.get());
+    }
+
+    /** Запускает count одновременных вызовов с одним запросом. */
+    private List<Future<String>> callConcurrently(int count, String prompt) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            results.add(pool.submit(() -> flights.fetchGiftIdeas(prompt)));
+        return results;
+    }
+
+    /** Ждёт, пока к запросу присоединятся expected вызовов. */
+    private void waitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flights.coalesced() < expected && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        Assertions.assertEquals(expected, flights.coalesced());
+    }
+
+    /** Генератор-заглушка, который отвечает после release и считает обращения. */
+    static class BlockingGenerator implements GiftIdeaGenerator {
+        /** Число обращений. */
+        final AtomicInteger calls = new AtomicInteger();
+
+        /** Завершается, когда генератору разрешено ответить. */
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+
+        /** Завершать ли запросы ошибкой. */
+        volatile boolean fail;
+
+        /** Дополнительная задержка ответа. */
+        volatile long delayMillis;
+
+        @Override
+        public String fetchGiftIdeas(String prompt) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> fetchGiftIdeasAsync(String prompt) {
+            calls.incrementAndGet();
+            return release.thenApplyAsync(ignored -> {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (fail)
+                    throw new CompletionException(new IOException("сбой"));
+                return "идеи: " + prompt;
+            });
+        }
+    }
+}
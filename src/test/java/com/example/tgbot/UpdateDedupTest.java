@@ -0,0 +1,47 @@
+package org.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для UpdateDedup.
+ * Проверяют запоминание update_id и вытеснение самых старых записей.
+ */
+class UpdateDedupTest {
+
+    /** Проверяет, что добавленный идентификатор распознаётся как обработанный. */
+    @Test
+    void shouldRememberAddedIds() {
+        UpdateDedup dedup = new UpdateDedup(4);
+        dedup.add(10);
+        dedup.add(11);
+
+        Assertions.assertTrue(dedup.contains(10));
+        Assertions.assertTrue(dedup.contains(11));
+        Assertions.assertFalse(dedup.contains(12));
+    }
+
+    /** Проверяет, что при переполнении вытесняется самый старый идентификатор. */
+    @Test
+    void shouldEvictOldestWhenFull() {
+        UpdateDedup dedup = new UpdateDedup(3);
+        for (int id = 1; id <= 4; id++)
+            dedup.add(id);
+
+        Assertions.assertFalse(dedup.contains(1));
+        Assertions.assertTrue(dedup.contains(2));
+        Assertions.assertTrue(dedup.contains(4));
+    }
+
+    /** Проверяет, что повторное добавление не занимает новую ячейку буфера. */
+    @Test
+    void shouldIgnoreDuplicateAdds() {
+        UpdateDedup dedup = new UpdateDedup(2);
+        dedup.add(1);
+        dedup.add(1);
+        dedup.add(2);
+
+        Assertions.assertTrue(dedup.contains(1));
+        Assertions.assertTrue(dedup.contains(2));
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Тесты для UpdateDispatcher.
+ * Проверяют порядок обработки внутри одного чата и параллельность между чатами.
+ */
+class UpdateDispatcherTest {
+
+    /** Диспетчер с несколькими полосами. */
+    UpdateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new UpdateDispatcher(4, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    /** Проверяет, что задачи одного чата выполняются строго в порядке поступления. */
+    @Test
+    void shouldKeepOrderWithinChat() {
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            futures.add(dispatcher.dispatch(42L, () -> seen.add(n)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (int i = 0; i < 100; i++)
+            Assertions.assertEquals(i, seen.get(i));
+    }
+
+    /** Проверяет, что медленный чат не блокирует другой чат из другой полосы. */
+    @Test
+    void shouldNotBlockOtherChats() throws Exception {
+        long slowChat = 1L;
+        long fastChat = 2L;
+        while (dispatcher.laneOf(fastChat) == dispatcher.laneOf(slowChat))
+            fastChat++;
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = dispatcher.dispatch(slowChat, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<Void> fast = dispatcher.dispatch(fastChat, () -> { });
+
+        fast.get(5, TimeUnit.SECONDS);
+        Assertions.assertFalse(slow.isDone());
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+    }
+
+    /** Проверяет, что ошибка в задаче завершает future исключением и не останавливает полосу. */
+    @Test
+    void shouldSurviveFailingTask() {
+        CompletableFuture<Void> failed = dispatcher.dispatch(7L, () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<Void> next = dispatcher.dispatch(7L, () -> { });
+
+        Assertions.assertThrows(Exception.class, failed::join);
+        Assertions.assertDoesNotThrow(next::join);
+    }
+}
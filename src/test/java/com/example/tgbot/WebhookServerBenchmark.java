@@ -0,0 +1,74 @@
+package org.example;
+
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Замер WebhookServer: отправляет синтетические обновления на локальный endpoint
+ * и выводит число обработанных запросов в секунду.
+ * Запускается профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class WebhookServerBenchmark {
+
+    /** Сервер на свободном порту. */
+    WebhookServer server;
+
+    /** Обновления, полученные сервером. */
+    Queue<Update> received;
+
+    /** HTTP-клиент для отправки запросов. */
+    HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        received = new ConcurrentLinkedQueue<>();
+        server = new WebhookServer(0, "/telegram", "secret", 4, received::add);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /** Отправляет пачку обновлений параллельно и выводит пропускную способность. */
+    @Test
+    void measureRequestsPerSecond() {
+        int total = 1000;
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            String body = """
+                    {"update_id":%d,"message":{"message_id":%d,"date":0,
+                     "chat":{"id":%d,"type":"private"},"text":"msg"}}
+                    """.formatted(i, i, i % 50);
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/telegram"))
+                    .header(WebhookServer.SECRET_HEADER, "secret")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> f : futures)
+            Assertions.assertEquals(200, f.join().statusCode());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Assertions.assertEquals(total, received.size());
+        System.out.printf("Webhook: %d запросов за %.2f с (%.0f запросов/с)%n", total, seconds, total / seconds);
+    }
+}
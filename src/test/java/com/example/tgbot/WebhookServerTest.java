@@ -0,0 +1,110 @@
+package org.example;
+
+import com.pengrad.telegrambot.model.Update;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Тесты для WebhookServer.
+ * Отправляют синтетические обновления на локальный endpoint.
+ * Число запросов в секунду измеряет WebhookServerBenchmark.
+ */
+class WebhookServerTest {
+
+    /** Сервер на свободном порту. */
+    WebhookServer server;
+
+    /** Обновления, полученные сервером. */
+    Queue<Update> received;
+
+    /** HTTP-клиент для отправки запросов. */
+    HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        received = new ConcurrentLinkedQueue<>();
+        server = new WebhookServer(0, "/telegram", "secret", 4, received::add);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /** Формирует JSON текстового сообщения в формате Telegram. */
+    private static String updateJson(int updateId, long chatId, String text) {
+        return """
+                {"update_id":%d,"message":{"message_id":%d,"date":0,
+                 "chat":{"id":%d,"type":"private"},"text":"%s"}}
+                """.formatted(updateId, updateId, chatId, text);
+    }
+
+    /** Создаёт POST-запрос к webhook с заданным телом и секретом. */
+    private HttpRequest post(String body, String secret) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/telegram"))
+                .header(WebhookServer.SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /** Проверяет, что обновление разбирается и передаётся обработчику. */
+    @Test
+    void shouldParseAndForwardUpdate() throws Exception {
+        HttpResponse<Void> resp = client.send(post(updateJson(1, 42L, "Помощь"), "secret"),
+                HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertEquals(200, resp.statusCode());
+        Update upd = received.poll();
+        Assertions.assertNotNull(upd);
+        Assertions.assertEquals(1, upd.updateId());
+        Assertions.assertEquals(42L, upd.message().chat().id());
+        Assertions.assertEquals("Помощь", upd.message().text());
+    }
+
+    /** Проверяет, что запрос с неверным секретом отклоняется. */
+    @Test
+    void shouldRejectWrongSecret() throws Exception {
+        HttpResponse<Void> resp = client.send(post(updateJson(1, 42L, "x"), "wrong"),
+                HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertEquals(403, resp.statusCode());
+        Assertions.assertTrue(received.isEmpty());
+    }
+
+    /** Проверяет, что некорректный JSON получает ответ 400. */
+    @Test
+    void shouldRejectMalformedBody() throws Exception {
+        HttpResponse<Void> resp = client.send(post("{not json", "secret"),
+                HttpResponse.BodyHandlers.discarding());
+
+        Assertions.assertEquals(400, resp.statusCode());
+    }
+
+    /** Проверяет, что параллельные запросы принимаются и все обновления доходят до обработчика. */
+    @Test
+    void shouldAcceptConcurrentRequests() {
+        int total = 100;
+        List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<>();
+        for (int i = 0; i < total; i++)
+            futures.add(client.sendAsync(post(updateJson(i, i % 10, "msg"), "secret"),
+                    HttpResponse.BodyHandlers.discarding()));
+        for (CompletableFuture<HttpResponse<Void>> f : futures)
+            Assertions.assertEquals(200, f.join().statusCode());
+
+        Assertions.assertEquals(total, received.size());
+    }
+}
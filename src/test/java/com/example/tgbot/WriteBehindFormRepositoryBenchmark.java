@@ -0,0 +1,60 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Замеры WriteBehindFormRepository на отдельных базах.
+ * Запускаются профилем bench: mvn -Pbench test.
+ */
+@Tag("benchmark")
+class WriteBehindFormRepositoryBenchmark {
+
+    /** Удаляет базы замеров вместе с журналами WAL. */
+    @AfterEach
+    void tearDown() {
+        for (String db : new String[]{"forms_direct_bench.db", "forms_wb_bench.db"})
+            for (String suffix : new String[]{"", "-wal", "-shm"})
+                new File(db + suffix).delete();
+    }
+
+    /** Сравнивает скорость записи из нескольких потоков с обычным хранилищем. */
+    @Test
+    void measureWriteThroughput() throws Exception {
+        try (FormRepository sync = new FormRepository("forms_direct_bench.db", 4);
+             WriteBehindFormRepository behind = new WriteBehindFormRepository("forms_wb_bench.db", 2,
+                     StorageProfile.defaults(), 64, Duration.ofMillis(50))) {
+            double direct = measureWrites(sync);
+            double batched = measureWrites(behind);
+            System.out.printf("Запись анкет: по одной %.0f оп/с, пачками %.0f оп/с%n", direct, batched);
+            Assertions.assertTrue(direct > 0 && batched > 0);
+        }
+    }
+
+    /** Пишет анкеты из 4 потоков и возвращает число операций в секунду с учётом записи на диск. */
+    private static double measureWrites(FormRepository target) throws Exception {
+        int threads = 4;
+        int perThread = 500;
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long chatId = 100 + t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    target.upsert(new UserForm(chatId, "Анкета" + (i % 50), "друг", "ДР", 30, "книги", i));
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers)
+            w.join();
+        if (target instanceof WriteBehindFormRepository wb)
+            wb.flush();
+        return threads * perThread / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,235 @@
+package org.example.db;
+
+import org.example.model.UserForm;
+import org.junit.jupiter.api.*;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тесты для WriteBehindFormRepository.
+ * Проверяют, что незаписанные изменения видны при чтении, попадают в базу
+ * после flush() и close(), что анкета, которую база отвергает, не останавливает
+ * писателя, временные ошибки повторяются, а записи из нескольких потоков доходят до базы.
+ * Скорость записи измеряет WriteBehindFormRepositoryBenchmark.
+ */
+class WriteBehindFormRepositoryTest {
+
+    /** Расширенный код SQLITE_CONSTRAINT_CHECK: основной код 19 в младшем байте. */
+    static final int SQLITE_CONSTRAINT_CHECK = 275;
+
+    /** Хранилище с отложенной записью на тестовой базе. */
+    WriteBehindFormRepository repo;
+
+    /** Очищает тестовую базу и создаёт хранилище. */
+    @BeforeEach
+    void setUp() throws SQLException {
+        repo = new WriteBehindFormRepository("forms_wb_test.db", 2, StorageProfile.defaults(),
+                64, Duration.ofMillis(50));
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:forms_wb_test.db");
+             Statement st = c.createStatement()) {
+            st.execute("DELETE FROM forms");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    /** Читает анкету напрямую из базы, минуя очередь. */
+    private static UserForm stored(long chatId, String name) {
+        try (FormRepository direct = new FormRepository("forms_wb_test.db", 0)) {
+            return direct.get(chatId, name);
+        }
+    }
+
+    /** Проверяет, что только что сохранённая анкета сразу видна при чтении. */
+    @Test
+    void shouldReadPendingUpsert() {
+        repo.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+
+        UserForm loaded = repo.get(1L, "Мама");
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals("сад", loaded.hobbies);
+        Assertions.assertTrue(repo.listNames(1L).contains("Мама"));
+    }
+
+    /** Проверяет, что изменение возвращённой копии не меняет очередь записи. */
+    @Test
+    void shouldReturnIndependentCopies() {
+        repo.upsert(new UserForm(1L, "Мама", "мама", "ДР", 45, "сад", 3000));
+        repo.get(1L, "Мама").hobbies = "изменено";
+
+        Assertions.assertEquals("сад", repo.get(1L, "Мама").hobbies);
+    }
+
+    /** Проверяет, что незаписанное удаление скрывает анкету из базы. */
+    @Test
+    void shouldHidePendingDelete() {
+        repo.upsert(new UserForm(1L, "Папа", "папа", "НГ", 50, "охота", 3000));
+        repo.flush();
+        repo.delete(1L, "Папа");
+
+        Assertions.assertNull(repo.get(1L, "Папа"));
+        Assertions.assertFalse(repo.listNames(1L).contains("Папа"));
+    }
+
+    /** Проверяет, что страницы имён учитывают незаписанные вставки и удаления. */
+    @Test
+    void shouldOverlayPendingChangesOnPages() {
+        for (int i = 0; i < 10; i += 2)
+            repo.upsert(new UserForm(4L, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+        repo.flush();
+        repo.upsert(new UserForm(4L, "Анкета1", "друг", "ДР", 30, "книги", 1));
+        repo.upsert(new UserForm(4L, "Анкета9", "друг", "ДР", 30, "книги", 9));
+        repo.delete(4L, "Анкета2");
+
+        NamePage first = repo.listNamesAfter(4L, null, 3);
+        Assertions.assertEquals(List.of("Анкета0", "Анкета1", "Анкета4"), first.names());
+        Assertions.assertTrue(first.hasNext());
+        NamePage second = repo.listNamesAfter(4L, "Анкета4", 3);
+        Assertions.assertEquals(List.of("Анкета6", "Анкета8", "Анкета9"), second.names());
+        Assertions.assertFalse(second.hasNext());
+        NamePage back = repo.listNamesBefore(4L, "Анкета6", 3);
+        Assertions.assertEquals(first.names(), back.names());
+    }
+
+    /** Проверяет, что flush() записывает изменения в базу. */
+    @Test
+    void shouldPersistOnFlush() {
+        repo.upsert(new UserForm(2L, "Брат", "брат", "НГ", 25, "спорт", 5000));
+        repo.upsert(new UserForm(2L, "Брат", "брат", "ДР", 26, "рыбалка", 7000));
+        repo.flush();
+
+        UserForm f = stored(2L, "Брат");
+        Assertions.assertNotNull(f);
+        Assertions.assertEquals("рыбалка", f.hobbies);
+        Assertions.assertEquals(0, repo.pendingWrites());
+    }
+
+    /** Проверяет, что close() дописывает оставшиеся изменения. */
+    @Test
+    void shouldFlushOnClose() {
+        for (int i = 0; i < 100; i++)
+            repo.upsert(new UserForm(3L, "Анкета" + i, "друг", "ДР", 30, "книги", i));
+        repo.close();
+
+        try (FormRepository direct = new FormRepository("forms_wb_test.db", 0)) {
+            List<String> names = direct.listNames(3L);
+            Assertions.assertEquals(100, names.size());
+        }
+    }
+
+    /**
+     * Проверяет, что анкета, которую база отвергает по содержимому,
+     * отклоняется, а остальные анкеты той же пачки записываются.
+     */
+    @Test
+    void shouldRejectUnwritableFormAndMoveOn() {
+        WriteBehindFormRepository failing = new WriteBehindFormRepository("forms_wb_test.db", 2,
+                StorageProfile.defaults(), 64, Duration.ofSeconds(10)) {
+            @Override
+            void writeBatch(Collection<UserForm> upserts, Collection<FormKey> deletes) {
+                for (UserForm f : upserts)
+                    if (f.name.equals("Сломанная"))
+                        throw new RuntimeException("база отвергла анкету",
+                                new SQLException("constraint failed", "23000", SQLITE_CONSTRAINT_CHECK));
+                super.writeBatch(upserts, deletes);
+            }
+        };
+        try {
+            failing.upsert(new UserForm(5L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            failing.upsert(new UserForm(5L, "Сломанная", "друг", "ДР", 30, "книги", 1));
+            failing.upsert(new UserForm(5L, "Папа", "папа", "НГ", 50, "охота", 3000));
+            Assertions.assertThrows(CompletionException.class, failing::flush);
+
+            Assertions.assertNull(failing.get(5L, "Сломанная"));
+            Assertions.assertNotNull(stored(5L, "Мама"));
+            Assertions.assertNotNull(stored(5L, "Папа"));
+
+            failing.upsert(new UserForm(5L, "Брат", "брат", "НГ", 25, "спорт", 5000));
+            failing.flush();
+            Assertions.assertNotNull(stored(5L, "Брат"));
+        } finally {
+            failing.close();
+        }
+    }
+
+    /** Проверяет, что временная ошибка базы повторяется и изменения не теряются. */
+    @Test
+    void shouldRetryTransientErrors() {
+        AtomicInteger failures = new AtomicInteger(3);
+        WriteBehindFormRepository busy = new WriteBehindFormRepository("forms_wb_test.db", 2,
+                StorageProfile.defaults(), 64, Duration.ofMillis(10)) {
+            @Override
+            void writeBatch(Collection<UserForm> upserts, Collection<FormKey> deletes) {
+                if (failures.getAndDecrement() > 0)
+                    throw new RuntimeException("база занята", new SQLException("database is locked", null, 5));
+                super.writeBatch(upserts, deletes);
+            }
+        };
+        try {
+            busy.upsert(new UserForm(6L, "Мама", "мама", "ДР", 45, "сад", 3000));
+            busy.upsert(new UserForm(6L, "Папа", "папа", "НГ", 50, "охота", 3000));
+            busy.flush();
+
+            Assertions.assertNotNull(stored(6L, "Мама"));
+            Assertions.assertNotNull(stored(6L, "Папа"));
+            Assertions.assertTrue(failures.get() < 0);
+        } finally {
+            busy.close();
+        }
+    }
+
+    /** Проверяет, что при недоступной базе close() делает ограниченное число попыток и не зависает. */
+    @Test
+    void shouldGiveUpOnCloseWhenDatabaseStaysUnavailable() {
+        WriteBehindFormRepository broken = new WriteBehindFormRepository("forms_wb_test.db", 2,
+                StorageProfile.defaults(), 64, Duration.ofMillis(10)) {
+            @Override
+            void writeBatch(Collection<UserForm> upserts, Collection<FormKey> deletes) {
+                throw new RuntimeException("ошибка диска", new SQLException("disk I/O error", null, 10));
+            }
+        };
+        broken.upsert(new UserForm(7L, "Мама", "мама", "ДР", 45, "сад", 3000));
+
+        long started = System.nanoTime();
+        broken.close();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Assertions.assertTrue(elapsed < 5000, "close() ждал " + elapsed + " мс");
+        Assertions.assertNull(stored(7L, "Мама"));
+    }
+
+    /** Проверяет, что после flush() в базе последние версии анкет, записанных из нескольких потоков. */
+    @Test
+    void shouldPersistConcurrentWrites() throws Exception {
+        int threads = 4;
+        int perThread = 500;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long chatId = 100 + t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++)
+                    repo.upsert(new UserForm(chatId, "Анкета" + (i % 50), "друг", "ДР", 30, "книги", i));
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers)
+            w.join();
+        repo.flush();
+
+        for (int t = 0; t < threads; t++) {
+            Assertions.assertEquals(perThread - 1, stored(100L + t, "Анкета49").budget);
+            try (FormRepository direct = new FormRepository("forms_wb_test.db", 0)) {
+                Assertions.assertEquals(50, direct.listNames(100L + t).size());
+            }
+        }
+    }
+}